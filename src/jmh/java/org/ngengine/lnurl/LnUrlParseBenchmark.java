@@ -0,0 +1,94 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing and encoding of lnurls and lightning addresses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LnUrlParseBenchmark {
+
+    private String bech32;
+    private URI plain;
+    private String lud16;
+    private String lnAddress;
+
+    @Setup
+    public void setup() throws Exception {
+        bech32 = "LNURL1DP68GURN8GHJ7UNZD33ZU6T59UH8WETVDSKKKMN0WAHZ7MRWW4EXCUP00FSHQEUG7AA";
+        plain = new URI("https://rblb.it/.well-known/lnurlp/zap");
+        lud16 = "lnurlp://rblb.it/.well-known/lnurlp/zap";
+        lnAddress = "zap@rblb.it";
+    }
+
+    @Benchmark
+    public LnUrl decodeBech32() throws Exception {
+        return new LnUrl(bech32);
+    }
+
+    @Benchmark
+    public LnUrl decodeLud16() throws Exception {
+        return new LnUrl(lud16);
+    }
+
+    @Benchmark
+    public LnUrl encode() throws Exception {
+        return LnUrl.encode(plain);
+    }
+
+    @Benchmark
+    public LnUrl parseCached() throws Exception {
+        return LnUrl.parse(bech32);
+    }
+
+    @Benchmark
+    public LnAddress lnAddress() throws Exception {
+        return new LnAddress(lnAddress);
+    }
+
+    @Benchmark
+    public Lud16Type lud16Type() {
+        return Lud16Type.getLud16(lud16, 0, lud16.length());
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.ngengine.platform.NGEPlatform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Decoding of pay requests and payment responses, and callback building.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LnUrlPayBenchmark {
+
+    // BOLT 11 example invoice with a description_hash
+    private static final String INVOICE =
+        "lnbc20m1pvjluezpp5qqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqypqhp58yjmdan79s6qqdhdzgynm4zwqd5" +
+        "d7xmw5fk98klysy043l2ahrqscc6gd6ql3jrc5yzme8v4ntcewwz5cnw92tz0pc8qcuufvq7khhr8wpald05e92xw006sq94mg8v" +
+        "2ndf4sefvf9sygkshp5zfem29trqq2yxxz7";
+
+    private String payJson;
+    private Map<String, Object> payMap;
+    private Map<String, Object> responseMap;
+    private LnUrlPay pay;
+    private LnUrlPayerData payerData;
+
+    @Setup
+    public void setup() throws Exception {
+        // a typical lightning address: description, identifier and a small avatar
+        byte[] image = new byte[4 * 1024];
+        new Random(42).nextBytes(image);
+        List<List<String>> metadata = new ArrayList<>();
+        metadata.add(List.of("text/plain", "Sats for zap@rblb.it"));
+        metadata.add(List.of("text/identifier", "zap@rblb.it"));
+        metadata.add(List.of("image/png;base64", Base64.getEncoder().encodeToString(image)));
+
+        Map<String, Object> payerDataTemplate = new HashMap<>();
+        payerDataTemplate.put("name", Map.of("mandatory", false));
+        payerDataTemplate.put("pubkey", Map.of("mandatory", false));
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("tag", "payRequest");
+        data.put("callback", "https://rblb.it/.well-known/lnurlp/zap/callback");
+        data.put("minSendable", 1000);
+        data.put("maxSendable", 100000000000L);
+        data.put("metadata", NGEPlatform.get().toJSON(metadata));
+        data.put("commentAllowed", 255);
+        data.put("allowNostr", true);
+        data.put("nostrPubkey", "79be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798");
+        data.put("payerData", payerDataTemplate);
+
+        payJson = NGEPlatform.get().toJSON(data);
+        payMap = NGEPlatform.get().fromJSON(payJson, Map.class);
+        pay = new LnUrlPay(payMap);
+
+        payerData = new LnUrlPayerData();
+        payerData.setName("Satoshi");
+
+        Map<String, Object> successAction = new HashMap<>();
+        successAction.put("tag", "message");
+        successAction.put("message", "Thanks for the sats!");
+        responseMap = new HashMap<>();
+        responseMap.put("pr", INVOICE);
+        responseMap.put("disposable", false);
+        responseMap.put("verify", "https://rblb.it/.well-known/lnurlp/zap/verify/abc");
+        responseMap.put("successAction", successAction);
+    }
+
+    @Benchmark
+    public LnUrlPay payFromMap() {
+        return new LnUrlPay(payMap);
+    }
+
+    @Benchmark
+    public LnUrlPay payFromJson() throws Exception {
+        return LnUrlPay.fromJson(payJson);
+    }
+
+    @Benchmark
+    public URI callback() {
+        return pay.getCallback(21000, "Great content, keep it up!", payerData);
+    }
+
+    @Benchmark
+    public String callbackString() {
+        return LnUrlCallbackBuilder
+            .fromPrefix("https://rblb.it/.well-known/lnurlp/zap/callback?")
+            .param("amount", 21000)
+            .param("comment", "Great content, keep it up!")
+            .toString();
+    }
+
+    @Benchmark
+    public LnUrlPaymentResponse paymentResponseFromMap() {
+        return new LnUrlPaymentResponse(pay, responseMap);
+    }
+
+    @Benchmark
+    public byte[] payToJsonBytes() {
+        return new LnUrlPay(payMap).toJsonBytes();
+    }
+}
@@ -31,6 +31,7 @@
 
 package org.ngengine.lnurl;
 
+import jakarta.annotation.Nullable;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -40,39 +41,153 @@ import java.net.URISyntaxException;
 // lud16
 public class LnAddress extends LnUrl {
 
+    private static final LnUrlInternCache parseCache = new LnUrlInternCache(
+        LnUrlInternCache.DEFAULT_MAX_ENTRIES,
+        LnAddress::new
+    );
+
     private final String lnAddress;
 
+    private static final byte USERNAME_CHAR = 1;
+    private static final byte DOMAIN_CHAR = 2;
+    private static final byte[] CHAR_CLASS = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASS[c] = USERNAME_CHAR | DOMAIN_CHAR;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASS[c] = USERNAME_CHAR | DOMAIN_CHAR;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CHAR_CLASS[c] = DOMAIN_CHAR;
+        }
+        CHAR_CLASS['-'] = USERNAME_CHAR | DOMAIN_CHAR;
+        CHAR_CLASS['.'] = USERNAME_CHAR | DOMAIN_CHAR;
+        CHAR_CLASS['_'] = USERNAME_CHAR;
+        CHAR_CLASS['+'] = USERNAME_CHAR;
+        CHAR_CLASS[':'] = DOMAIN_CHAR;
+    }
+
     public LnAddress(String lnAddress) throws URISyntaxException {
+        this((CharSequence) lnAddress);
+    }
+
+    /**
+     * Parse a lightning address from any char sequence, eg. a StringBuilder.
+     * @param lnAddress the lightning address
+     * @throws URISyntaxException if the address is invalid
+     */
+    public LnAddress(CharSequence lnAddress) throws URISyntaxException {
         super(addressToUrl(lnAddress));
-        this.lnAddress = lnAddress.trim();
+        this.lnAddress = lnAddress.toString();
     }
 
-    private static URI addressToUrl(String addr) throws URISyntaxException {
-        if (addr == null || addr.isEmpty()) {
-            throw new URISyntaxException(addr, "Lightning address cannot be null or empty", 0);
-        }
+    /**
+     * Parse a lightning address, returning a shared instance if the same address was parsed recently.
+     * Use this instead of the constructor when the same addresses are parsed over and over.
+     * @param lnAddress the lightning address
+     * @return the parsed address
+     * @throws URISyntaxException if the address is invalid
+     */
+    public static LnAddress parse(String lnAddress) throws URISyntaxException {
+        return (LnAddress) parseCache.get(lnAddress);
+    }
+
+    /**
+     * Get the cache used by {@link #parse(String)}, eg. to check its hit rate.
+     */
+    public static LnUrlInternCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Check if the input is a valid lightning address, without allocating.
+     * @param addr the input
+     * @return true if the input is a valid lightning address
+     */
+    public static boolean isValid(@Nullable CharSequence addr) {
+        return addr != null && findError(addr) == -1;
+    }
 
-        // Split the address into username and domain parts
-        String[] parts = addr.split("@");
-        if (parts.length != 2) {
-            throw new URISyntaxException(addr, "Invalid lightning address format", 0);
+    /**
+     * Validate the address in a single pass.
+     * @return -1 if the address is valid, otherwise the position of the error
+     */
+    private static int findError(CharSequence addr) {
+        int len = addr.length();
+        if (len == 0) {
+            return 0;
         }
+        int at = -1;
+        for (int i = 0; i < len; i++) {
+            char c = addr.charAt(i);
+            if (c == '@') {
+                if (at != -1 || i == 0) {
+                    return i;
+                }
+                at = i;
+            } else if (c >= 128 || (CHAR_CLASS[c] & (at == -1 ? USERNAME_CHAR : DOMAIN_CHAR)) == 0) {
+                return i;
+            }
+        }
+        return at == -1 || at == len - 1 ? len : -1;
+    }
 
-        String username = parts[0];
-        String domain = parts[1];
+    private static URI addressToUrl(CharSequence addr) throws URISyntaxException {
+        if (addr == null || addr.length() == 0) {
+            throw new URISyntaxException(String.valueOf(addr), "Lightning address cannot be null or empty", 0);
+        }
 
-        // Validate username - only a-z0-9-_.+ are allowed
-        if (!username.matches("^[a-z0-9\\-_.+]+$")) {
-            throw new URISyntaxException(addr, "Invalid username format. Only a-z0-9-_.+ characters are allowed.", 0);
+        int error = findError(addr);
+        if (error != -1) {
+            int at = indexOf(addr, '@');
+            String reason;
+            if (error == addr.length()) {
+                reason = at == -1 ? "Invalid lightning address format" : "Domain cannot be empty";
+            } else if (addr.charAt(error) == '@') {
+                reason = error == 0 ? "Username cannot be empty" : "Invalid lightning address format";
+            } else if (at == -1 || error < at) {
+                // Only a-z0-9-_.+ are allowed in the username
+                reason = "Invalid username format. Only a-z0-9-_.+ characters are allowed.";
+            } else {
+                reason = "Invalid domain format";
+            }
+            throw new URISyntaxException(addr.toString(), reason, error);
         }
 
+        int at = indexOf(addr, '@');
+        int len = addr.length();
+
         // Determine if it's a clearnet or onion domain
-        String scheme = domain.endsWith(".onion") ? "http" : "https";
+        boolean onion = len - at > 6 && endsWithIgnoreCase(addr, ".onion");
 
         // Construct the URL
-        String url = scheme + "://" + domain + "/.well-known/lnurlp/" + username;
+        StringBuilder url = new StringBuilder(len + 32);
+        url.append(onion ? "http" : "https").append("://");
+        url.append(addr, at + 1, len);
+        url.append("/.well-known/lnurlp/");
+        url.append(addr, 0, at);
+        return new URI(url.toString());
+    }
+
+    private static int indexOf(CharSequence s, char c) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-        return new URI(url);
+    private static boolean endsWithIgnoreCase(CharSequence s, String suffix) {
+        int offset = s.length() - suffix.length();
+        for (int i = 0; i < suffix.length(); i++) {
+            if (Character.toLowerCase(s.charAt(offset + i)) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
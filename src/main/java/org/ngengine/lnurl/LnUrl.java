@@ -31,22 +31,28 @@
 
 package org.ngengine.lnurl;
 
+import jakarta.annotation.Nullable;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.logging.Logger;
-import org.ngengine.bech32.Bech32;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import org.ngengine.bech32.Bech32DecodingException;
 import org.ngengine.bech32.Bech32EncodingException;
 import org.ngengine.bech32.Bech32InvalidChecksumException;
 import org.ngengine.bech32.Bech32InvalidRangeException;
+import org.ngengine.platform.AsyncExecutor;
 import org.ngengine.platform.AsyncTask;
 import org.ngengine.platform.NGEPlatform;
 
@@ -57,58 +63,240 @@ import org.ngengine.platform.NGEPlatform;
 public class LnUrl {
 
     public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
-    private static final byte[] hrp = "lnurl".getBytes();
+    private static final String HRP = "lnurl";
 
-    private static final Logger logger = Logger.getLogger(LnUrl.class.getName());
+    private static final LnUrlLogger logger = LnUrlLogger.get(LnUrl.class);
     private final String bech32;
     private final URI plainUrl;
     private final String tag;
 
-    private static final List<LnUrlServiceFactory> serviceFactories = new ArrayList<>();
+    private static final List<LnUrlServiceFactory> serviceFactories = new CopyOnWriteArrayList<>();
+    private static volatile Map<String, LnUrlServiceFactory> taggedServiceFactories = Collections.emptyMap();
+    private static volatile LnUrlServiceCache serviceCache;
+    private static volatile LnUrlHostLimiter hostLimiter;
+    private static volatile LnUrlInstrumentation instrumentation;
+    private static volatile LnUrlRetryPolicy retryPolicy;
+    private static volatile LnUrlHttpTransport defaultTransport = new LnUrlPlatformTransport();
+
+    private static class InFlightService {
+
+        private final LnUrlHttpTransport transport;
+        private final AsyncTask<LnUrlService> task;
+        private Consumer<LnUrlService> resolve;
+        private Consumer<Throwable> reject;
+
+        private InFlightService(LnUrlHttpTransport transport) {
+            this.transport = transport;
+            // settled by the caller that sends the request, once it settles
+            this.task =
+                NGEPlatform
+                    .get()
+                    .promisify(
+                        (res, rej) -> {
+                            resolve = res;
+                            reject = rej;
+                        },
+                        null
+                    );
+        }
+    }
+
+    private static final Map<URI, InFlightService> inFlightServices = new HashMap<>();
+    private static AsyncExecutor joinTimer;
+
+    private static final LnUrlInternCache parseCache = new LnUrlInternCache(
+        LnUrlInternCache.DEFAULT_MAX_ENTRIES,
+        LnUrl::new
+    );
+
+    static final LnUrlServiceFactory PAY_FACTORY = data -> {
+        if (LnUrlPay.isAssignableTo(data)) {
+            return new LnUrlPay(data);
+        }
+        return null;
+    };
 
     static {
-        registerServiceFactory(data -> {
-            if (LnUrlPay.isAssignableTo(data)) {
-                return new LnUrlPay(data);
+        registerServiceFactory("payRequest", PAY_FACTORY);
+        registerServiceFactory(
+            "withdrawRequest",
+            data -> {
+                if (LnUrlWithdraw.isAssignableTo(data)) {
+                    return new LnUrlWithdraw(data);
+                }
+                return null;
             }
-            return null;
-        });
+        );
+        registerServiceFactory(
+            "channelRequest",
+            data -> {
+                if (LnUrlChannel.isAssignableTo(data)) {
+                    return new LnUrlChannel(data);
+                }
+                return null;
+            }
+        );
     }
 
+    /**
+     * Register a factory that is tried, in registration order, for services whose tag has no dedicated factory.
+     * @param factory the factory
+     */
     public static void registerServiceFactory(LnUrlServiceFactory factory) {
         serviceFactories.add(Objects.requireNonNull(factory, "Factory cannot be null"));
     }
 
-    public LnUrl(String lnurl) throws URISyntaxException {
-        try {
-            lnurl = lnurl.toLowerCase().trim();
-            if (lnurl.startsWith("lightning:")) {
-                lnurl = lnurl.substring(10);
+    /**
+     * Register the factory for the services with the given tag.
+     * It replaces the factory previously registered for the same tag.
+     * If it returns null, the factories registered without a tag are tried.
+     * @param tag the tag of the service, eg. "withdrawRequest"
+     * @param factory the factory
+     */
+    public static void registerServiceFactory(String tag, LnUrlServiceFactory factory) {
+        Objects.requireNonNull(tag, "Tag cannot be null");
+        Objects.requireNonNull(factory, "Factory cannot be null");
+        synchronized (serviceFactories) {
+            Map<String, LnUrlServiceFactory> factories = new HashMap<>(taggedServiceFactories);
+            factories.put(tag, factory);
+            taggedServiceFactories = Collections.unmodifiableMap(factories);
+        }
+    }
+
+    private static LnUrlService constructService(Map<String, Object> data) {
+        Object tag = data.get("tag");
+        LnUrlServiceFactory tagged = tag instanceof String ? taggedServiceFactories.get(tag) : null;
+        if (tagged != null) {
+            LnUrlService service = constructService(tagged, data);
+            if (service != null) {
+                return service;
             }
+        }
+        for (LnUrlServiceFactory factory : serviceFactories) {
+            LnUrlService service = constructService(factory, data);
+            if (service != null) {
+                return service;
+            }
+        }
+        return null;
+    }
 
-            Lud16Type lud16 = Lud16Type.getLud16(lnurl);
-            if (lud16 != null) {
-                logger.finer("LUD16 lnurl: " + lnurl);
+    private static LnUrlService constructService(LnUrlServiceFactory factory, Map<String, Object> data) {
+        try {
+            return factory.construct(data);
+        } catch (Exception e) {
+            logger.warning("Failed to create service with factory: {0}", e.getMessage());
+            return null;
+        }
+    }
 
-                plainUrl = new URI(lud16.toHttps(lnurl));
-                logger.finer("Decoded lnurl: " + plainUrl);
+    /**
+     * Set the cache used to store resolved services.
+     * @param cache the cache, or null to always fetch services from the network
+     */
+    public static void setServiceCache(@Nullable LnUrlServiceCache cache) {
+        serviceCache = cache;
+    }
 
-                bech32 = Bech32.bech32Encode(hrp, ByteBuffer.wrap(plainUrl.toString().getBytes()));
-                logger.finer("Bech32 lnurl: " + bech32);
+    /**
+     * Get the cache used to store resolved services.
+     * @return the cache, or null if caching is disabled
+     */
+    @Nullable
+    public static LnUrlServiceCache getServiceCache() {
+        return serviceCache;
+    }
 
-                tag = lud16.tag();
-                logger.finer("LUD16 tag: " + tag);
-            } else {
-                this.bech32 = lnurl;
-                logger.finer("Bech32 lnurl: " + bech32);
+    /**
+     * Set the limiter used to bound the number of concurrent requests sent to each host.
+     * The limiter that is replaced is not closed, it still belongs to the caller that created it.
+     * @param limiter the limiter, or null to send every request immediately
+     */
+    public static void setHostLimiter(@Nullable LnUrlHostLimiter limiter) {
+        hostLimiter = limiter;
+    }
 
-                ByteBuffer decodedB = Bech32.bech32Decode(lnurl);
-                plainUrl = new URI(new String(decodedB.array(), 0, decodedB.limit()));
-                logger.finer("Decoded lnurl: " + plainUrl);
+    /**
+     * Get the limiter used to bound the number of concurrent requests sent to each host.
+     * @return the limiter, or null if requests are not limited
+     */
+    @Nullable
+    public static LnUrlHostLimiter getHostLimiter() {
+        return hostLimiter;
+    }
 
+    /**
+     * Set the instrumentation that receives the events of every LNURL round trip.
+     * @param instrumentation the instrumentation, eg. a {@link LnUrlMetrics}, or null to disable it
+     */
+    public static void setInstrumentation(@Nullable LnUrlInstrumentation instrumentation) {
+        LnUrl.instrumentation = instrumentation;
+    }
+
+    /**
+     * Get the instrumentation that receives the events of every LNURL round trip.
+     * @return the instrumentation, or null if it is disabled
+     */
+    @Nullable
+    public static LnUrlInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Set the policy used to retry and hedge the requests that are safe to repeat: service lookups and
+     * payment verifications.
+     * The policy that is replaced is not closed, it still belongs to the caller that created it.
+     * @param policy the policy, or null to send every request once
+     */
+    public static void setRetryPolicy(@Nullable LnUrlRetryPolicy policy) {
+        retryPolicy = policy;
+    }
+
+    /**
+     * Get the policy used to retry and hedge the requests that are safe to repeat.
+     * @return the policy, or null if requests are not retried
+     */
+    @Nullable
+    public static LnUrlRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Set the transport used by every request that is not given an explicit transport.
+     * @param transport the transport
+     */
+    public static void setDefaultTransport(LnUrlHttpTransport transport) {
+        defaultTransport = Objects.requireNonNull(transport, "Transport cannot be null");
+    }
+
+    /**
+     * Get the transport used by every request that is not given an explicit transport.
+     * @return the transport, {@link LnUrlPlatformTransport} unless changed
+     */
+    public static LnUrlHttpTransport getDefaultTransport() {
+        return defaultTransport;
+    }
+
+    public LnUrl(String lnurl) throws URISyntaxException {
+        try {
+            int start = 0, end = lnurl.length();
+            while (start < end && lnurl.charAt(start) <= ' ') start++;
+            while (end > start && lnurl.charAt(end - 1) <= ' ') end--;
+            if (lnurl.regionMatches(true, start, "lightning:", 0, 10)) {
+                start += 10;
+            }
+
+            Lud16Type lud16 = Lud16Type.getLud16(lnurl, start, end);
+            if (lud16 != null) {
+                plainUrl = new URI("https://" + lnurl.substring(start + lud16.prefix().length() + 3, end)); // +3 for "://"
+                bech32 = LnUrlBech32.encodeUtf8(HRP, plainUrl.toString());
+                tag = lud16.tag();
+            } else {
+                plainUrl = new URI(LnUrlBech32.decodeUtf8(lnurl, start, end));
+                bech32 = (start == 0 && end == lnurl.length() ? lnurl : lnurl.substring(start, end)).toLowerCase(Locale.ROOT);
                 tag = loadTag();
-                logger.finer("Tag: " + tag);
             }
+            logger.finer("Decoded lnurl: {0} -> {1}, tag: {2}", lnurl, plainUrl, tag);
         } catch (Exception e) {
             if (e instanceof URISyntaxException) {
                 throw (URISyntaxException) e;
@@ -121,13 +309,31 @@ public class LnUrl {
     protected LnUrl(URI url) throws URISyntaxException {
         try {
             plainUrl = url;
-            bech32 = Bech32.bech32Encode(hrp, ByteBuffer.wrap(url.toString().getBytes()));
+            bech32 = LnUrlBech32.encodeUtf8(HRP, url.toString());
             tag = loadTag();
         } catch (Exception e) {
             throw new URISyntaxException(url.toString(), "Failed to parse LNURL: " + e.getMessage(), 0);
         }
     }
 
+    /**
+     * Parse a lnurl, returning a shared instance if the same string was parsed recently.
+     * Use this instead of the constructor when the same lnurls are parsed over and over.
+     * @param lnurl the bech32 lnurl or lud16 url
+     * @return the parsed lnurl
+     * @throws URISyntaxException if the lnurl is invalid
+     */
+    public static LnUrl parse(String lnurl) throws URISyntaxException {
+        return parseCache.get(lnurl);
+    }
+
+    /**
+     * Get the cache used by {@link #parse(String)}, eg. to check its hit rate.
+     */
+    public static LnUrlInternCache getParseCache() {
+        return parseCache;
+    }
+
     private String loadTag() {
         String tag = null;
         if (plainUrl.getQuery() != null) {
@@ -221,53 +427,284 @@ public class LnUrl {
         return getService(DEFAULT_TIMEOUT);
     }
 
+    /**
+     * Remove the service resolved for this LNURL from the service cache, if any.
+     */
+    public void invalidateService() {
+        LnUrlServiceCache cache = serviceCache;
+        if (cache != null) {
+            cache.invalidate(plainUrl);
+        }
+    }
+
     /**
      * Get an handler for the underlying service offered by this LNURL.
+     * <p>
+     * If a {@link LnUrlServiceCache} is set, a cached service is returned when available.
+     * </p>
+     * <p>
+     * Concurrent calls for the same LNURL share a single request: callers that arrive while a fetch is
+     * already in flight wait for its result (and its timeout) instead of sending a new request.
+     * </p>
+     * <p>
+     * Withdraw and channel requests carry a k1 that can be used only once, so they are never cached or
+     * shared: every call returns a freshly fetched service.
+     * </p>
      * @param <T> The type of the service to be returned.
      * @param timeout The timeout for the request to fetch the service.
      * @return An AsyncTask that will return the service when completed.
      * @throws LnUrlException
      */
     public <T extends LnUrlService> AsyncTask<T> getService(Duration timeout) throws LnUrlException {
-        String url = toURI().toString();
-        logger.finer("Fetching LNURL service from: " + url + " with timeout: " + timeout);
+        return getService(timeout, null);
+    }
+
+    /**
+     * Get an handler for the underlying service offered by this LNURL.
+     * @param <T> The type of the service to be returned.
+     * @param timeout The timeout for the request to fetch the service.
+     * @param transport The transport used to fetch the service, or null to use the default transport.
+     * @return An AsyncTask that will return the service when completed.
+     * @throws LnUrlException
+     * @see #getService(Duration)
+     */
+    public <T extends LnUrlService> AsyncTask<T> getService(Duration timeout, @Nullable LnUrlHttpTransport transport)
+        throws LnUrlException {
+        return getService(timeout, transport, null);
+    }
+
+    /**
+     * Get an handler for the underlying service offered by this LNURL, within a deadline.
+     * @param <T> The type of the service to be returned.
+     * @param timeout The timeout for each attempt to fetch the service, bounded by the deadline.
+     * @param transport The transport used to fetch the service, or null to use the default transport.
+     * @param deadline The deadline of the whole payment flow, or null for none.
+     * @return An AsyncTask that will return the service when completed.
+     * @throws LnUrlException
+     * @see LnUrlDeadline
+     */
+    public <T extends LnUrlService> AsyncTask<T> getService(
+        Duration timeout,
+        @Nullable LnUrlHttpTransport transport,
+        @Nullable LnUrlDeadline deadline
+    ) throws LnUrlException {
+        if ("login".equals(tag)) {
+            // login requests carry everything in the url, there is nothing to fetch
+            LnUrlAuth auth;
+            try {
+                auth = new LnUrlAuth(plainUrl);
+            } catch (IllegalArgumentException e) {
+                throw new LnUrlException(LnUrlException.Status.INVALID, "Invalid LNURL auth request: " + e.getMessage(), e);
+            }
+            return NGEPlatform.get().promisify((res, rej) -> res.accept((T) auth), null);
+        }
+
+        if (isSingleUse(tag)) {
+            return fetchService(timeout, transport, deadline, null).then(service -> (T) service);
+        }
+
+        LnUrlServiceCache cache = serviceCache;
+        if (cache != null) {
+            LnUrlService cached = cache.get(plainUrl);
+            LnUrlInstrumentation instr = instrumentation;
+            if (instr != null) {
+                if (cached != null) {
+                    instr.onCacheHit(plainUrl.getHost());
+                } else {
+                    instr.onCacheMiss(plainUrl.getHost());
+                }
+            }
+            if (cached != null) {
+                return NGEPlatform.get().promisify((res, rej) -> res.accept((T) cached), null);
+            }
+        }
+
+        InFlightService inFlight;
+        boolean leader = false;
+        synchronized (inFlightServices) {
+            inFlight = inFlightServices.get(plainUrl);
+            if (inFlight == null) {
+                // only a placeholder is registered here, the request is sent after the lock is released
+                inFlight = new InFlightService(transport);
+                inFlightServices.put(plainUrl, inFlight);
+                leader = true;
+            } else if (inFlight.transport != transport) {
+                // another transport is already fetching this service, don't share its result
+                inFlight = null;
+            }
+        }
+
+        AsyncTask<LnUrlService> task;
+        if (leader) {
+            task = lead(inFlight, timeout, transport, deadline, cache);
+        } else if (inFlight != null) {
+            // the url didn't tell, but the shared service may turn out to be single use: it belongs to the leader
+            task =
+                join(inFlight, timeout, deadline)
+                    .compose(service ->
+                        isSingleUse(service)
+                            ? fetchService(timeout, transport, deadline, null)
+                            : NGEPlatform.get().promisify((res, rej) -> res.accept(service), null)
+                    );
+        } else {
+            task = fetchService(timeout, transport, deadline, cache);
+        }
+        return task.then(service -> (T) service);
+    }
+
+    private static boolean isSingleUse(@Nullable String tag) {
+        return "withdrawRequest".equals(tag) || "channelRequest".equals(tag);
+    }
+
+    private static boolean isSingleUse(LnUrlService service) {
+        return service instanceof LnUrlWithdraw || service instanceof LnUrlChannel;
+    }
+
+    private AsyncTask<LnUrlService> lead(
+        InFlightService inFlight,
+        Duration timeout,
+        @Nullable LnUrlHttpTransport transport,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable LnUrlServiceCache cache
+    ) {
+        AsyncTask<LnUrlService> task;
+        try {
+            task = fetchService(timeout, transport, deadline, cache);
+        } catch (RuntimeException e) {
+            releaseInFlight(inFlight);
+            inFlight.reject.accept(e);
+            throw e;
+        }
+        // release the in-flight slot once the request settles, whatever the outcome, and pass the outcome on
+        // to the joined callers
+        task
+            .then(service -> {
+                releaseInFlight(inFlight);
+                inFlight.resolve.accept(service);
+                return null;
+            })
+            .catchException(e -> {
+                releaseInFlight(inFlight);
+                inFlight.reject.accept(e);
+            });
+        return task;
+    }
+
+    /**
+     * Wait for a request sent by another caller, bounded by the timeout and deadline of this caller.
+     */
+    private static AsyncTask<LnUrlService> join(InFlightService inFlight, Duration timeout, @Nullable LnUrlDeadline deadline) {
+        if (deadline != null && deadline.isExpired()) {
+            return NGEPlatform.get().promisify((res, rej) -> rej.accept(deadline.exceeded()), null);
+        }
+        Duration wait = deadline != null ? deadline.bound(timeout) : timeout;
+        boolean bounded = deadline != null && (timeout == null || wait.compareTo(timeout) < 0);
         return NGEPlatform
             .get()
-            .httpGet(url, timeout, null)
-            .then(res -> {
-                try {
-                    Map<String, Object> data = NGEPlatform.get().fromJSON(res, Map.class);
-                    if (LnUrlException.isAssignableTo(data)) {
-                        throw new LnUrlException(data);
-                    }
-                    LnUrlService service = null;
-                    for (LnUrlServiceFactory factory : serviceFactories) {
-                        try {
-                            service = factory.construct(data);
-                            if (service != null) {
-                                break; // Found a valid service
+            .promisify(
+                (res, rej) -> {
+                    AtomicBoolean settled = new AtomicBoolean();
+                    inFlight.task
+                        .then(service -> {
+                            if (settled.compareAndSet(false, true)) {
+                                res.accept(service);
+                            }
+                            return null;
+                        })
+                        .catchException(e -> {
+                            if (settled.compareAndSet(false, true)) {
+                                rej.accept(e);
                             }
-                        } catch (Exception e) {
-                            logger.warning("Failed to create service with factory: " + e.getMessage());
-                        }
+                        });
+                    if (wait == null) {
+                        return;
                     }
-
-                    if (service == null) {
-                        throw new LnUrlException(
-                            LnUrlException.Status.NOT_FOUND,
-                            "No LNURL service found for: " + toURI().toString()
+                    getJoinTimer()
+                        .runLater(
+                            () -> {
+                                if (settled.compareAndSet(false, true)) {
+                                    rej.accept(
+                                        bounded ? deadline.exceeded() : new TimeoutException("LNURL service request timed out")
+                                    );
+                                }
+                                return null;
+                            },
+                            wait.toNanos(),
+                            TimeUnit.NANOSECONDS
                         );
-                    }
-                    return (T) service;
-                } catch (Exception e) {
-                    throw new RuntimeException(
-                        new LnUrlException(
-                            LnUrlException.Status.INVALID,
-                            "Failed to parse LNURL service response: " + e.getMessage(),
-                            e
-                        )
-                    );
+                },
+                null
+            );
+    }
+
+    private static synchronized AsyncExecutor getJoinTimer() {
+        if (joinTimer == null) {
+            joinTimer = NGEPlatform.get().newAsyncExecutor(LnUrl.class);
+        }
+        return joinTimer;
+    }
+
+    private void releaseInFlight(InFlightService inFlight) {
+        synchronized (inFlightServices) {
+            if (inFlightServices.get(plainUrl) == inFlight) {
+                inFlightServices.remove(plainUrl);
+            }
+        }
+    }
+
+    private AsyncTask<LnUrlService> fetchService(
+        Duration timeout,
+        @Nullable LnUrlHttpTransport transport,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable LnUrlServiceCache cache
+    ) {
+        logger.finer("Fetching LNURL service from: {0} with timeout: {1}", plainUrl, timeout);
+        return LnUrlHttp.instrument(
+            LnUrlInstrumentation.Operation.GET_SERVICE,
+            plainUrl.getHost(),
+            () ->
+                LnUrlHttp
+                    .getIdempotentResponse(plainUrl, timeout, deadline, null, transport)
+                    .then(res -> parseService(res.getBody(), res.getMaxAge(), cache))
+        );
+    }
+
+    /**
+     * @param maxAge how long the service can be cached for, from the Cache-Control header of the response, or
+     *          null to use the default ttl of the cache
+     */
+    private LnUrlService parseService(String res, @Nullable Duration maxAge, @Nullable LnUrlServiceCache cache) {
+        long parseStart = LnUrlHttp.parseStart();
+        try {
+            // pay requests are parsed straight from the json, unless their factory was replaced
+            LnUrlService service = null;
+            if (taggedServiceFactories.get("payRequest") == PAY_FACTORY) {
+                service = LnUrlPay.fromJson(res);
+            }
+            if (service == null) {
+                Map<String, Object> data = NGEPlatform.get().fromJSON(res, Map.class);
+                if (LnUrlException.isAssignableTo(data)) {
+                    throw new LnUrlException(data);
                 }
-            });
+                service = constructService(data);
+            }
+            LnUrlHttp.parseEnd(LnUrlInstrumentation.Operation.GET_SERVICE, parseStart);
+
+            if (service == null) {
+                throw new LnUrlException(LnUrlException.Status.NOT_FOUND, "No LNURL service found for: " + toURI().toString());
+            }
+            if (cache != null && !isSingleUse(service)) {
+                cache.put(plainUrl, service, maxAge);
+            }
+            return service;
+        } catch (Exception e) {
+            throw new RuntimeException(
+                new LnUrlException(
+                    LnUrlException.Status.INVALID,
+                    "Failed to parse LNURL service response: " + e.getMessage(),
+                    e
+                )
+            );
+        }
     }
 }
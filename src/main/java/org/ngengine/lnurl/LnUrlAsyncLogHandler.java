@@ -0,0 +1,169 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands records to another handler on a background thread.
+ * <p>
+ * Records are queued in a bounded queue: when it is full new records are dropped and counted, so logging never
+ * blocks a request. For example, to log the library asynchronously to the console:
+ * </p>
+ *
+ * <pre>{@code
+ * Logger logger = Logger.getLogger("org.ngengine.lnurl");
+ * logger.setUseParentHandlers(false);
+ * logger.addHandler(new LnUrlAsyncLogHandler(new ConsoleHandler()));
+ * }</pre>
+ */
+public class LnUrlAsyncLogHandler extends Handler {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Handler delegate;
+    private final BlockingQueue<LogRecord> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    // records queued or being published, guarded by itself for flush() to wait on
+    private final AtomicLong pending = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean closed;
+
+    public LnUrlAsyncLogHandler(Handler delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param delegate the handler that publishes the records
+     * @param capacity the maximum number of records waiting to be published
+     */
+    public LnUrlAsyncLogHandler(Handler delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.delegate = Objects.requireNonNull(delegate, "Delegate handler cannot be null");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::drain, "lnurl-log");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    private void drain() {
+        while (!closed) {
+            LogRecord r;
+            try {
+                r = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            publishQueued(r);
+        }
+        LogRecord r;
+        while ((r = queue.poll()) != null) {
+            publishQueued(r);
+        }
+    }
+
+    private void publishQueued(LogRecord r) {
+        try {
+            delegate.publish(r);
+        } catch (RuntimeException e) {
+            reportError(e.getMessage(), e, 0);
+        } finally {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (pending) {
+                    pending.notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(record)) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Wait until every record queued so far is published, then flush the delegate handler.
+     */
+    @Override
+    public void flush() {
+        // the worker cannot wait for itself, eg. if the delegate logs while publishing
+        if (Thread.currentThread() != worker) {
+            synchronized (pending) {
+                while (pending.get() > 0 && worker.isAlive()) {
+                    try {
+                        pending.wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        delegate.flush();
+    }
+
+    /**
+     * Publish the queued records and close the delegate handler.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    /**
+     * @return the number of records dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
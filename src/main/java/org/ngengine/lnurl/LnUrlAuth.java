@@ -0,0 +1,193 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEUtils;
+
+/**
+ * An lnurl auth login service.
+ * <p>
+ * Unlike the other services, it is built from the lnurl itself, without fetching anything.
+ * </p>
+ */
+// lud-04
+public class LnUrlAuth implements LnUrlService {
+
+    private final URI url;
+    private final String k1;
+    private final String action;
+    private final transient LnUrlJsonCache json = new LnUrlJsonCache(this::toMap);
+
+    protected static boolean isAssignableTo(URI url) {
+        return "login".equals(getQueryParam(url, "tag"));
+    }
+
+    protected LnUrlAuth(URI url) {
+        if (!isAssignableTo(url)) {
+            throw new IllegalArgumentException("URL does not represent a login request");
+        }
+        this.url = url;
+        this.k1 = getQueryParam(url, "k1");
+        if (k1 == null || k1.length() != 64 || !isHex(k1)) {
+            throw new IllegalArgumentException("k1 must be 32 bytes hex encoded");
+        }
+        this.action = getQueryParam(url, "action");
+        if (url.getHost() == null) {
+            throw new IllegalArgumentException("URL does not have a domain");
+        }
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getQueryParam(URI url, String name) {
+        String query = url.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end == -1) {
+                end = query.length();
+            }
+            int eq = start + name.length();
+            if (eq < end && query.charAt(eq) == '=' && query.startsWith(name, start)) {
+                return URLDecoder.decode(query.substring(start + name.length() + 1, end), StandardCharsets.UTF_8);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * @return the domain the linking key is derived for
+     */
+    public String getDomain() {
+        return url.getHost();
+    }
+
+    /**
+     * @return the hex encoded challenge
+     */
+    public String getK1() {
+        return k1;
+    }
+
+    /**
+     * @return the action (register, login, link or auth), or null if not specified
+     */
+    @Nullable
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Get the url that submits the signed challenge.
+     * @param signer the linking key for the domain of this service
+     */
+    public URI getCallback(LnUrlAuthSigner signer) {
+        byte[] sig = signer.sign(NGEUtils.hexToBytes(k1));
+        return new LnUrlCallbackBuilder(url)
+            .param("sig", NGEUtils.bytesToHex(sig))
+            .param("key", NGEUtils.bytesToHex(signer.getPublicKey()))
+            .toURI();
+    }
+
+    public AsyncTask<Void> login(LnUrlAuthKeys keys) {
+        return login(keys, LnUrl.DEFAULT_TIMEOUT, null);
+    }
+
+    /**
+     * Sign the challenge with the linking key for the domain of this service and submit it.
+     * @param keys the linking keys
+     * @param timeout the request timeout
+     * @param transport the transport, or null to use the default transport
+     * @return an AsyncTask that completes when the service accepts the login, or fails with a {@link LnUrlException}
+     *          if the service rejects it
+     */
+    public AsyncTask<Void> login(LnUrlAuthKeys keys, Duration timeout, @Nullable LnUrlHttpTransport transport) {
+        Objects.requireNonNull(keys, "Keys cannot be null");
+        return LnUrlHttp.instrument(
+            LnUrlInstrumentation.Operation.LOGIN,
+            url.getHost(),
+            () ->
+                LnUrlHttp
+                    .get(getCallback(keys.getLinkingKey(getDomain())), timeout, null, transport)
+                    .then(body -> {
+                        try {
+                            LnUrlException.checkStatus(body);
+                        } catch (LnUrlException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return null;
+                    })
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "LNURL Auth";
+    }
+
+    @Override
+    public byte[] toJsonBytes() {
+        return json.get();
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("tag", "login");
+        map.put("k1", k1);
+        if (action != null) {
+            map.put("action", action);
+        }
+        return map;
+    }
+}
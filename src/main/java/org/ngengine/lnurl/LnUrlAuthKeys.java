@@ -0,0 +1,180 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * Derives the per-domain linking keys of a {@link LnUrlAuthKeychain} and keeps them in a bounded,
+ * least recently used, cache.
+ * <p>
+ * A repeated login to the same domain reuses the cached {@link LnUrlAuthSigner}, skipping both the HMAC of
+ * the domain and the key derivation.
+ * </p>
+ */
+// lud-05
+public class LnUrlAuthKeys {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private static final int HMAC_BLOCK_SIZE = 64;
+
+    private final LnUrlAuthKeychain keychain;
+    private final int maxEntries;
+    private final LinkedHashMap<String, LnUrlAuthSigner> linkingKeys;
+    private byte[] hashingKey;
+
+    private long hits;
+    private long misses;
+
+    public LnUrlAuthKeys(LnUrlAuthKeychain keychain) {
+        this(keychain, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param keychain the keychain
+     * @param maxEntries the maximum number of linking keys to keep, the least recently used are evicted first
+     */
+    public LnUrlAuthKeys(LnUrlAuthKeychain keychain, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        this.keychain = Objects.requireNonNull(keychain, "Keychain cannot be null");
+        this.maxEntries = maxEntries;
+        this.linkingKeys =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LnUrlAuthSigner> eldest) {
+                    return size() > LnUrlAuthKeys.this.maxEntries;
+                }
+            };
+    }
+
+    /**
+     * Get the linking key for a domain.
+     * @param domain the domain of the service
+     * @return the signer for the linking key
+     */
+    public LnUrlAuthSigner getLinkingKey(String domain) {
+        Objects.requireNonNull(domain, "Domain cannot be null");
+        byte[] hashingKey;
+        synchronized (this) {
+            LnUrlAuthSigner signer = linkingKeys.get(domain);
+            if (signer != null) {
+                hits++;
+                return signer;
+            }
+            misses++;
+            if (this.hashingKey == null) {
+                this.hashingKey = keychain.getHashingKey();
+            }
+            hashingKey = this.hashingKey;
+        }
+        LnUrlAuthSigner signer = keychain.deriveLinkingKey(getDerivationPath(hashingKey, domain));
+        synchronized (this) {
+            LnUrlAuthSigner raced = linkingKeys.putIfAbsent(domain, signer);
+            return raced != null ? raced : signer;
+        }
+    }
+
+    /**
+     * Compute the LUD-05 derivation path of the linking key for a domain.
+     * @param hashingKey the private key of m/138'/0
+     * @param domain the domain of the service
+     * @return the four unsigned 32 bit path elements that follow m/138'
+     */
+    public static long[] getDerivationPath(byte[] hashingKey, String domain) {
+        byte[] material = hmacSha256(hashingKey, domain.getBytes(StandardCharsets.UTF_8));
+        long[] path = new long[4];
+        for (int i = 0; i < 4; i++) {
+            path[i] =
+                ((material[i * 4] & 0xffL) << 24) |
+                ((material[i * 4 + 1] & 0xffL) << 16) |
+                ((material[i * 4 + 2] & 0xffL) << 8) |
+                (material[i * 4 + 3] & 0xffL);
+        }
+        return path;
+    }
+
+    static byte[] hmacSha256(byte[] key, byte[] message) {
+        try {
+            NGEPlatform platform = NGEPlatform.get();
+            if (key.length > HMAC_BLOCK_SIZE) {
+                key = platform.sha256(key);
+            }
+            byte[] inner = new byte[HMAC_BLOCK_SIZE + message.length];
+            byte[] outer = new byte[HMAC_BLOCK_SIZE + 32];
+            for (int i = 0; i < HMAC_BLOCK_SIZE; i++) {
+                byte k = i < key.length ? key[i] : 0;
+                inner[i] = (byte) (k ^ 0x36);
+                outer[i] = (byte) (k ^ 0x5c);
+            }
+            System.arraycopy(message, 0, inner, HMAC_BLOCK_SIZE, message.length);
+            System.arraycopy(platform.sha256(inner), 0, outer, HMAC_BLOCK_SIZE, 32);
+            return platform.sha256(outer);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to compute hmac-sha256", e);
+        }
+    }
+
+    /**
+     * Remove all the cached linking keys.
+     */
+    public synchronized void clear() {
+        linkingKeys.clear();
+    }
+
+    /**
+     * @return the number of cached linking keys
+     */
+    public synchronized int size() {
+        return linkingKeys.size();
+    }
+
+    /**
+     * @return the number of lookups that returned a cached linking key
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to derive the linking key
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
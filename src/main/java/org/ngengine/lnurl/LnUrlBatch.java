@@ -0,0 +1,285 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * Fetch invoices from many LNURL pay services at once.
+ * <p>
+ * Each request resolves its service with {@link LnUrl#getService(Duration)} and then fetches the invoice
+ * with {@link LnUrlPay#fetchInvoice(long, String, LnUrlPayerData, Duration, Map, String)}.
+ * The number of requests in flight is bounded globally and per host, so a large payout run does not
+ * flood a single wallet provider.
+ * A failure is reported in the result of the request that caused it and does not affect the others.
+ * </p>
+ */
+public class LnUrlBatch {
+
+    private static final LnUrlLogger logger = LnUrlLogger.get(LnUrlBatch.class);
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+    public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 4;
+
+    /**
+     * A request for an invoice.
+     */
+    public static class InvoiceRequest {
+
+        private final LnUrl lnurl;
+        private final long amount;
+        private final String comment;
+        private final LnUrlPayerData payerData;
+        private final String nostrZapRequest;
+
+        public InvoiceRequest(LnUrl lnurl, long amount) {
+            this(lnurl, amount, null, null, null);
+        }
+
+        public InvoiceRequest(
+            LnUrl lnurl,
+            long amount,
+            @Nullable String comment,
+            @Nullable LnUrlPayerData payerData,
+            @Nullable String nostrZapRequest
+        ) {
+            this.lnurl = Objects.requireNonNull(lnurl, "LnUrl cannot be null");
+            this.amount = amount;
+            this.comment = comment;
+            this.payerData = payerData;
+            this.nostrZapRequest = nostrZapRequest;
+        }
+
+        public LnUrl getLnUrl() {
+            return lnurl;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        @Nullable
+        public String getComment() {
+            return comment;
+        }
+
+        @Nullable
+        public LnUrlPayerData getPayerData() {
+            return payerData;
+        }
+
+        @Nullable
+        public String getNostrZapRequest() {
+            return nostrZapRequest;
+        }
+    }
+
+    /**
+     * The outcome of an {@link InvoiceRequest}.
+     */
+    public static class InvoiceResult {
+
+        private final InvoiceRequest request;
+        private final LnUrlPaymentResponse response;
+        private final Throwable error;
+
+        private InvoiceResult(InvoiceRequest request, LnUrlPaymentResponse response, Throwable error) {
+            this.request = request;
+            this.response = response;
+            this.error = error;
+        }
+
+        public InvoiceRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * @return the payment response, or null if the request failed
+         */
+        @Nullable
+        public LnUrlPaymentResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * @return the error that caused the request to fail, or null if it succeeded
+         */
+        @Nullable
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final LnUrlBoundedExecutor executor;
+    private final Duration timeout;
+    private final LnUrlHttpTransport transport;
+
+    public LnUrlBatch() {
+        this(DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY_PER_HOST, LnUrl.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Create a new batch runner.
+     * The limits are shared by every call to {@link #fetchInvoices(List)} on this instance.
+     * @param maxConcurrency the maximum number of requests in flight
+     * @param maxConcurrencyPerHost the maximum number of requests in flight to the same host
+     * @param timeout the timeout of each http request
+     */
+    public LnUrlBatch(int maxConcurrency, int maxConcurrencyPerHost, Duration timeout) {
+        this(maxConcurrency, maxConcurrencyPerHost, timeout, null);
+    }
+
+    /**
+     * Create a new batch runner that sends its requests with the given transport.
+     * @param maxConcurrency the maximum number of requests in flight
+     * @param maxConcurrencyPerHost the maximum number of requests in flight to the same host
+     * @param timeout the timeout of each http request
+     * @param transport the transport, or null to use the default transport
+     */
+    public LnUrlBatch(
+        int maxConcurrency,
+        int maxConcurrencyPerHost,
+        Duration timeout,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        this.executor = new LnUrlBoundedExecutor(maxConcurrency, maxConcurrencyPerHost);
+        this.timeout = Objects.requireNonNull(timeout, "Timeout cannot be null");
+        this.transport = transport;
+    }
+
+    /**
+     * Fetch an invoice for every request.
+     * @param requests the requests
+     * @return an AsyncTask that completes when every request is settled, with the results in the same order of the requests
+     */
+    public AsyncTask<List<InvoiceResult>> fetchInvoices(List<InvoiceRequest> requests) {
+        return fetchInvoices(requests, null);
+    }
+
+    /**
+     * Fetch an invoice for every request.
+     * @param requests the requests
+     * @param onResult called as soon as each request is settled, in completion order
+     * @return an AsyncTask that completes when every request is settled, with the results in the same order of the requests
+     */
+    public AsyncTask<List<InvoiceResult>> fetchInvoices(
+        List<InvoiceRequest> requests,
+        @Nullable Consumer<InvoiceResult> onResult
+    ) {
+        List<InvoiceRequest> reqs = new ArrayList<>(requests);
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    InvoiceResult[] results = new InvoiceResult[reqs.size()];
+                    AtomicInteger remaining = new AtomicInteger(reqs.size());
+                    if (reqs.isEmpty()) {
+                        res.accept(Collections.emptyList());
+                        return;
+                    }
+                    for (int i = 0; i < reqs.size(); i++) {
+                        int index = i;
+                        InvoiceRequest req = reqs.get(i);
+                        Consumer<InvoiceResult> settle = result -> {
+                            results[index] = result;
+                            if (onResult != null) {
+                                try {
+                                    onResult.accept(result);
+                                } catch (Exception e) {
+                                    logger.warning("Error in batch result listener: {0}", e.getMessage());
+                                }
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                res.accept(Collections.unmodifiableList(Arrays.asList(results)));
+                            }
+                        };
+                        executor
+                            .submit(req.getLnUrl().toURI().getHost(), () -> fetchInvoice(req))
+                            .then(r -> {
+                                settle.accept(new InvoiceResult(req, r, null));
+                                return null;
+                            })
+                            .catchException(e -> settle.accept(new InvoiceResult(req, null, e)));
+                    }
+                },
+                null
+            );
+    }
+
+    private AsyncTask<LnUrlPaymentResponse> fetchInvoice(InvoiceRequest req) {
+        try {
+            return req
+                .getLnUrl()
+                .<LnUrlService>getService(timeout, transport)
+                .compose(service -> {
+                    if (!(service instanceof LnUrlPay)) {
+                        throw new RuntimeException(
+                            new LnUrlException(
+                                LnUrlException.Status.INVALID,
+                                "Not a pay request: " + req.getLnUrl().toURI() + " (" + service.getName() + ")"
+                            )
+                        );
+                    }
+                    try {
+                        return ((LnUrlPay) service).fetchInvoice(
+                                req.getAmount(),
+                                req.getComment(),
+                                req.getPayerData(),
+                                timeout,
+                                null,
+                                req.getNostrZapRequest(),
+                                transport
+                            );
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+        } catch (LnUrlException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Bech32 helpers that work directly on 5 bit words and on UTF-8 text.
+ * Unlike the general purpose encoder, these do not enforce the 90 characters limit, since lnurls and bolt11
+ * invoices are usually longer than that. Strings are capped at {@link #MAX_LENGTH} characters instead.
+ */
+final class LnUrlBech32 {
+
+    /**
+     * The longest string that fits in a QR code, used as the length limit in place of the BIP-173 one.
+     */
+    static final int MAX_LENGTH = 7089;
+
+    private static final String CHARSET = "qpzry9x8gf2tvdw0s3jn54khce6mua7l";
+    private static final byte[] CHARSET_REV = new byte[128];
+    private static final int MAX_SCRATCH_SIZE = 4096;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+    private static final int[] GENERATOR = { 0x3b6a57b2, 0x26508e6d, 0x1ea119fa, 0x3d4233dd, 0x2a1462b3 };
+
+    static {
+        Arrays.fill(CHARSET_REV, (byte) -1);
+        for (int i = 0; i < CHARSET.length(); i++) {
+            CHARSET_REV[CHARSET.charAt(i)] = (byte) i;
+            CHARSET_REV[Character.toUpperCase(CHARSET.charAt(i))] = (byte) i;
+        }
+    }
+
+    private LnUrlBech32() {}
+
+    private static int polymod(int chk, int value) {
+        int top = chk >>> 25;
+        chk = ((chk & 0x1ffffff) << 5) ^ value;
+        for (int i = 0; i < 5; i++) {
+            if (((top >>> i) & 1) != 0) {
+                chk ^= GENERATOR[i];
+            }
+        }
+        return chk;
+    }
+
+    private static int toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static byte[] scratch(int size) {
+        byte[] buf = SCRATCH.get();
+        if (buf.length < size) {
+            buf = new byte[size];
+            if (size <= MAX_SCRATCH_SIZE) {
+                SCRATCH.set(buf);
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * Check the length, the characters and the case of s[start, end) and find the separator.
+     * @return the position of the separator
+     */
+    private static int findSeparator(CharSequence s, int start, int end) {
+        if (end - start > MAX_LENGTH) {
+            throw new IllegalArgumentException("Bech32 string too long");
+        }
+        int sep = -1;
+        boolean lower = false, upper = false;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 33 || c > 126) {
+                throw new IllegalArgumentException("Invalid bech32 character at position " + i);
+            }
+            if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            }
+            if (c == '1') {
+                sep = i;
+            }
+        }
+        if (lower && upper) {
+            throw new IllegalArgumentException("Mixed case bech32 string");
+        }
+        if (sep < start + 1 || sep + 7 > end) {
+            throw new IllegalArgumentException("Invalid bech32 separator position");
+        }
+        return sep;
+    }
+
+    private static int hrpChecksum(CharSequence s, int start, int end) {
+        int chk = 1;
+        for (int i = start; i < end; i++) {
+            chk = polymod(chk, toLower(s.charAt(i)) >> 5);
+        }
+        chk = polymod(chk, 0);
+        for (int i = start; i < end; i++) {
+            chk = polymod(chk, toLower(s.charAt(i)) & 0x1f);
+        }
+        return chk;
+    }
+
+    private static int charToWord(CharSequence s, int i) {
+        int v = CHARSET_REV[s.charAt(i)];
+        if (v == -1) {
+            throw new IllegalArgumentException("Invalid bech32 character at position " + i);
+        }
+        return v;
+    }
+
+    /**
+     * Decode the data part of a bech32 string into 5 bit words, checking the checksum.
+     * @param s the bech32 string, either all lower case or all upper case
+     * @return the data words, without the checksum
+     * @throws IllegalArgumentException if the string is not valid bech32
+     */
+    static byte[] decodeWords(CharSequence s) {
+        int len = s.length();
+        int sep = findSeparator(s, 0, len);
+        int chk = hrpChecksum(s, 0, sep);
+        byte[] words = new byte[len - sep - 7];
+        for (int i = sep + 1; i < len; i++) {
+            int v = charToWord(s, i);
+            chk = polymod(chk, v);
+            if (i - sep - 1 < words.length) {
+                words[i - sep - 1] = (byte) v;
+            }
+        }
+        if (chk != 1) {
+            throw new IllegalArgumentException("Invalid bech32 checksum");
+        }
+        return words;
+    }
+
+    /**
+     * Decode a bech32 string that carries UTF-8 text, such as a lnurl.
+     * The data is unpacked in a single pass into a reusable buffer, so the only allocation is the returned string.
+     * The string must be either all lower case or all upper case, as required by BIP-173 and LUD-01.
+     * @param s the input
+     * @param start the start of the bech32 string in the input
+     * @param end the end of the bech32 string in the input, exclusive
+     * @return the decoded text
+     * @throws IllegalArgumentException if the string is not valid bech32
+     */
+    static String decodeUtf8(CharSequence s, int start, int end) {
+        int sep = findSeparator(s, start, end);
+        int chk = hrpChecksum(s, start, sep);
+        int dataEnd = end - 6;
+        byte[] out = scratch((dataEnd - sep - 1) * 5 / 8);
+        int acc = 0, bits = 0, n = 0;
+        for (int i = sep + 1; i < end; i++) {
+            int v = charToWord(s, i);
+            chk = polymod(chk, v);
+            if (i < dataEnd) {
+                acc = ((acc << 5) | v) & 0xfff;
+                bits += 5;
+                if (bits >= 8) {
+                    bits -= 8;
+                    out[n++] = (byte) (acc >>> bits);
+                }
+            }
+        }
+        if (chk != 1) {
+            throw new IllegalArgumentException("Invalid bech32 checksum");
+        }
+        if (bits >= 5 || (acc & ((1 << bits) - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid bech32 padding");
+        }
+        return new String(out, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode UTF-8 text, such as an url, to a lower case bech32 string.
+     * The text is encoded into a reusable buffer and packed straight into the output characters.
+     * @param hrp the human readable part, in lower case
+     * @param text the text
+     * @return the bech32 string
+     * @throws IllegalArgumentException if the bech32 string would be longer than {@link #MAX_LENGTH}, so it could
+     *         not be decoded
+     */
+    static String encodeUtf8(String hrp, CharSequence text) {
+        int hrpLength = hrp.length();
+        // the most bytes whose encoding, with the hrp, the separator and the checksum, fits in MAX_LENGTH
+        int maxBytes = Math.max(0, MAX_LENGTH - hrpLength - 7) * 5 / 8;
+        if (text.length() > maxBytes) {
+            throw new IllegalArgumentException("Bech32 string too long");
+        }
+        // a char takes at most 3 bytes, and the loop stops at most 4 bytes past the limit
+        byte[] data = scratch(Math.min(text.length() * 3, maxBytes + 4));
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                data[n++] = (byte) c;
+            } else if (c < 0x800) {
+                data[n++] = (byte) (0xc0 | (c >> 6));
+                data[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                data[n++] = (byte) (0xf0 | (cp >> 18));
+                data[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                data[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                data[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                data[n++] = '?';
+            } else {
+                data[n++] = (byte) (0xe0 | (c >> 12));
+                data[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                data[n++] = (byte) (0x80 | (c & 0x3f));
+            }
+            if (n > maxBytes) {
+                throw new IllegalArgumentException("Bech32 string too long");
+            }
+        }
+
+        char[] out = new char[hrpLength + 1 + (n * 8 + 4) / 5 + 6];
+        hrp.getChars(0, hrpLength, out, 0);
+        out[hrpLength] = '1';
+        int p = hrpLength + 1;
+        int chk = hrpChecksum(hrp, 0, hrpLength);
+        int acc = 0, bits = 0;
+        for (int i = 0; i < n; i++) {
+            acc = ((acc << 8) | (data[i] & 0xff)) & 0xfff;
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                int v = (acc >>> bits) & 0x1f;
+                chk = polymod(chk, v);
+                out[p++] = CHARSET.charAt(v);
+            }
+        }
+        if (bits > 0) {
+            int v = (acc << (5 - bits)) & 0x1f;
+            chk = polymod(chk, v);
+            out[p++] = CHARSET.charAt(v);
+        }
+        for (int i = 0; i < 6; i++) {
+            chk = polymod(chk, 0);
+        }
+        chk ^= 1;
+        for (int i = 0; i < 6; i++) {
+            out[p++] = CHARSET.charAt((chk >>> (5 * (5 - i))) & 0x1f);
+        }
+        return new String(out);
+    }
+
+    /**
+     * Convert a range of 5 bit words to bytes, dropping the trailing padding bits.
+     */
+    static byte[] wordsToBytes(byte[] words, int offset, int length) {
+        byte[] out = new byte[length * 5 / 8];
+        int acc = 0, bits = 0, j = 0;
+        for (int i = offset; i < offset + length; i++) {
+            acc = ((acc << 5) | words[i]) & 0xfff;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out[j++] = (byte) (acc >>> bits);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * Runs asynchronous jobs with a global and a per-key bound on the number of jobs in flight.
+ * Jobs are started in submission order, skipping those whose key is saturated.
+ * <p>
+ * Every key has its own FIFO queue, and jobs whose key has a free slot wait in a global ready queue, so
+ * submitting and completing a job costs O(1). Jobs are started by a loop rather than recursively, so jobs that
+ * complete synchronously do not grow the stack.
+ * </p>
+ */
+final class LnUrlBoundedExecutor {
+
+    private static class Job<T> {
+
+        private final String key;
+        private final Supplier<AsyncTask<T>> job;
+        private final Consumer<T> res;
+        private final Consumer<Throwable> rej;
+
+        private Job(String key, Supplier<AsyncTask<T>> job, Consumer<T> res, Consumer<Throwable> rej) {
+            this.key = key;
+            this.job = job;
+            this.res = res;
+            this.rej = rej;
+        }
+    }
+
+    private static class KeyState {
+
+        private final ArrayDeque<Job<?>> queue = new ArrayDeque<>();
+        // jobs of this key that are running or waiting in the ready queue
+        private int active;
+    }
+
+    private final int maxConcurrency;
+    private final int maxConcurrencyPerKey;
+    private final ArrayDeque<Job<?>> ready = new ArrayDeque<>();
+    private final Map<String, KeyState> keys = new HashMap<>();
+    private int pending;
+    private int running;
+    private boolean draining;
+
+    LnUrlBoundedExecutor(int maxConcurrency, int maxConcurrencyPerKey) {
+        if (maxConcurrency < 1 || maxConcurrencyPerKey < 1) {
+            throw new IllegalArgumentException("Concurrency limits must be greater than 0");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxConcurrencyPerKey = maxConcurrencyPerKey;
+    }
+
+    <T> AsyncTask<T> submit(String key, Supplier<AsyncTask<T>> job) {
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    synchronized (this) {
+                        Job<T> j = new Job<>(key, job, res, rej);
+                        KeyState state = keys.computeIfAbsent(key, k -> new KeyState());
+                        if (state.active < maxConcurrencyPerKey) {
+                            state.active++;
+                            ready.add(j);
+                        } else {
+                            state.queue.add(j);
+                        }
+                        pending++;
+                    }
+                    drain();
+                },
+                null
+            );
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                // the thread that is draining will pick up the new state
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Job<?> job;
+            synchronized (this) {
+                if (running >= maxConcurrency || ready.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                job = ready.poll();
+                pending--;
+                running++;
+            }
+            start(job);
+        }
+    }
+
+    private <T> void start(Job<T> job) {
+        AsyncTask<T> task;
+        try {
+            task = job.job.get();
+        } catch (Throwable e) {
+            done(job);
+            job.rej.accept(e);
+            return;
+        }
+        task
+            .then(r -> {
+                done(job);
+                job.res.accept(r);
+                return null;
+            })
+            .catchException(e -> {
+                done(job);
+                job.rej.accept(e);
+            });
+    }
+
+    private void done(Job<?> job) {
+        synchronized (this) {
+            running--;
+            KeyState state = keys.get(job.key);
+            Job<?> next = state.queue.poll();
+            if (next != null) {
+                ready.add(next);
+            } else if (--state.active == 0) {
+                keys.remove(job.key);
+            }
+        }
+        drain();
+    }
+
+    synchronized int getPending() {
+        return pending;
+    }
+
+    synchronized int getRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import org.ngengine.platform.NGEUtils;
+
+/**
+ * Builds the callback urls of LNURL services.
+ * <p>
+ * Parameters are appended to a precomputed prefix of the base url, and values are percent-encoded in a single
+ * pass, with the same rules of {@link java.net.URLEncoder}. Numbers are written directly.
+ * The result can be read as a String, as bytes or as a URI.
+ * </p>
+ * <p>
+ * A builder can be reused with {@link #reset()}, but it is not thread safe.
+ * </p>
+ */
+public final class LnUrlCallbackBuilder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['*'] = true;
+        UNRESERVED['_'] = true;
+    }
+
+    private final String prefix;
+    private final StringBuilder sb;
+
+    /**
+     * Create a builder for the given base url.
+     * @param base the base url, it can already have a query
+     */
+    public LnUrlCallbackBuilder(URI base) {
+        this(prefix(base.toString()));
+    }
+
+    private LnUrlCallbackBuilder(String prefix) {
+        this.prefix = prefix;
+        this.sb = new StringBuilder(prefix.length() + 128);
+        this.sb.append(prefix);
+    }
+
+    /**
+     * Create a builder from a prefix computed by {@link #prefix(String)}.
+     */
+    static LnUrlCallbackBuilder fromPrefix(String prefix) {
+        return new LnUrlCallbackBuilder(prefix);
+    }
+
+    /**
+     * Compute the prefix parameters are appended to.
+     * @param base the base url
+     * @return the base url followed by '?' or '&amp;'
+     */
+    static String prefix(String base) {
+        int q = base.indexOf('?');
+        if (q < 0) {
+            return base + '?';
+        }
+        char last = base.charAt(base.length() - 1);
+        return last == '?' || last == '&' ? base : base + '&';
+    }
+
+    /**
+     * Remove all the parameters, keeping the base url.
+     * @return this builder
+     */
+    public LnUrlCallbackBuilder reset() {
+        sb.setLength(prefix.length());
+        return this;
+    }
+
+    private void name(String name) {
+        if (sb.length() > prefix.length()) {
+            sb.append('&');
+        }
+        encode(name);
+        sb.append('=');
+    }
+
+    /**
+     * Append a parameter.
+     * @param name the parameter name
+     * @param value the value, it is percent-encoded
+     * @return this builder
+     */
+    public LnUrlCallbackBuilder param(String name, CharSequence value) {
+        name(name);
+        encode(value);
+        return this;
+    }
+
+    /**
+     * Append a numeric parameter.
+     * @param name the parameter name
+     * @param value the value
+     * @return this builder
+     */
+    public LnUrlCallbackBuilder param(String name, long value) {
+        name(name);
+        sb.append(value);
+        return this;
+    }
+
+    /**
+     * Append a parameter whose value is already utf-8 encoded, eg. a json document.
+     * @param name the parameter name
+     * @param utf8 the value, it is percent-encoded
+     * @return this builder
+     */
+    public LnUrlCallbackBuilder param(String name, byte[] utf8) {
+        name(name);
+        sb.ensureCapacity(sb.length() + utf8.length * 3);
+        for (byte b : utf8) {
+            int c = b & 0xff;
+            if (c < 0x80 && UNRESERVED[c]) {
+                sb.append((char) c);
+            } else if (c == ' ') {
+                sb.append('+');
+            } else {
+                hex(c);
+            }
+        }
+        return this;
+    }
+
+    private void encode(CharSequence s) {
+        int n = s.length();
+        sb.ensureCapacity(sb.length() + n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    sb.append(c);
+                } else if (c == ' ') {
+                    sb.append('+');
+                } else {
+                    hex(c);
+                }
+            } else if (c < 0x800) {
+                hex(0xc0 | (c >> 6));
+                hex(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                hex(0xf0 | (cp >> 18));
+                hex(0x80 | ((cp >> 12) & 0x3f));
+                hex(0x80 | ((cp >> 6) & 0x3f));
+                hex(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, same replacement used by URLEncoder
+                hex('?');
+            } else {
+                hex(0xe0 | (c >> 12));
+                hex(0x80 | ((c >> 6) & 0x3f));
+                hex(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void hex(int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+    }
+
+    /**
+     * @return the callback url
+     */
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+    /**
+     * @return the callback url as utf-8 bytes
+     */
+    public byte[] toBytes() {
+        int n = sb.length();
+        byte[] out = new byte[n];
+        for (int i = 0; i < n; i++) {
+            char c = sb.charAt(i);
+            if (c >= 0x80) {
+                // only the base url can contain non ascii characters
+                return sb.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            out[i] = (byte) c;
+        }
+        return out;
+    }
+
+    /**
+     * @return the callback url as a URI
+     */
+    public URI toURI() {
+        return NGEUtils.safeURI(sb.toString());
+    }
+}
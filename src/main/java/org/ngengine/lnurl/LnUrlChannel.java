@@ -0,0 +1,200 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEUtils;
+
+/**
+ * An lnurl channel request service
+ * <p>
+ * The wallet is expected to connect to the node at {@link #getUri()} before calling {@link #open(String, boolean)}.
+ * </p>
+ */
+// lud-02
+public class LnUrlChannel implements LnUrlService {
+
+    protected static boolean isAssignableTo(Map<String, Object> data) {
+        return "channelRequest".equals(data.get("tag"));
+    }
+
+    private final String uri;
+    private final URI callback;
+    private final String k1;
+    private final transient LnUrlJsonCache json = new LnUrlJsonCache(this::toMap);
+
+    protected LnUrlChannel(String uri, URI callback, String k1) {
+        if (uri == null || uri.isEmpty()) {
+            throw new IllegalArgumentException("Node uri cannot be null or empty");
+        }
+        if (k1 == null || k1.isEmpty()) {
+            throw new IllegalArgumentException("k1 cannot be null or empty");
+        }
+        this.uri = uri;
+        this.callback = callback;
+        this.k1 = k1;
+    }
+
+    protected LnUrlChannel(Map<String, Object> data) {
+        this(
+            NGEUtils.safeString(requireTag(data).get("uri")),
+            NGEUtils.safeURI(data.get("callback")),
+            NGEUtils.safeString(data.get("k1"))
+        );
+    }
+
+    private static Map<String, Object> requireTag(Map<String, Object> data) {
+        if (!isAssignableTo(data)) {
+            throw new IllegalArgumentException("Data does not represent a channel request");
+        }
+        return data;
+    }
+
+    /**
+     * @return the uri of the remote node, in the form node_key@ip_address:port_number
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    public URI getCallback() {
+        return callback;
+    }
+
+    public String getK1() {
+        return k1;
+    }
+
+    /**
+     * Get the callback url that asks the service to open a channel.
+     * @param remoteId the node id of the wallet
+     * @param privateChannel true to ask for a private channel
+     */
+    public URI getOpenCallback(String remoteId, boolean privateChannel) {
+        return buildCallback(remoteId).param("private", privateChannel ? 1 : 0).toURI();
+    }
+
+    /**
+     * Get the callback url that cancels the channel request.
+     * @param remoteId the node id of the wallet
+     */
+    public URI getCancelCallback(String remoteId) {
+        return buildCallback(remoteId).param("cancel", 1).toURI();
+    }
+
+    private LnUrlCallbackBuilder buildCallback(String remoteId) {
+        if (remoteId == null || remoteId.isEmpty()) {
+            throw new IllegalArgumentException("Remote id cannot be null or empty");
+        }
+        return new LnUrlCallbackBuilder(callback).param("k1", k1).param("remoteid", remoteId);
+    }
+
+    public AsyncTask<Void> open(String remoteId, boolean privateChannel) {
+        return open(remoteId, privateChannel, LnUrl.DEFAULT_TIMEOUT, null);
+    }
+
+    /**
+     * Ask the service to open a channel to the wallet node.
+     * @param remoteId the node id of the wallet
+     * @param privateChannel true to ask for a private channel
+     * @param timeout the request timeout
+     * @param transport the transport, or null to use the default transport
+     * @return an AsyncTask that completes when the service accepts the request, or fails with a {@link LnUrlException}
+     *          if the service rejects it
+     */
+    public AsyncTask<Void> open(
+        String remoteId,
+        boolean privateChannel,
+        Duration timeout,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        return submit(getOpenCallback(remoteId, privateChannel), timeout, transport);
+    }
+
+    public AsyncTask<Void> cancel(String remoteId) {
+        return cancel(remoteId, LnUrl.DEFAULT_TIMEOUT, null);
+    }
+
+    /**
+     * Cancel the channel request.
+     * @param remoteId the node id of the wallet
+     * @param timeout the request timeout
+     * @param transport the transport, or null to use the default transport
+     * @return an AsyncTask that completes when the service accepts the cancellation
+     */
+    public AsyncTask<Void> cancel(String remoteId, Duration timeout, @Nullable LnUrlHttpTransport transport) {
+        return submit(getCancelCallback(remoteId), timeout, transport);
+    }
+
+    private AsyncTask<Void> submit(URI url, Duration timeout, @Nullable LnUrlHttpTransport transport) {
+        return LnUrlHttp.instrument(
+            LnUrlInstrumentation.Operation.CHANNEL,
+            url.getHost(),
+            () ->
+                LnUrlHttp
+                    .get(url, timeout, null, transport)
+                    .then(body -> {
+                        try {
+                            LnUrlException.checkStatus(body);
+                        } catch (LnUrlException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return null;
+                    })
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "LNURL Channel Request";
+    }
+
+    @Override
+    public byte[] toJsonBytes() {
+        return json.get();
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("tag", "channelRequest");
+        map.put("uri", uri);
+        map.put("callback", callback.toString());
+        map.put("k1", k1);
+        return map;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An overall time budget shared by the requests of a payment flow.
+ * <p>
+ * Pass the same deadline to {@link LnUrl#getService(Duration, LnUrlHttpTransport, LnUrlDeadline)} and to
+ * {@code fetchInvoice} on the resulting {@link LnUrlPay}, and it is carried over to
+ * {@link LnUrlPaymentResponse#verify(Duration)}: every request, retry and backoff is bounded by the time that
+ * is left, instead of starting again from its own timeout.
+ * Requests started after the deadline fail with a {@link TimeoutException}.
+ * </p>
+ */
+public final class LnUrlDeadline {
+
+    private final long deadlineNanos;
+
+    private LnUrlDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Create a deadline that expires after the given time.
+     * @param timeout the time budget, starting now
+     * @return the deadline
+     */
+    public static LnUrlDeadline after(Duration timeout) {
+        Objects.requireNonNull(timeout, "Timeout cannot be null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        return new LnUrlDeadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * @return the time left before the deadline, or zero if it is expired
+     */
+    public Duration getRemaining() {
+        return Duration.ofNanos(Math.max(0, remainingNanos()));
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * Bound a request timeout to the time left.
+     * @param timeout the timeout of the request, or null for none
+     * @return the shorter of the timeout and the time left
+     */
+    Duration bound(@Nullable Duration timeout) {
+        Duration remaining = getRemaining();
+        return timeout == null || timeout.compareTo(remaining) > 0 ? remaining : timeout;
+    }
+
+    TimeoutException exceeded() {
+        return new TimeoutException("LNURL deadline exceeded");
+    }
+
+    @Override
+    public String toString() {
+        return "LnUrlDeadline{remaining=" + getRemaining() + "}";
+    }
+}
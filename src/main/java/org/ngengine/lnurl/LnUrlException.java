@@ -31,6 +31,7 @@
 
 package org.ngengine.lnurl;
 
+import java.io.IOException;
 import java.util.Map;
 import org.ngengine.platform.NGEUtils;
 
@@ -41,6 +42,7 @@ public class LnUrlException extends Exception implements LnUrlService {
         ERROR,
         NOT_FOUND,
         INVALID,
+        REJECTED,
     }
 
     private final Status status;
@@ -62,11 +64,51 @@ public class LnUrlException extends Exception implements LnUrlService {
         this.status = Status.valueOf(statusStr != null ? statusStr.toUpperCase() : "ERROR");
     }
 
+    public Status getStatus() {
+        return status;
+    }
+
     @Override
     public String getMessage() {
         return "LnUrlServiceException: " + super.getMessage() + " (Status: " + status + ")";
     }
 
+    private static final String[] STATUS_FIELDS = { "status", "reason" };
+
+    /**
+     * Check a {"status": "OK"} response.
+     * @throws LnUrlException if the response is an error or is not a status response
+     */
+    static void checkStatus(String json) throws LnUrlException {
+        String status = null, reason = null;
+        try {
+            LnUrlJsonReader reader = new LnUrlJsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(STATUS_FIELDS)) {
+                    case 0:
+                        status = reader.nextString();
+                        break;
+                    case 1:
+                        reason = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            reader.endDocument();
+        } catch (IOException e) {
+            throw new LnUrlException(Status.INVALID, "Invalid LNURL status response: " + e.getMessage(), e);
+        }
+        if ("ERROR".equals(status)) {
+            throw new LnUrlException(Status.ERROR, reason);
+        }
+        if (!"OK".equals(status)) {
+            throw new LnUrlException(Status.INVALID, "Invalid LNURL status response: " + json);
+        }
+    }
+
     public static boolean isAssignableTo(Map<String, Object> data) {
         return "ERROR".equals(data.get("status"));
     }
@@ -0,0 +1,351 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.ngengine.platform.AsyncExecutor;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * A per-host bulkhead for LNURL http requests.
+ * <p>
+ * Every host can have at most {@code maxInFlightPerHost} requests in flight. Further requests wait in a
+ * per-host queue of at most {@code maxQueuedPerHost} entries, for at most {@code queueTimeout}.
+ * Requests that do not fit in the queue, or that wait for too long, fail with a {@link LnUrlException}
+ * with status {@link LnUrlException.Status#REJECTED}, so that a slow host only degrades its own requests.
+ * Queued requests are started by a loop rather than recursively, so requests that complete synchronously do not
+ * grow the stack.
+ * </p>
+ * <p>
+ * Set it with {@link LnUrl#setHostLimiter(LnUrlHostLimiter)}. The limiter belongs to whoever created it:
+ * replacing it does not close it, call {@link #close()} once it is no longer used to stop its timer thread.
+ * </p>
+ */
+public class LnUrlHostLimiter implements AutoCloseable {
+
+    private static final LnUrlLogger logger = LnUrlLogger.get(LnUrlHostLimiter.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_HOST = 8;
+    public static final int DEFAULT_MAX_QUEUED_PER_HOST = 64;
+    public static final Duration DEFAULT_QUEUE_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The number of hosts whose rejection count is remembered after they become idle.
+     */
+    public static final int MAX_TRACKED_HOSTS = 1024;
+
+    private static class Waiter<T> {
+
+        private final String key;
+        private final Supplier<AsyncTask<T>> request;
+        private final Consumer<T> res;
+        private final Consumer<Throwable> rej;
+
+        private Waiter(String key, Supplier<AsyncTask<T>> request, Consumer<T> res, Consumer<Throwable> rej) {
+            this.key = key;
+            this.request = request;
+            this.res = res;
+            this.rej = rej;
+        }
+    }
+
+    private static class HostState {
+
+        private final ArrayDeque<Waiter<?>> queue = new ArrayDeque<>();
+        private int inFlight;
+    }
+
+    private final int maxInFlightPerHost;
+    private final int maxQueuedPerHost;
+    private final Duration queueTimeout;
+    private final Map<String, HostState> hosts = new HashMap<>();
+    private final Map<String, Long> rejectedPerHost = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_HOSTS;
+        }
+    };
+    // waiters that hold a slot and still have to be started
+    private final ArrayDeque<Waiter<?>> ready = new ArrayDeque<>();
+    private boolean draining;
+    private AsyncExecutor executor;
+    private boolean closed;
+    private long rejected;
+
+    public LnUrlHostLimiter() {
+        this(DEFAULT_MAX_IN_FLIGHT_PER_HOST, DEFAULT_MAX_QUEUED_PER_HOST, DEFAULT_QUEUE_TIMEOUT);
+    }
+
+    /**
+     * Create a new limiter.
+     * @param maxInFlightPerHost the maximum number of requests in flight to the same host
+     * @param maxQueuedPerHost the maximum number of requests waiting for a slot on the same host
+     * @param queueTimeout the maximum time a request can wait for a slot
+     */
+    public LnUrlHostLimiter(int maxInFlightPerHost, int maxQueuedPerHost, Duration queueTimeout) {
+        if (maxInFlightPerHost < 1) {
+            throw new IllegalArgumentException("maxInFlightPerHost must be greater than 0");
+        }
+        if (maxQueuedPerHost < 0) {
+            throw new IllegalArgumentException("maxQueuedPerHost cannot be negative");
+        }
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.maxQueuedPerHost = maxQueuedPerHost;
+        this.queueTimeout = Objects.requireNonNull(queueTimeout, "Queue timeout cannot be null");
+    }
+
+    /**
+     * Run a request for the given host as soon as the host has a free slot.
+     * @param host the host the request is sent to
+     * @param request starts the request
+     * @return an AsyncTask that completes with the result of the request, or fails if the request is rejected
+     */
+    public <T> AsyncTask<T> run(String host, Supplier<AsyncTask<T>> request) {
+        String key = host == null ? "" : host;
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    Waiter<T> waiter = new Waiter<>(key, request, res, rej);
+                    boolean start = false;
+                    boolean reject = false;
+                    boolean rejectClosed = false;
+                    synchronized (this) {
+                        HostState state = closed ? null : hosts.computeIfAbsent(key, k -> new HostState());
+                        if (state == null) {
+                            rejectClosed = true;
+                        } else if (state.inFlight < maxInFlightPerHost) {
+                            state.inFlight++;
+                            ready.add(waiter);
+                            start = true;
+                        } else if (state.queue.size() < maxQueuedPerHost) {
+                            state.queue.add(waiter);
+                        } else {
+                            countRejected(key);
+                            reject = true;
+                        }
+                    }
+                    if (start) {
+                        drain();
+                    } else if (rejectClosed) {
+                        rej.accept(new LnUrlException(LnUrlException.Status.REJECTED, "The host limiter is closed"));
+                    } else if (reject) {
+                        logger.fine("Rejected request to {0}: queue is full", key);
+                        rej.accept(new LnUrlException(LnUrlException.Status.REJECTED, "Too many pending requests to " + key));
+                    } else {
+                        scheduleExpiration(key, waiter);
+                    }
+                },
+                null
+            );
+    }
+
+    private void scheduleExpiration(String key, Waiter<?> waiter) {
+        AsyncExecutor executor;
+        synchronized (this) {
+            if (closed) {
+                // close() rejected the waiter, or is about to
+                return;
+            }
+            if (this.executor == null) {
+                this.executor = NGEPlatform.get().newAsyncExecutor(LnUrlHostLimiter.class);
+            }
+            executor = this.executor;
+        }
+        executor.runLater(
+            () -> {
+                boolean expired;
+                synchronized (this) {
+                    HostState state = hosts.get(key);
+                    expired = state != null && state.queue.remove(waiter);
+                    if (expired) {
+                        countRejected(key);
+                    }
+                }
+                if (expired) {
+                    logger.fine("Rejected request to {0}: queue timeout", key);
+                    waiter.rej.accept(
+                        new LnUrlException(
+                            LnUrlException.Status.REJECTED,
+                            "Timed out waiting for a free slot for " + key + " after " + queueTimeout
+                        )
+                    );
+                }
+                return null;
+            },
+            queueTimeout.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                // the thread that is draining will start the new waiters
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Waiter<?> waiter;
+            synchronized (this) {
+                waiter = ready.poll();
+                if (waiter == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            start(waiter);
+        }
+    }
+
+    private <T> void start(Waiter<T> waiter) {
+        AsyncTask<T> task;
+        try {
+            task = waiter.request.get();
+        } catch (Throwable e) {
+            release(waiter.key);
+            waiter.rej.accept(e);
+            return;
+        }
+        task
+            .then(r -> {
+                release(waiter.key);
+                waiter.res.accept(r);
+                return null;
+            })
+            .catchException(e -> {
+                release(waiter.key);
+                waiter.rej.accept(e);
+            });
+    }
+
+    private void release(String key) {
+        synchronized (this) {
+            HostState state = hosts.get(key);
+            Waiter<?> next = state.queue.poll();
+            if (next != null) {
+                // the slot passes to the next waiter
+                ready.add(next);
+            } else if (--state.inFlight == 0) {
+                hosts.remove(key);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Close this limiter and stop its timer thread.
+     * Requests waiting for a slot are rejected, requests in flight complete normally, and new requests are
+     * rejected with status {@link LnUrlException.Status#REJECTED}.
+     */
+    @Override
+    public void close() {
+        AsyncExecutor executor;
+        List<Waiter<?>> waiters = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (HostState state : hosts.values()) {
+                waiters.addAll(state.queue);
+                state.queue.clear();
+            }
+            executor = this.executor;
+            this.executor = null;
+        }
+        for (Waiter<?> waiter : waiters) {
+            waiter.rej.accept(new LnUrlException(LnUrlException.Status.REJECTED, "The host limiter is closed"));
+        }
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    private void countRejected(String key) {
+        rejected++;
+        rejectedPerHost.merge(key, 1L, Long::sum);
+    }
+
+    /**
+     * @param host the host
+     * @return the number of requests in flight to the host
+     */
+    public synchronized int getInFlight(String host) {
+        HostState state = hosts.get(host);
+        return state == null ? 0 : state.inFlight;
+    }
+
+    /**
+     * @param host the host
+     * @return the number of requests waiting for a slot on the host
+     */
+    public synchronized int getQueueDepth(String host) {
+        HostState state = hosts.get(host);
+        return state == null ? 0 : state.queue.size();
+    }
+
+    /**
+     * @param host the host
+     * @return the number of requests to the host that were rejected because the queue was full or timed out,
+     *         only the {@link #MAX_TRACKED_HOSTS} most recently rejected hosts are tracked
+     */
+    public synchronized long getRejected(String host) {
+        return rejectedPerHost.getOrDefault(host, 0L);
+    }
+
+    /**
+     * @return the number of hosts with requests in flight or waiting
+     */
+    synchronized int getActiveHosts() {
+        return hosts.size();
+    }
+
+    /**
+     * @return the number of requests rejected for all the hosts
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * The single path every LNURL http request goes through.
+ */
+final class LnUrlHttp {
+
+    /**
+     * Sends a request with a transport, returning either the body or the whole response.
+     */
+    @FunctionalInterface
+    private interface Request<T> {
+        AsyncTask<T> send(LnUrlHttpTransport transport, String url, Duration timeout, @Nullable Map<String, String> headers);
+    }
+
+    private static final Request<String> BODY = LnUrlHttpTransport::httpGet;
+    private static final Request<LnUrlHttpResponse> RESPONSE = LnUrlHttpTransport::httpGetResponse;
+
+    private LnUrlHttp() {}
+
+    static AsyncTask<String> get(
+        URI url,
+        Duration timeout,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        return get(url.getHost(), url.toString(), timeout, headers, transport);
+    }
+
+    /**
+     * Send a request to an url that was built as a string, eg. by a {@link LnUrlCallbackBuilder}.
+     * @param host the host of the url
+     * @param url the url
+     */
+    static AsyncTask<String> get(
+        String host,
+        String url,
+        Duration timeout,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        return get(host, url, timeout, null, headers, transport);
+    }
+
+    /**
+     * Send a request bounded by a deadline.
+     * The deadline is applied when the request is sent, so the time it waits for the {@link LnUrlHostLimiter}
+     * counts against it.
+     * @param deadline the deadline, or null for none
+     * @return an AsyncTask that fails with a {@link java.util.concurrent.TimeoutException} if the deadline is expired
+     */
+    static AsyncTask<String> get(
+        String host,
+        String url,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        return get(BODY, host, url, timeout, deadline, headers, transport);
+    }
+
+    private static <T> AsyncTask<T> get(
+        Request<T> request,
+        String host,
+        String url,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        LnUrlHttpTransport t = transport != null ? transport : LnUrl.getDefaultTransport();
+        LnUrlHostLimiter limiter = LnUrl.getHostLimiter();
+        if (limiter == null) {
+            return send(request, t, url, timeout, deadline, headers);
+        }
+        return limiter.run(host, () -> send(request, t, url, timeout, deadline, headers));
+    }
+
+    private static <T> AsyncTask<T> send(
+        Request<T> request,
+        LnUrlHttpTransport transport,
+        String url,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable Map<String, String> headers
+    ) {
+        if (deadline == null) {
+            return request.send(transport, url, timeout, headers);
+        }
+        if (deadline.isExpired()) {
+            return NGEPlatform.get().promisify((res, rej) -> rej.accept(deadline.exceeded()), null);
+        }
+        return request.send(transport, url, deadline.bound(timeout), headers);
+    }
+
+    /**
+     * Send a request that is safe to repeat, retrying and hedging it with the {@link LnUrlRetryPolicy}, if one is set.
+     * @param deadline the deadline, or null for none
+     */
+    static AsyncTask<String> getIdempotent(
+        URI url,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        return getIdempotent(BODY, url, timeout, deadline, headers, transport);
+    }
+
+    /**
+     * Send a request that is safe to repeat and keep the response headers, see
+     * {@link LnUrlHttpTransport#httpGetResponse(String, Duration, Map)}.
+     * @param deadline the deadline, or null for none
+     */
+    static AsyncTask<LnUrlHttpResponse> getIdempotentResponse(
+        URI url,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        return getIdempotent(RESPONSE, url, timeout, deadline, headers, transport);
+    }
+
+    private static <T> AsyncTask<T> getIdempotent(
+        Request<T> request,
+        URI url,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        @Nullable Map<String, String> headers,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        String host = url.getHost();
+        String u = url.toString();
+        LnUrlRetryPolicy policy = LnUrl.getRetryPolicy();
+        if (policy == null) {
+            return get(request, host, u, timeout, deadline, headers, transport);
+        }
+        return policy.run(host, t -> get(request, host, u, t, deadline, headers, transport), timeout, deadline);
+    }
+
+    /**
+     * Run an operation and report it to the {@link LnUrlInstrumentation}, if one is set.
+     * @param operation the operation
+     * @param host the host the operation sends its request to
+     * @param task starts the operation, including the parsing of its response
+     */
+    static <T> AsyncTask<T> instrument(LnUrlInstrumentation.Operation operation, String host, Supplier<AsyncTask<T>> task) {
+        LnUrlInstrumentation instr = LnUrl.getInstrumentation();
+        if (instr == null) {
+            return task.get();
+        }
+        long start = System.nanoTime();
+        Object context = instr.startRequest(operation, host);
+        AsyncTask<T> t;
+        try {
+            t = task.get();
+        } catch (RuntimeException e) {
+            instr.onRequestError(operation, host, System.nanoTime() - start, e, context);
+            throw e;
+        }
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) ->
+                    t
+                        .then(r -> {
+                            instr.onRequestEnd(operation, host, System.nanoTime() - start, context);
+                            res.accept(r);
+                            return null;
+                        })
+                        .catchException(e -> {
+                            instr.onRequestError(operation, host, System.nanoTime() - start, e, context);
+                            rej.accept(e);
+                        }),
+                null
+            );
+    }
+
+    /**
+     * @return the start time to pass to {@link #parseEnd(LnUrlInstrumentation.Operation, long)}, or 0 if
+     *         there is no instrumentation
+     */
+    static long parseStart() {
+        return LnUrl.getInstrumentation() != null ? System.nanoTime() : 0;
+    }
+
+    static void parseEnd(LnUrlInstrumentation.Operation operation, long start) {
+        LnUrlInstrumentation instr;
+        if (start != 0 && (instr = LnUrl.getInstrumentation()) != null) {
+            instr.onParse(operation, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * A response received by a {@link LnUrlHttpTransport}: the body and the response headers.
+ */
+public final class LnUrlHttpResponse {
+
+    private final String body;
+    private final Map<String, String> headers;
+
+    /**
+     * @param body the response body
+     * @param headers the response headers, can be null. Header names are case insensitive
+     */
+    public LnUrlHttpResponse(String body, @Nullable Map<String, String> headers) {
+        this.body = Objects.requireNonNull(body, "Body cannot be null");
+        if (headers == null || headers.isEmpty()) {
+            this.headers = Collections.emptyMap();
+        } else {
+            Map<String, String> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            map.putAll(headers);
+            this.headers = Collections.unmodifiableMap(map);
+        }
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the response headers, with case insensitive names
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @param name the header name, case insensitive
+     * @return the header value, or null if the header is missing
+     */
+    @Nullable
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Get how long the response can be cached for, from its Cache-Control header.
+     * @return the max-age of the response, zero if it must not be cached (no-store, no-cache), or null if the
+     *         response does not say
+     */
+    @Nullable
+    public Duration getMaxAge() {
+        String cacheControl = headers.get("Cache-Control");
+        if (cacheControl == null) {
+            return null;
+        }
+        Duration maxAge = null;
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.equalsIgnoreCase("no-store") || directive.equalsIgnoreCase("no-cache")) {
+                return Duration.ZERO;
+            }
+            if (directive.regionMatches(true, 0, "max-age=", 0, 8)) {
+                String value = directive.substring(8).trim();
+                if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                    value = value.substring(1, value.length() - 1);
+                }
+                try {
+                    long seconds = Long.parseLong(value);
+                    maxAge = seconds > 0 ? Duration.ofSeconds(seconds) : Duration.ZERO;
+                } catch (NumberFormatException e) {
+                    // ignore an invalid max-age, as if it was missing
+                }
+            }
+        }
+        return maxAge;
+    }
+}
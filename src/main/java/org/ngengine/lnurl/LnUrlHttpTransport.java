@@ -0,0 +1,75 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.Map;
+import org.ngengine.platform.AsyncTask;
+
+/**
+ * The http client used to talk to LNURL services.
+ * <p>
+ * The default transport is {@link LnUrlPlatformTransport}, that uses the http client of the current NGEPlatform.
+ * Implement this interface to use a different client, eg. one with a tuned connection pool or a proxy,
+ * or an in-memory stand-in for tests, and set it globally with
+ * {@link LnUrl#setDefaultTransport(LnUrlHttpTransport)} or pass it to the methods that accept a transport.
+ * </p>
+ */
+public interface LnUrlHttpTransport {
+    /**
+     * Send a GET request.
+     * @param url the url
+     * @param timeout the request timeout
+     * @param headers additional request headers, can be null
+     * @return an AsyncTask that completes with the response body, or fails if the request fails
+     */
+    public AsyncTask<String> httpGet(String url, Duration timeout, @Nullable Map<String, String> headers);
+
+    /**
+     * Send a GET request and keep the response headers.
+     * Service lookups use it to honour the Cache-Control header of the service. The default implementation
+     * calls {@link #httpGet(String, Duration, Map)} and returns no headers: override it if the http client
+     * exposes them.
+     * @param url the url
+     * @param timeout the request timeout
+     * @param headers additional request headers, can be null
+     * @return an AsyncTask that completes with the response, or fails if the request fails
+     */
+    public default AsyncTask<LnUrlHttpResponse> httpGetResponse(
+        String url,
+        Duration timeout,
+        @Nullable Map<String, String> headers
+    ) {
+        return httpGet(url, timeout, headers).then(body -> new LnUrlHttpResponse(body, null));
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Receives the events of every LNURL round trip, to collect metrics or traces.
+ * <p>
+ * All the callbacks do nothing by default, implement only the ones you need. They are called on the thread
+ * that completes the request, so they must be fast and must not throw.
+ * Set it with {@link LnUrl#setInstrumentation(LnUrlInstrumentation)}; when none is set, the library skips
+ * even the clock reads. {@link LnUrlMetrics} is a ready to use implementation.
+ * </p>
+ * <p>
+ * To pair the start of a request with its end or error, eg. to close a tracing span, override
+ * {@link #startRequest(Operation, String)} and the callbacks that take a context: the object returned when the
+ * request starts is passed back when it settles.
+ * </p>
+ */
+public interface LnUrlInstrumentation {
+    /**
+     * The operations that are reported.
+     */
+    public enum Operation {
+        GET_SERVICE,
+        FETCH_INVOICE,
+        VERIFY,
+        WITHDRAW,
+        CHANNEL,
+        LOGIN,
+    }
+
+    /**
+     * An operation is about to send its request.
+     * @param operation the operation
+     * @param host the host the request is sent to
+     */
+    public default void onRequestStart(Operation operation, String host) {}
+
+    /**
+     * An operation is about to send its request.
+     * The default implementation calls {@link #onRequestStart(Operation, String)} and returns null.
+     * @param operation the operation
+     * @param host the host the request is sent to
+     * @return a context for this request, passed to
+     *         {@link #onRequestEnd(Operation, String, long, Object)} or
+     *         {@link #onRequestError(Operation, String, long, Throwable, Object)} when it settles, can be null
+     */
+    @Nullable
+    public default Object startRequest(Operation operation, String host) {
+        onRequestStart(operation, host);
+        return null;
+    }
+
+    /**
+     * An operation completed successfully.
+     * @param operation the operation
+     * @param host the host the request was sent to
+     * @param nanos the time from the start of the request to the parsed result, including the time spent waiting
+     *        for a {@link LnUrlHostLimiter}
+     */
+    public default void onRequestEnd(Operation operation, String host, long nanos) {}
+
+    /**
+     * An operation completed successfully.
+     * The default implementation calls {@link #onRequestEnd(Operation, String, long)}.
+     * @param operation the operation
+     * @param host the host the request was sent to
+     * @param nanos the time from the start of the request to the parsed result
+     * @param context the context returned by {@link #startRequest(Operation, String)} for this request
+     */
+    public default void onRequestEnd(Operation operation, String host, long nanos, @Nullable Object context) {
+        onRequestEnd(operation, host, nanos);
+    }
+
+    /**
+     * An operation failed.
+     * @param operation the operation
+     * @param host the host the request was sent to
+     * @param nanos the time from the start of the request to the failure
+     * @param error the error, a {@link LnUrlException} with its status when the service rejected the request or
+     *        returned an invalid response, or the transport error, possibly wrapped in a RuntimeException
+     */
+    public default void onRequestError(Operation operation, String host, long nanos, Throwable error) {}
+
+    /**
+     * An operation failed.
+     * The default implementation calls {@link #onRequestError(Operation, String, long, Throwable)}.
+     * @param operation the operation
+     * @param host the host the request was sent to
+     * @param nanos the time from the start of the request to the failure
+     * @param error the error
+     * @param context the context returned by {@link #startRequest(Operation, String)} for this request
+     */
+    public default void onRequestError(
+        Operation operation,
+        String host,
+        long nanos,
+        Throwable error,
+        @Nullable Object context
+    ) {
+        onRequestError(operation, host, nanos, error);
+    }
+
+    /**
+     * A response was parsed.
+     * @param operation the operation
+     * @param nanos the time spent parsing the response
+     */
+    public default void onParse(Operation operation, long nanos) {}
+
+    /**
+     * A service was found in the {@link LnUrlServiceCache}.
+     * @param host the host of the service
+     */
+    public default void onCacheHit(String host) {}
+
+    /**
+     * A service was not found in the {@link LnUrlServiceCache} and will be fetched.
+     * @param host the host of the service
+     */
+    public default void onCacheMiss(String host) {}
+}
@@ -0,0 +1,136 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded, least recently used, cache of parsed {@link LnUrl} instances keyed by the string they were parsed from.
+ * <p>
+ * Used by {@link LnUrl#parse(String)} and {@link LnAddress#parse(String)} so that strings that are seen over and over
+ * are parsed once and then resolve to the same immutable instance.
+ * Parsing happens outside of the lock, and inputs that fail to parse are never cached.
+ * </p>
+ */
+public final class LnUrlInternCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    interface Parser {
+        LnUrl parse(String value) throws URISyntaxException;
+    }
+
+    private final int maxEntries;
+    private final Parser parser;
+    private final LinkedHashMap<String, LnUrl> entries;
+
+    private long hits;
+    private long misses;
+
+    LnUrlInternCache(int maxEntries, Parser parser) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+        this.parser = parser;
+        this.entries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LnUrl> eldest) {
+                    return size() > LnUrlInternCache.this.maxEntries;
+                }
+            };
+    }
+
+    LnUrl get(String value) throws URISyntaxException {
+        Objects.requireNonNull(value, "Value cannot be null");
+        synchronized (this) {
+            LnUrl cached = entries.get(value);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        LnUrl parsed = parser.parse(value);
+        synchronized (this) {
+            LnUrl raced = entries.putIfAbsent(value, parsed);
+            return raced != null ? raced : parsed;
+        }
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of entries currently stored
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the maximum number of entries, the least recently used are evicted first
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the number of lookups that returned a cached instance
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to parse the input
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the ratio of lookups that returned a cached instance, or 0 if there were no lookups
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,542 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal pull parser for the JSON documents returned by LNURL services.
+ * <p>
+ * It reads values directly from the source string, so callers can pick the fields they know
+ * and skip everything else without building intermediate maps.
+ * </p>
+ * <p>
+ * Malformed input, and objects or arrays nested deeper than {@link #MAX_DEPTH}, fail with an
+ * {@link IOException}, so a hostile endpoint cannot exhaust the stack of the caller.
+ * Callers that read a whole document call {@link #endDocument()} after its top-level value, so trailing
+ * data is rejected too.
+ * </p>
+ */
+final class LnUrlJsonReader {
+
+    enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END,
+    }
+
+    static final int MAX_DEPTH = 64;
+
+    private final String in;
+    private final int end;
+    private int pos;
+    private int depth;
+    private boolean afterValue;
+
+    LnUrlJsonReader(String in) {
+        this(in, 0, in.length());
+    }
+
+    LnUrlJsonReader(String in, int start, int end) {
+        this.in = in;
+        this.pos = start;
+        this.end = end;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    Token peek() throws IOException {
+        skipWhitespace();
+        if (pos >= end) return Token.END;
+        char c = in.charAt(pos);
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '}':
+                return Token.END_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case ']':
+                return Token.END_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return Token.NUMBER;
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    void beginObject() throws IOException {
+        expect('{');
+        enter();
+        afterValue = false;
+    }
+
+    void endObject() throws IOException {
+        expect('}');
+        depth--;
+        afterValue = true;
+    }
+
+    void beginArray() throws IOException {
+        expect('[');
+        enter();
+        afterValue = false;
+    }
+
+    void endArray() throws IOException {
+        expect(']');
+        depth--;
+        afterValue = true;
+    }
+
+    /**
+     * Check that nothing but whitespace follows the top-level value.
+     */
+    void endDocument() throws IOException {
+        skipWhitespace();
+        if (pos < end) throw error("Unexpected data after the end of the document");
+    }
+
+    /**
+     * Check if the current object or array has more elements, consuming the separator if needed.
+     */
+    boolean hasNext() throws IOException {
+        skipWhitespace();
+        if (pos >= end) throw error("Unexpected end of input");
+        char c = in.charAt(pos);
+        if (c == '}' || c == ']') return false;
+        if (afterValue) {
+            if (c != ',') throw error("Expected ','");
+            pos++;
+            afterValue = false;
+        }
+        return true;
+    }
+
+    /**
+     * Read the next field name and match it against a list of known names without allocating it.
+     * @return the index of the matching name, or -1 if the name is unknown
+     */
+    int nextName(String[] names) throws IOException {
+        skipWhitespace();
+        if (pos >= end || in.charAt(pos) != '"') throw error("Expected field name");
+        int start = pos + 1;
+        int close = start;
+        while (close < end) {
+            char c = in.charAt(close);
+            if (c == '"' || c == '\\') break;
+            close++;
+        }
+        int found = -1;
+        if (close < end && in.charAt(close) == '"') {
+            int len = close - start;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].length() == len && in.regionMatches(start, names[i], 0, len)) {
+                    found = i;
+                    break;
+                }
+            }
+            pos = close + 1;
+        } else {
+            // escaped name, rare enough to take the slow path
+            String name = nextStringValue();
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    found = i;
+                    break;
+                }
+            }
+        }
+        expect(':');
+        afterValue = false;
+        return found;
+    }
+
+    String nextName() throws IOException {
+        skipWhitespace();
+        String name = nextStringValue();
+        expect(':');
+        afterValue = false;
+        return name;
+    }
+
+    /**
+     * Read a string. Numbers and booleans are returned as their textual representation, null as null.
+     */
+    String nextString() throws IOException {
+        Token t = peek();
+        String s;
+        if (t == Token.NULL) {
+            nextNull();
+            return null;
+        } else if (t == Token.STRING) {
+            s = nextStringValue();
+        } else if (t == Token.NUMBER) {
+            int start = pos;
+            skipNumber();
+            s = in.substring(start, pos);
+        } else if (t == Token.BOOLEAN) {
+            s = nextBoolean() ? "true" : "false";
+        } else {
+            throw error("Expected a string but got " + t);
+        }
+        afterValue = true;
+        return s;
+    }
+
+    /**
+     * Read a number as long. Quoted numbers and decimal numbers are accepted, null is read as 0.
+     */
+    long nextLong() throws IOException {
+        Token t = peek();
+        long v;
+        if (t == Token.NULL) {
+            nextNull();
+            return 0;
+        } else if (t == Token.STRING) {
+            v = parseLong(nextStringValue());
+        } else if (t == Token.NUMBER) {
+            int start = pos;
+            boolean integral = true;
+            long acc = 0;
+            boolean negative = in.charAt(pos) == '-';
+            if (negative) pos++;
+            while (pos < end) {
+                char c = in.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    if (integral) {
+                        if (acc > (Long.MAX_VALUE - (c - '0')) / 10) integral = false;
+                        acc = acc * 10 + (c - '0');
+                    }
+                } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    integral = false;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+            if (pos == start + (negative ? 1 : 0)) throw error("Invalid number");
+            checkBoundary();
+            v = integral ? (negative ? -acc : acc) : parseLong(in.substring(start, pos));
+        } else {
+            throw error("Expected a number but got " + t);
+        }
+        afterValue = true;
+        return v;
+    }
+
+    int nextInt() throws IOException {
+        long v = nextLong();
+        if (v > Integer.MAX_VALUE || v < Integer.MIN_VALUE) throw error("Number out of int range");
+        return (int) v;
+    }
+
+    /**
+     * Read a boolean. The strings "true" and "false" are accepted.
+     */
+    boolean nextBoolean() throws IOException {
+        Token t = peek();
+        boolean v;
+        if (t == Token.BOOLEAN) {
+            v = in.charAt(pos) == 't';
+            expectLiteral(v ? "true" : "false");
+        } else if (t == Token.STRING) {
+            v = Boolean.parseBoolean(nextStringValue());
+        } else if (t == Token.NULL) {
+            nextNull();
+            return false;
+        } else {
+            throw error("Expected a boolean but got " + t);
+        }
+        afterValue = true;
+        return v;
+    }
+
+    void nextNull() throws IOException {
+        skipWhitespace();
+        expectLiteral("null");
+        afterValue = true;
+    }
+
+    /**
+     * Skip the next value, including nested objects and arrays.
+     */
+    void skipValue() throws IOException {
+        Token t = peek();
+        switch (t) {
+            case BEGIN_OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    nextName(NO_NAMES);
+                    skipValue();
+                }
+                endObject();
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                break;
+            case STRING:
+                skipString();
+                afterValue = true;
+                break;
+            case NUMBER:
+                skipNumber();
+                afterValue = true;
+                break;
+            case BOOLEAN:
+                nextBoolean();
+                break;
+            case NULL:
+                nextNull();
+                break;
+            default:
+                throw error("Unexpected " + t);
+        }
+    }
+
+    /**
+     * Read the next value into plain java objects: maps, lists, strings, longs, doubles, booleans or null.
+     */
+    Object readValue() throws IOException {
+        Token t = peek();
+        switch (t) {
+            case BEGIN_OBJECT:
+                {
+                    Map<String, Object> map = new HashMap<>();
+                    beginObject();
+                    while (hasNext()) {
+                        String name = nextName();
+                        map.put(name, readValue());
+                    }
+                    endObject();
+                    return map;
+                }
+            case BEGIN_ARRAY:
+                {
+                    List<Object> list = new ArrayList<>();
+                    beginArray();
+                    while (hasNext()) {
+                        list.add(readValue());
+                    }
+                    endArray();
+                    return list;
+                }
+            case STRING:
+                return nextString();
+            case NUMBER:
+                {
+                    int start = pos;
+                    skipNumber();
+                    String n = in.substring(start, pos);
+                    afterValue = true;
+                    if (n.indexOf('.') == -1 && n.indexOf('e') == -1 && n.indexOf('E') == -1) {
+                        try {
+                            return Long.parseLong(n);
+                        } catch (NumberFormatException e) {
+                            // too large for a long
+                        }
+                    }
+                    return Double.parseDouble(n);
+                }
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            default:
+                throw error("Unexpected " + t);
+        }
+    }
+
+    private static final String[] NO_NAMES = new String[0];
+
+    private long parseLong(String s) throws IOException {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(s.trim());
+            } catch (NumberFormatException e2) {
+                throw error("Invalid number: " + s);
+            }
+        }
+    }
+
+    private String nextStringValue() throws IOException {
+        if (pos >= end || in.charAt(pos) != '"') throw error("Expected '\"'");
+        int start = ++pos;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c == '"') {
+                return in.substring(start, pos++);
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        sb.append(in, start, pos);
+        while (pos < end) {
+            char c = in.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= end) break;
+            char e = in.charAt(pos++);
+            switch (e) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append(e);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > end) throw error("Invalid unicode escape");
+                    int cp = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int d = Character.digit(in.charAt(pos++), 16);
+                        if (d < 0) throw error("Invalid unicode escape");
+                        cp = (cp << 4) | d;
+                    }
+                    sb.append((char) cp);
+                    break;
+                default:
+                    throw error("Invalid escape '\\" + e + "'");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipString() throws IOException {
+        pos++;
+        while (pos < end) {
+            char c = in.charAt(pos++);
+            if (c == '"') return;
+            if (c == '\\') pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipNumber() throws IOException {
+        int start = pos;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (!(c >= '0' && c <= '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') break;
+            pos++;
+        }
+        if (pos == start) throw error("Expected a number");
+        checkBoundary();
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        int len = literal.length();
+        if (pos + len > end || !in.regionMatches(pos, literal, 0, len)) throw error("Expected " + literal);
+        pos += len;
+        checkBoundary();
+    }
+
+    /**
+     * Check that a number or a literal is followed by a delimiter, so that eg. truex is not read as true.
+     */
+    private void checkBoundary() throws IOException {
+        if (pos >= end) return;
+        char c = in.charAt(pos);
+        if (c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+            throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') break;
+            pos++;
+        }
+    }
+
+    private void enter() throws IOException {
+        if (++depth > MAX_DEPTH) {
+            throw error("Nesting deeper than " + MAX_DEPTH);
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        skipWhitespace();
+        if (pos >= end || in.charAt(pos) != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Invalid JSON at position " + pos + ": " + message);
+    }
+}
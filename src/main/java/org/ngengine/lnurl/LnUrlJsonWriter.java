@@ -0,0 +1,229 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * A minimal JSON writer for the documents produced by {@link LnUrlService#toMap()}.
+ * <p>
+ * It encodes maps, collections, arrays, strings, numbers, booleans and null straight to utf-8 bytes,
+ * without building an intermediate string. Any other value is serialized by the platform.
+ * </p>
+ */
+final class LnUrlJsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+    private byte[] buf;
+    private int len;
+
+    private LnUrlJsonWriter(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    /**
+     * Serialize a value.
+     * @param value the value
+     * @return the utf-8 encoded json
+     */
+    static byte[] toBytes(Object value) {
+        LnUrlJsonWriter w = new LnUrlJsonWriter(256);
+        w.write(value);
+        return Arrays.copyOf(w.buf, w.len);
+    }
+
+    private void write(Object value) {
+        if (value == null) {
+            put(NULL);
+        } else if (value instanceof CharSequence) {
+            writeString((CharSequence) value);
+        } else if (value instanceof Boolean) {
+            put((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new IllegalArgumentException("Cannot serialize " + d + " to json");
+            }
+            if (d == (long) d && Math.abs(d) < 1e15) {
+                writeLong((long) d);
+            } else {
+                putAscii(Double.toString(d));
+            }
+        } else if (value instanceof Number) {
+            putAscii(value.toString());
+        } else if (value instanceof Map) {
+            put('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!first) put(',');
+                first = false;
+                writeString(String.valueOf(e.getKey()));
+                put(':');
+                write(e.getValue());
+            }
+            put('}');
+        } else if (value instanceof Collection) {
+            put('[');
+            boolean first = true;
+            for (Object v : (Collection<?>) value) {
+                if (!first) put(',');
+                first = false;
+                write(v);
+            }
+            put(']');
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            put('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) put(',');
+                write(array[i]);
+            }
+            put(']');
+        } else {
+            put(NGEPlatform.get().toJSON(value).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeString(CharSequence s) {
+        int n = s.length();
+        // worst case: every char is escaped as \\u0000
+        ensure(n * 6 + 2);
+        byte[] b = buf;
+        int p = len;
+        b[p++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    b[p++] = (byte) c;
+                    continue;
+                }
+                b[p++] = '\\';
+                switch (c) {
+                    case '"':
+                        b[p++] = '"';
+                        break;
+                    case '\\':
+                        b[p++] = '\\';
+                        break;
+                    case '\n':
+                        b[p++] = 'n';
+                        break;
+                    case '\r':
+                        b[p++] = 'r';
+                        break;
+                    case '\t':
+                        b[p++] = 't';
+                        break;
+                    default:
+                        b[p++] = 'u';
+                        b[p++] = '0';
+                        b[p++] = '0';
+                        b[p++] = HEX[c >> 4];
+                        b[p++] = HEX[c & 0xf];
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xc0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xf0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, same replacement used by String.getBytes
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xe0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        b[p++] = '"';
+        len = p;
+    }
+
+    private void writeLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            putAscii(Long.toString(v));
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[len++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        int p = len + digits;
+        len = p;
+        do {
+            buf[--p] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+    }
+
+    private void putAscii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void put(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
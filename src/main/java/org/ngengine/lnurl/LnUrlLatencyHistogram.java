@@ -0,0 +1,156 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with microsecond resolution.
+ * <p>
+ * Values are counted in log-linear buckets: 8 linear buckets for every power of two, so percentiles are
+ * accurate to within 12.5% at any scale, with a fixed footprint of a few kilobytes.
+ * </p>
+ */
+public final class LnUrlLatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = (64 - 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value.
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        return (exp - 2) * SUB_BUCKETS + (int) ((micros >>> (exp - 3)) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + 2;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exp - 3);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Duration getMean() {
+        long n = count.sum();
+        return n == 0 ? Duration.ZERO : Duration.ofNanos(sum.sum() * 1000 / n);
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(max.get() * 1000);
+    }
+
+    /**
+     * Get the latency at the given percentile.
+     * @param percentile between 0 and 100
+     * @return the midpoint of the bucket that contains the percentile, or zero if nothing was recorded
+     */
+    public Duration getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long lower = lowerBound(i);
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) : lower;
+                long micros = Math.min(lower + (upper - lower) / 2, max.get());
+                return Duration.ofNanos(micros * 1000);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clear all the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+            getCount(),
+            getMean().toNanos() / 1e6,
+            getPercentile(50).toNanos() / 1e6,
+            getPercentile(90).toNanos() / 1e6,
+            getPercentile(99).toNanos() / 1e6,
+            getMax().toNanos() / 1e6
+        );
+    }
+}
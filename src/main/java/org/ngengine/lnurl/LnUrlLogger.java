@@ -0,0 +1,142 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The logging facade used by the library, on top of java.util.logging.
+ * <p>
+ * Messages are either {@link java.text.MessageFormat} patterns with up to three parameters, or suppliers.
+ * Nothing is formatted or allocated unless the level is enabled: parameters are stored in the
+ * {@link java.util.logging.LogRecord} and formatted by the handler, so they can also be read by structured
+ * handlers. For statements on hot paths that need to compute their parameters, guard them with
+ * {@link #isLoggable(Level)}.
+ * </p>
+ * <p>
+ * To move formatting and output off the calling threads, install a {@link LnUrlAsyncLogHandler}.
+ * </p>
+ */
+public final class LnUrlLogger {
+
+    private final Logger logger;
+    private final String sourceClass;
+
+    private LnUrlLogger(Class<?> source) {
+        this.logger = Logger.getLogger(source.getName());
+        this.sourceClass = source.getName();
+    }
+
+    /**
+     * Get the logger for a class.
+     * @param source the class that logs
+     * @return the logger
+     */
+    public static LnUrlLogger get(Class<?> source) {
+        return new LnUrlLogger(source);
+    }
+
+    /**
+     * @return the underlying java.util.logging logger, to configure levels and handlers
+     */
+    public Logger getLogger() {
+        return logger;
+    }
+
+    public boolean isLoggable(Level level) {
+        return logger.isLoggable(level);
+    }
+
+    public void log(Level level, Supplier<String> message) {
+        if (logger.isLoggable(level)) {
+            logger.logp(level, sourceClass, null, message);
+        }
+    }
+
+    public void log(Level level, String message, Throwable error) {
+        if (logger.isLoggable(level)) {
+            logger.logp(level, sourceClass, null, message, error);
+        }
+    }
+
+    public void log(Level level, String pattern, Object p0) {
+        if (logger.isLoggable(level)) {
+            logger.logp(level, sourceClass, null, pattern, p0);
+        }
+    }
+
+    public void log(Level level, String pattern, Object p0, Object p1) {
+        if (logger.isLoggable(level)) {
+            logger.logp(level, sourceClass, null, pattern, new Object[] { p0, p1 });
+        }
+    }
+
+    public void log(Level level, String pattern, Object p0, Object p1, Object p2) {
+        if (logger.isLoggable(level)) {
+            logger.logp(level, sourceClass, null, pattern, new Object[] { p0, p1, p2 });
+        }
+    }
+
+    public void warning(String pattern, Object p0) {
+        log(Level.WARNING, pattern, p0);
+    }
+
+    public void warning(String pattern, Object p0, Object p1) {
+        log(Level.WARNING, pattern, p0, p1);
+    }
+
+    public void fine(String pattern, Object p0) {
+        log(Level.FINE, pattern, p0);
+    }
+
+    public void fine(String pattern, Object p0, Object p1) {
+        log(Level.FINE, pattern, p0, p1);
+    }
+
+    public void fine(String pattern, Object p0, Object p1, Object p2) {
+        log(Level.FINE, pattern, p0, p1, p2);
+    }
+
+    public void finer(String pattern, Object p0) {
+        log(Level.FINER, pattern, p0);
+    }
+
+    public void finer(String pattern, Object p0, Object p1) {
+        log(Level.FINER, pattern, p0, p1);
+    }
+
+    public void finer(String pattern, Object p0, Object p1, Object p2) {
+        log(Level.FINER, pattern, p0, p1, p2);
+    }
+}
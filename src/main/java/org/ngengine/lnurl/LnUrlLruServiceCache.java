@@ -0,0 +1,181 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded, least recently used, {@link LnUrlServiceCache} with per-entry expiration.
+ * <p>
+ * Expired entries are dropped when they are looked up, and swept at most once per default ttl, so
+ * lookups and inserts never walk the whole cache.
+ * </p>
+ */
+public class LnUrlLruServiceCache implements LnUrlServiceCache {
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static class Entry {
+
+        private final LnUrlService service;
+        private final long expiresAt;
+
+        private Entry(LnUrlService service, long expiresAt) {
+            this.service = service;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final Duration defaultTtl;
+    private final LinkedHashMap<URI, Entry> entries;
+
+    private long lastPurge = System.nanoTime();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LnUrlLruServiceCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a new cache.
+     * @param maxEntries the maximum number of services to keep, the least recently used are evicted first
+     * @param defaultTtl the time to live of entries stored without an explicit ttl
+     */
+    public LnUrlLruServiceCache(int maxEntries, Duration defaultTtl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+        this.defaultTtl = Objects.requireNonNull(defaultTtl, "Default TTL cannot be null");
+        this.entries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<URI, LnUrlLruServiceCache.Entry> eldest) {
+                    if (size() > maxEntries) {
+                        evictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    }
+
+    @Override
+    @Nullable
+    public synchronized LnUrlService get(URI url) {
+        Entry entry = entries.get(url);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            entries.remove(url);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.service;
+    }
+
+    @Override
+    public synchronized void put(URI url, LnUrlService service, @Nullable Duration ttl) {
+        Objects.requireNonNull(url, "URL cannot be null");
+        Objects.requireNonNull(service, "Service cannot be null");
+        if (ttl == null) {
+            ttl = defaultTtl;
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            entries.remove(url);
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastPurge >= defaultTtl.toNanos()) {
+            purgeExpired(now);
+        }
+        // the least recently used entry is evicted by removeEldestEntry if the cache is full
+        entries.put(url, new Entry(service, now + ttl.toNanos()));
+    }
+
+    private void purgeExpired(long now) {
+        lastPurge = now;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt - now <= 0) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(URI url) {
+        entries.remove(url);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of entries currently stored, including expired entries that were not purged yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    @Override
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link LnUrlInstrumentation} that records latency histograms per operation and per host, parse times,
+ * error counts per {@link LnUrlException.Status} and service cache hits.
+ * <p>
+ * At most {@code maxHosts} hosts are tracked separately, the latency of any further host is recorded under
+ * {@link #OTHER_HOSTS}.
+ * </p>
+ */
+public class LnUrlMetrics implements LnUrlInstrumentation {
+
+    public static final int DEFAULT_MAX_HOSTS = 1024;
+    public static final String OTHER_HOSTS = "*";
+
+    private final int maxHosts;
+    private final Map<Operation, LnUrlLatencyHistogram> latency = new EnumMap<>(Operation.class);
+    private final Map<Operation, LnUrlLatencyHistogram> parseTime = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> started = new EnumMap<>(Operation.class);
+    private final Map<LnUrlException.Status, LongAdder> errors = new EnumMap<>(LnUrlException.Status.class);
+    private final Map<String, LnUrlLatencyHistogram> hosts = new ConcurrentHashMap<>();
+    private final LongAdder transportErrors = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    public LnUrlMetrics() {
+        this(DEFAULT_MAX_HOSTS);
+    }
+
+    /**
+     * @param maxHosts the maximum number of hosts tracked separately
+     */
+    public LnUrlMetrics(int maxHosts) {
+        if (maxHosts < 0) {
+            throw new IllegalArgumentException("maxHosts cannot be negative");
+        }
+        this.maxHosts = maxHosts;
+        // the maps are filled once and only read afterwards, so they are safe to share between threads
+        for (Operation op : Operation.values()) {
+            latency.put(op, new LnUrlLatencyHistogram());
+            parseTime.put(op, new LnUrlLatencyHistogram());
+            started.put(op, new LongAdder());
+        }
+        for (LnUrlException.Status status : LnUrlException.Status.values()) {
+            errors.put(status, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onRequestStart(Operation operation, String host) {
+        started.get(operation).increment();
+    }
+
+    @Override
+    public void onRequestEnd(Operation operation, String host, long nanos) {
+        latency.get(operation).record(nanos);
+        host(host).record(nanos);
+    }
+
+    @Override
+    public void onRequestError(Operation operation, String host, long nanos, Throwable error) {
+        host(host).record(nanos);
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof LnUrlException) {
+                errors.get(((LnUrlException) e).getStatus()).increment();
+                return;
+            }
+        }
+        transportErrors.increment();
+    }
+
+    @Override
+    public void onParse(Operation operation, long nanos) {
+        parseTime.get(operation).record(nanos);
+    }
+
+    @Override
+    public void onCacheHit(String host) {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void onCacheMiss(String host) {
+        cacheMisses.increment();
+    }
+
+    private LnUrlLatencyHistogram host(String host) {
+        String key = host == null ? OTHER_HOSTS : host;
+        LnUrlLatencyHistogram h = hosts.get(key);
+        if (h == null) {
+            if (hosts.size() >= maxHosts) {
+                key = OTHER_HOSTS;
+            }
+            h = hosts.computeIfAbsent(key, k -> new LnUrlLatencyHistogram());
+        }
+        return h;
+    }
+
+    /**
+     * @param operation the operation
+     * @return the latency of the successful requests of the operation, parsing included
+     */
+    public LnUrlLatencyHistogram getLatency(Operation operation) {
+        return latency.get(operation);
+    }
+
+    /**
+     * @param operation the operation
+     * @return the time spent parsing the responses of the operation
+     */
+    public LnUrlLatencyHistogram getParseTime(Operation operation) {
+        return parseTime.get(operation);
+    }
+
+    /**
+     * @param host the host
+     * @return the latency of all the requests to the host, successful or not, or null if the host is not tracked
+     */
+    @Nullable
+    public LnUrlLatencyHistogram getHostLatency(String host) {
+        return hosts.get(host);
+    }
+
+    /**
+     * @return the tracked hosts
+     */
+    public Set<String> getHosts() {
+        return Collections.unmodifiableSet(hosts.keySet());
+    }
+
+    /**
+     * @param operation the operation
+     * @return the number of requests started for the operation
+     */
+    public long getStarted(Operation operation) {
+        return started.get(operation).sum();
+    }
+
+    /**
+     * @param status the status
+     * @return the number of requests that failed with a {@link LnUrlException} with the given status
+     */
+    public long getErrors(LnUrlException.Status status) {
+        return errors.get(status).sum();
+    }
+
+    /**
+     * @return the number of requests that failed because of the transport, eg. timeouts and connection errors
+     */
+    public long getTransportErrors() {
+        return transportErrors.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Clear all the recorded values.
+     */
+    public void reset() {
+        for (Operation op : Operation.values()) {
+            latency.get(op).reset();
+            parseTime.get(op).reset();
+            started.get(op).reset();
+        }
+        for (LongAdder a : errors.values()) {
+            a.reset();
+        }
+        hosts.clear();
+        transportErrors.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+}
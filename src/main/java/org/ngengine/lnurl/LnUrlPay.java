@@ -32,12 +32,15 @@
 package org.ngengine.lnurl;
 
 import jakarta.annotation.Nullable;
+import java.io.IOException;
 import java.net.URI;
-import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -91,12 +94,7 @@ public class LnUrlPay implements LnUrlService {
         }
     }
 
-    private static final List<String> STR_METADATA_TYPES = List.of(
-        "text/plain",
-        "text/long-desc",
-        "image/png;base64",
-        "image/jpeg;base64"
-    );
+    private static final String[] IMAGE_METADATA_TYPES = { "image/png;base64", "image/jpeg;base64" };
 
     protected static boolean isAssignableTo(Map<String, Object> data) {
         return "payRequest".equals(data.get("tag"));
@@ -104,13 +102,17 @@ public class LnUrlPay implements LnUrlService {
 
     private final long maxSendable, minSendable;
     private final int commentAllowed;
-    private final List<Metadata> metadata = new ArrayList<>();
+    private final List<Metadata> metadata;
+    private volatile String rawMetadata;
+    private volatile byte[] metadataHash;
     private final URI callback;
     private final LnUrlPayerData payerData;
     private final String nostrPubkey;
     private final boolean allowNostr;
+    private final transient LnUrlJsonCache json = new LnUrlJsonCache(this::toMap);
+    private transient volatile String callbackPrefix;
 
-    protected LnUrlPay(
+    public LnUrlPay(
         long maxSendable,
         long minSendable,
         URI callback,
@@ -127,13 +129,13 @@ public class LnUrlPay implements LnUrlService {
         this.minSendable = minSendable;
         this.callback = callback;
         this.commentAllowed = commentAllowed;
-        this.metadata.addAll(metadata);
+        this.metadata = Collections.unmodifiableList(new ArrayList<>(metadata));
         this.payerData = payerData;
         this.nostrPubkey = nostrPubkey;
         this.allowNostr = allowNostr;
     }
 
-    protected LnUrlPay(
+    public LnUrlPay(
         long maxSendable,
         long minSendable,
         URI callback,
@@ -158,34 +160,141 @@ public class LnUrlPay implements LnUrlService {
         this.allowNostr = NGEUtils.safeBool(data.get("allowNostr"));
         this.nostrPubkey = NGEUtils.safeString(data.get("nostrPubkey"));
 
-        String metaStr = NGEUtils.safeString(data.get("metadata"));
-        if (metaStr.isEmpty() || metaStr.length() > MAX_METADATA_SIZE) {
-            throw new IllegalArgumentException("Metadata is empty or exceeds maximum size of " + MAX_METADATA_SIZE + " bytes");
+        this.rawMetadata = NGEUtils.safeString(data.get("metadata"));
+        this.metadata = indexMetadata(rawMetadata);
+
+        payerData = LnUrlPayerData.fromTemplate((Map<String, Map>) data.get("payerData"));
+        commentAllowed = NGEUtils.safeInt(data.get("commentAllowed"));
+    }
+
+    private LnUrlPay(
+        long maxSendable,
+        long minSendable,
+        String callback,
+        int commentAllowed,
+        String rawMetadata,
+        Map<String, Map> payerData,
+        String nostrPubkey,
+        boolean allowNostr
+    ) {
+        if (minSendable < 1 || minSendable > maxSendable) {
+            throw new IllegalArgumentException("Invalid sendable range: " + minSendable + " - " + maxSendable);
         }
+        this.maxSendable = maxSendable;
+        this.minSendable = minSendable;
+        this.callback = NGEUtils.safeURI(callback);
+        this.allowNostr = allowNostr;
+        this.nostrPubkey = nostrPubkey;
+        this.rawMetadata = rawMetadata;
+        this.metadata = indexMetadata(rawMetadata);
+        this.payerData = LnUrlPayerData.fromTemplate(payerData);
+        this.commentAllowed = commentAllowed;
+    }
 
-        List<Object> metaRaw = NGEPlatform.get().fromJSON(metaStr, List.class);
-        for (Object o : metaRaw) {
-            if (o.getClass().isArray()) {
-                o = List.of((Object[]) o);
-            }
-            if (o instanceof List && ((List) o).size() == 2) {
-                List<?> lo = (List<?>) o;
-                String type = NGEUtils.safeString(lo.get(0));
-                Object value = lo.get(1);
-                if (STR_METADATA_TYPES.contains(type)) {
-                    value = NGEUtils.safeString(value);
+    private static final String[] JSON_FIELDS = {
+        "tag",
+        "callback",
+        "minSendable",
+        "maxSendable",
+        "metadata",
+        "commentAllowed",
+        "payerData",
+        "allowNostr",
+        "nostrPubkey",
+        "status",
+        "reason",
+    };
+
+    /**
+     * Parse a pay request directly from the json returned by the service, reading only the known fields.
+     * @return the pay request, or null if the json is not a pay request
+     * @throws LnUrlException if the json is an error response
+     */
+    static LnUrlPay fromJson(String json) throws LnUrlException {
+        String tag = null, callback = null, rawMetadata = null, nostrPubkey = null, status = null, reason = null;
+        long minSendable = 0, maxSendable = 0;
+        int commentAllowed = 0;
+        boolean allowNostr = false;
+        Map<String, Map> payerData = null;
+
+        try {
+            LnUrlJsonReader reader = new LnUrlJsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(JSON_FIELDS)) {
+                    case 0:
+                        tag = reader.nextString();
+                        break;
+                    case 1:
+                        callback = reader.nextString();
+                        break;
+                    case 2:
+                        minSendable = reader.nextLong();
+                        break;
+                    case 3:
+                        maxSendable = reader.nextLong();
+                        break;
+                    case 4:
+                        rawMetadata = reader.nextString();
+                        break;
+                    case 5:
+                        commentAllowed = reader.nextInt();
+                        break;
+                    case 6:
+                        payerData = (Map<String, Map>) reader.readValue();
+                        break;
+                    case 7:
+                        allowNostr = reader.nextBoolean();
+                        break;
+                    case 8:
+                        nostrPubkey = reader.nextString();
+                        break;
+                    case 9:
+                        status = reader.nextString();
+                        break;
+                    case 10:
+                        reason = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
                 }
-                metadata.add(new Metadata(type, value));
             }
+            reader.endObject();
+            reader.endDocument();
+        } catch (IOException e) {
+            throw new LnUrlException(LnUrlException.Status.INVALID, "Invalid LNURL pay response: " + e.getMessage(), e);
         }
 
-        Metadata firstMeta = metadata.isEmpty() ? null : metadata.get(0);
-        if (firstMeta == null || !firstMeta.type.equals("text/plain")) {
-            throw new IllegalArgumentException("First metadata item must be of type 'text/plain'");
+        if ("ERROR".equals(status)) {
+            throw new LnUrlException(LnUrlException.Status.ERROR, reason);
+        }
+        if (!"payRequest".equals(tag)) {
+            return null;
         }
+        return new LnUrlPay(
+            maxSendable,
+            minSendable,
+            callback,
+            commentAllowed,
+            rawMetadata,
+            payerData,
+            nostrPubkey,
+            allowNostr
+        );
+    }
 
-        payerData = LnUrlPayerData.fromTemplate((Map<String, Map>) data.get("payerData"));
-        commentAllowed = NGEUtils.safeInt(data.get("commentAllowed"));
+    /**
+     * Index the raw metadata and check that its first entry is text/plain, without decoding the entries.
+     */
+    private static LnUrlPayMetadata indexMetadata(String rawMetadata) {
+        if (rawMetadata == null || rawMetadata.isEmpty() || rawMetadata.length() > MAX_METADATA_SIZE) {
+            throw new IllegalArgumentException("Metadata is empty or exceeds maximum size of " + MAX_METADATA_SIZE + " bytes");
+        }
+        LnUrlPayMetadata metadata = new LnUrlPayMetadata(rawMetadata);
+        if (metadata.isEmpty() || !metadata.getType(0).equals("text/plain")) {
+            throw new IllegalArgumentException("First metadata item must be of type 'text/plain'");
+        }
+        return metadata;
     }
 
     public boolean isCommentAllowed() {
@@ -212,10 +321,163 @@ public class LnUrlPay implements LnUrlService {
         return minSendable;
     }
 
+    /**
+     * Get the metadata entries.
+     * Entries received from the service are decoded the first time they are accessed.
+     */
     public List<Metadata> getMetadata() {
         return metadata;
     }
 
+    /**
+     * Get the first metadata entry of the given type.
+     * @param type the metadata type, eg. "text/plain"
+     * @return the entry, or null if there is no entry with this type
+     */
+    @Nullable
+    public Metadata getMetadata(String type) {
+        int i = findMetadataType(type);
+        return i == -1 ? null : metadata.get(i);
+    }
+
+    /**
+     * The short description of the payment (text/plain).
+     */
+    public String getDescription() {
+        return getMetadataString("text/plain");
+    }
+
+    /**
+     * The long description of the payment (text/long-desc).
+     * @return the description, or null if not provided
+     */
+    @Nullable
+    public String getLongDescription() {
+        return getMetadataString("text/long-desc");
+    }
+
+    /**
+     * The internet identifier of the recipient (text/identifier).
+     * @return the identifier, or null if not provided
+     */
+    @Nullable
+    public String getIdentifier() {
+        return getMetadataString("text/identifier");
+    }
+
+    /**
+     * The email of the recipient (text/email).
+     * @return the email, or null if not provided
+     */
+    @Nullable
+    public String getEmail() {
+        return getMetadataString("text/email");
+    }
+
+    @Nullable
+    private String getMetadataString(String type) {
+        Metadata m = getMetadata(type);
+        return m == null ? null : NGEUtils.safeString(m.value);
+    }
+
+    /**
+     * The mime type of the image of the payment, if any.
+     * @return "image/png", "image/jpeg" or null if there is no image
+     */
+    @Nullable
+    public String getImageType() {
+        for (String type : IMAGE_METADATA_TYPES) {
+            if (findMetadataType(type) != -1) {
+                return type.substring(0, type.indexOf(';'));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The image of the payment (image/png;base64 or image/jpeg;base64), decoded.
+     * The image is decoded on every call and is not retained by this object.
+     * @return a read-only buffer with the image bytes, or null if there is no image
+     */
+    @Nullable
+    public ByteBuffer getImage() {
+        for (String type : IMAGE_METADATA_TYPES) {
+            int i = findMetadataType(type);
+            if (i == -1) continue;
+            if (metadata instanceof LnUrlPayMetadata) {
+                return ((LnUrlPayMetadata) metadata).decodeBase64(i);
+            }
+            return ByteBuffer.wrap(Base64.getDecoder().decode(NGEUtils.safeString(metadata.get(i).value))).asReadOnlyBuffer();
+        }
+        return null;
+    }
+
+    private int findMetadataType(String type) {
+        if (metadata instanceof LnUrlPayMetadata) {
+            return ((LnUrlPayMetadata) metadata).indexOfType(type);
+        }
+        for (int i = 0; i < metadata.size(); i++) {
+            if (metadata.get(i).type.equals(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the metadata as a json string, exactly as it is hashed in the description_hash of the invoices.
+     * For metadata received from a service this is the original string, otherwise it is serialized once and then reused.
+     * @return the raw metadata, or null if there is no metadata
+     */
+    @Nullable
+    public String getRawMetadata() {
+        String raw = rawMetadata;
+        if (raw == null && !metadata.isEmpty()) {
+            List<List<Object>> metaList = new ArrayList<>();
+            for (Metadata meta : metadata) {
+                List<Object> item = new ArrayList<>();
+                item.add(meta.type);
+                item.add(meta.value);
+                metaList.add(item);
+            }
+            raw = NGEPlatform.get().toJSON(metaList);
+            rawMetadata = raw;
+        }
+        return raw;
+    }
+
+    /**
+     * Get the SHA-256 of the raw metadata, that is the description_hash expected in the invoices of this service.
+     * The hash is computed on first use and then cached.
+     * @return the hash, or null if there is no metadata
+     */
+    @Nullable
+    public byte[] getMetadataHash() {
+        byte[] hash = metadataHash();
+        return hash == null ? null : hash.clone();
+    }
+
+    byte[] metadataHash() {
+        byte[] hash = metadataHash;
+        if (hash == null) {
+            String raw = getRawMetadata();
+            if (raw == null) {
+                return null;
+            }
+            hash = sha256(raw);
+            metadataHash = hash;
+        }
+        return hash;
+    }
+
+    static byte[] sha256(String data) {
+        try {
+            return NGEPlatform.get().sha256(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to compute sha256", e);
+        }
+    }
+
     public boolean isNostrAllowed() {
         return allowNostr;
     }
@@ -238,33 +500,47 @@ public class LnUrlPay implements LnUrlService {
         @Nullable LnUrlPayerData payerData,
         @Nullable String nostrZapRequest
     ) {
+        return buildCallback(amount, comment, payerDataJson(payerData), nostrZapRequest).toURI();
+    }
+
+    @Nullable
+    private static byte[] payerDataJson(@Nullable LnUrlPayerData payerData) {
+        return payerData != null ? LnUrlJsonWriter.toBytes(payerData) : null;
+    }
+
+    private LnUrlCallbackBuilder buildCallback(
+        long amount,
+        @Nullable String comment,
+        @Nullable byte[] payerDataJson,
+        @Nullable String nostrZapRequest
+    ) {
+        String prefix = this.callbackPrefix;
+        if (prefix == null) {
+            prefix = LnUrlCallbackBuilder.prefix(callback.toString());
+            this.callbackPrefix = prefix;
+        }
         if (!canSend(amount)) {
             throw new IllegalArgumentException(
                 "Amount " + amount + " is not within the allowed range: " + minSendable + " - " + maxSendable
             );
         }
-        StringBuilder build = new StringBuilder(getCallback().toString());
-        if (build.indexOf("?") < 0) {
-            build.append("?");
-        } else {
-            build.append("&");
-        }
-        build.append("amount=").append(URLEncoder.encode("" + amount, StandardCharsets.UTF_8));
+        LnUrlCallbackBuilder build = LnUrlCallbackBuilder.fromPrefix(prefix);
+        build.param("amount", amount);
         if (isCommentAllowed() && comment != null && !comment.isEmpty()) {
             if (comment.length() > getMaxCommentLength()) {
                 throw new IllegalArgumentException(
                     "Comment exceeds maximum length of " + getMaxCommentLength() + " characters"
                 );
             }
-            build.append("&comment=").append(URLEncoder.encode(comment, StandardCharsets.UTF_8));
+            build.param("comment", comment);
         }
-        if (payerData != null) {
-            build.append("&payerdata=").append(URLEncoder.encode(NGEPlatform.get().toJSON(payerData), StandardCharsets.UTF_8));
+        if (payerDataJson != null) {
+            build.param("payerdata", payerDataJson);
         }
         if (nostrZapRequest != null && !nostrZapRequest.isEmpty()) {
-            build.append("&nostr=").append(URLEncoder.encode(nostrZapRequest, StandardCharsets.UTF_8));
+            build.param("nostr", nostrZapRequest);
         }
-        return NGEUtils.safeURI(build.toString());
+        return build;
     }
 
     public AsyncTask<LnUrlPaymentResponse> fetchInvoice(
@@ -302,23 +578,77 @@ public class LnUrlPay implements LnUrlService {
         @Nullable Map<String, String> headers,
         @Nullable String nostrZapRequest
     ) throws Exception {
-        URI callback = getCallback(amount, comment, payerData, nostrZapRequest);
-        return NGEPlatform
-            .get()
-            .httpGet(callback.toString(), timeout, headers)
-            .then(body -> {
-                Map<String, Object> map = NGEPlatform.get().fromJSON(body, Map.class);
-                if (LnUrlException.isAssignableTo(map)) {
-                    throw new RuntimeException(new LnUrlException(map));
-                }
-                if (LnUrlPaymentResponse.isAssignableTo(map)) {
-                    LnUrlPaymentResponse response = new LnUrlPaymentResponse(map);
-                    return response;
-                }
-                throw new RuntimeException(
-                    new LnUrlException(LnUrlException.Status.INVALID, "Invalid LNURL payment response: " + body)
-                );
-            });
+        return fetchInvoice(amount, comment, payerData, timeout, headers, nostrZapRequest, null);
+    }
+
+    /**
+     * Fetch an invoice using the given transport.
+     * The transport is also used by {@link LnUrlPaymentResponse#verify(Duration)} on the returned response.
+     * @param transport the transport used to fetch the invoice, or null to use the default transport
+     */
+    public AsyncTask<LnUrlPaymentResponse> fetchInvoice(
+        long amount,
+        @Nullable String comment,
+        @Nullable LnUrlPayerData payerData,
+        @Nullable Duration timeout,
+        @Nullable Map<String, String> headers,
+        @Nullable String nostrZapRequest,
+        @Nullable LnUrlHttpTransport transport
+    ) throws Exception {
+        return fetchInvoice(amount, comment, payerData, timeout, headers, nostrZapRequest, transport, null);
+    }
+
+    /**
+     * Fetch an invoice within a deadline.
+     * The deadline is also used by {@link LnUrlPaymentResponse#verify(Duration)} on the returned response.
+     * The request is never retried, since every call to the callback can create a new invoice.
+     * @param transport the transport used to fetch the invoice, or null to use the default transport
+     * @param deadline the deadline of the whole payment flow, or null for none
+     * @see LnUrlDeadline
+     */
+    public AsyncTask<LnUrlPaymentResponse> fetchInvoice(
+        long amount,
+        @Nullable String comment,
+        @Nullable LnUrlPayerData payerData,
+        @Nullable Duration timeout,
+        @Nullable Map<String, String> headers,
+        @Nullable String nostrZapRequest,
+        @Nullable LnUrlHttpTransport transport,
+        @Nullable LnUrlDeadline deadline
+    ) throws Exception {
+        // the payer data is serialized once, the invoice commits to this exact string
+        byte[] payerDataJson = payerDataJson(payerData);
+        String url = buildCallback(amount, comment, payerDataJson, nostrZapRequest).toString();
+        return LnUrlHttp.instrument(
+            LnUrlInstrumentation.Operation.FETCH_INVOICE,
+            callback.getHost(),
+            () ->
+                LnUrlHttp
+                    .get(callback.getHost(), url, timeout, deadline, headers, transport)
+                    .then(body -> {
+                        LnUrlPaymentResponse response;
+                        long parseStart = LnUrlHttp.parseStart();
+                        try {
+                            response = LnUrlPaymentResponse.fromJson(this, body);
+                        } catch (LnUrlException e) {
+                            throw new RuntimeException(e);
+                        }
+                        LnUrlHttp.parseEnd(LnUrlInstrumentation.Operation.FETCH_INVOICE, parseStart);
+                        if (response != null) {
+                            response.setTransport(transport);
+                            response.setDeadline(deadline);
+                            response.setRequest(
+                                this,
+                                nostrZapRequest,
+                                payerDataJson != null ? new String(payerDataJson, StandardCharsets.UTF_8) : null
+                            );
+                            return response;
+                        }
+                        throw new RuntimeException(
+                            new LnUrlException(LnUrlException.Status.INVALID, "Invalid LNURL payment response: " + body)
+                        );
+                    })
+        );
     }
 
     @Override
@@ -326,6 +656,11 @@ public class LnUrlPay implements LnUrlService {
         return "LNURL Pay Request";
     }
 
+    @Override
+    public byte[] toJsonBytes() {
+        return json.get();
+    }
+
     @Override
     public Map<String, Object> toMap() {
         Map<String, Object> map = new HashMap<>();
@@ -342,15 +677,9 @@ public class LnUrlPay implements LnUrlService {
         if (commentAllowed > 0) {
             map.put("commentAllowed", commentAllowed);
         }
-        if (!metadata.isEmpty()) {
-            List<List<Object>> metaList = new ArrayList<>();
-            for (Metadata meta : metadata) {
-                List<Object> item = new ArrayList<>();
-                item.add(meta.type);
-                item.add(meta.value);
-                metaList.add(item);
-            }
-            map.put("metadata", NGEPlatform.get().toJSON(metaList));
+        String rawMetadata = getRawMetadata();
+        if (rawMetadata != null) {
+            map.put("metadata", rawMetadata);
         }
         if (payerData != null) {
             Map<String, Map> payerDataTemplate = new HashMap<>();
@@ -0,0 +1,229 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import org.ngengine.platform.NGEUtils;
+
+/**
+ * A read-only view of the metadata of a pay request that decodes its entries on demand.
+ * <p>
+ * When created it only indexes the position of every entry in the raw metadata string, each entry
+ * value is decoded the first time it is requested.
+ * </p>
+ */
+final class LnUrlPayMetadata extends AbstractList<LnUrlPay.Metadata> {
+
+    private static final List<String> STR_METADATA_TYPES = List.of(
+        "text/plain",
+        "text/long-desc",
+        "image/png;base64",
+        "image/jpeg;base64"
+    );
+
+    private final String raw;
+    private final String[] types;
+    private final int[] valueStart;
+    private final int[] valueEnd;
+    private final LnUrlPay.Metadata[] decoded;
+
+    LnUrlPayMetadata(String raw) {
+        this.raw = raw;
+        List<String> types = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+
+        try {
+            LnUrlJsonReader reader = new LnUrlJsonReader(raw);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != LnUrlJsonReader.Token.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                // only [type, value] pairs are valid entries
+                reader.beginArray();
+                String type = null;
+                int start = -1, end = -1, count = 0;
+                while (reader.hasNext()) {
+                    if (count == 0 && isScalar(reader.peek())) {
+                        type = reader.nextString();
+                    } else if (count == 1) {
+                        reader.peek(); // skip whitespace
+                        start = reader.position();
+                        reader.skipValue();
+                        end = reader.position();
+                    } else {
+                        reader.skipValue();
+                    }
+                    count++;
+                }
+                reader.endArray();
+                if (count == 2 && type != null) {
+                    types.add(type);
+                    ranges.add(new int[] { start, end });
+                }
+            }
+            reader.endArray();
+            reader.endDocument();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid metadata: " + e.getMessage(), e);
+        }
+
+        int n = types.size();
+        this.types = types.toArray(new String[n]);
+        this.valueStart = new int[n];
+        this.valueEnd = new int[n];
+        for (int i = 0; i < n; i++) {
+            valueStart[i] = ranges.get(i)[0];
+            valueEnd[i] = ranges.get(i)[1];
+        }
+        this.decoded = new LnUrlPay.Metadata[n];
+    }
+
+    private static boolean isScalar(LnUrlJsonReader.Token t) {
+        return t == LnUrlJsonReader.Token.STRING || t == LnUrlJsonReader.Token.NUMBER || t == LnUrlJsonReader.Token.BOOLEAN;
+    }
+
+    @Override
+    public LnUrlPay.Metadata get(int index) {
+        LnUrlPay.Metadata m = decoded[index];
+        if (m == null) {
+            Object value;
+            try {
+                value = new LnUrlJsonReader(raw, valueStart[index], valueEnd[index]).readValue();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid metadata entry " + types[index] + ": " + e.getMessage(), e);
+            }
+            if (STR_METADATA_TYPES.contains(types[index])) {
+                value = NGEUtils.safeString(value);
+            }
+            m = new LnUrlPay.Metadata(types[index], value);
+            decoded[index] = m;
+        }
+        return m;
+    }
+
+    @Override
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Get the type of an entry without decoding its value.
+     */
+    String getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Find the first entry with the given type.
+     * @return the index of the entry, or -1 if there is no entry with this type
+     */
+    int indexOfType(String type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].equals(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode a base64 entry straight from the raw metadata, without materializing its string value.
+     */
+    ByteBuffer decodeBase64(int index) {
+        int start = valueStart[index];
+        int end = valueEnd[index];
+        if (raw.charAt(start) != '"') {
+            throw new IllegalArgumentException("Metadata entry " + types[index] + " is not a string");
+        }
+        // skip the quotes
+        start++;
+        end--;
+        if (hasEscapes(raw, start, end)) {
+            // escaped json string (eg. "\/"), unescape it first
+            String value;
+            try {
+                value = new LnUrlJsonReader(raw, valueStart[index], valueEnd[index]).nextString();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid metadata entry " + types[index] + ": " + e.getMessage(), e);
+            }
+            return decodeBase64(value, 0, value.length());
+        }
+        return decodeBase64(raw, start, end);
+    }
+
+    private static boolean hasEscapes(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '\\') return true;
+        }
+        return false;
+    }
+
+    private static final byte[] BASE64 = new byte[128];
+
+    static {
+        for (int i = 0; i < BASE64.length; i++) BASE64[i] = -1;
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) BASE64[alphabet.charAt(i)] = (byte) i;
+        // url safe variant
+        BASE64['-'] = 62;
+        BASE64['_'] = 63;
+    }
+
+    private static ByteBuffer decodeBase64(CharSequence s, int start, int end) {
+        byte[] out = new byte[(end - start) * 3 / 4 + 3];
+        int n = 0;
+        int acc = 0;
+        int bits = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '=') break;
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') continue;
+            int v = c < 128 ? BASE64[c] : -1;
+            if (v < 0) {
+                throw new IllegalArgumentException("Invalid base64 character '" + c + "' at position " + (i - start));
+            }
+            acc = (acc << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out[n++] = (byte) (acc >> bits);
+            }
+        }
+        return ByteBuffer.wrap(out, 0, n).slice().asReadOnlyBuffer();
+    }
+}
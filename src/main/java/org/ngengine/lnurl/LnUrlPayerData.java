@@ -32,6 +32,7 @@
 package org.ngengine.lnurl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,6 +76,13 @@ public class LnUrlPayerData extends HashMap<String, Object> {
         return required.contains(field);
     }
 
+    /**
+     * @return the fields that the payer must provide
+     */
+    public List<String> getRequired() {
+        return Collections.unmodifiableList(required);
+    }
+
     public LnUrlPayerData optional(String field) {
         required.remove(field);
         return this;
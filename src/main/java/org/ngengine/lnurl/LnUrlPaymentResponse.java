@@ -34,13 +34,16 @@ package org.ngengine.lnurl;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import org.ngengine.lnurl.successAction.LnUrlAESSuccessAction;
@@ -48,7 +51,6 @@ import org.ngengine.lnurl.successAction.LnUrlMessageSuccessAction;
 import org.ngengine.lnurl.successAction.LnUrlSuccessAction;
 import org.ngengine.lnurl.successAction.LnUrlUrlSuccessAction;
 import org.ngengine.platform.AsyncTask;
-import org.ngengine.platform.NGEPlatform;
 import org.ngengine.platform.NGEUtils;
 
 public class LnUrlPaymentResponse {
@@ -88,26 +90,67 @@ public class LnUrlPaymentResponse {
         }
     }
 
-    private static final List<SuccessActionProcessor> successActionsProcessors = new ArrayList<>();
+    private static final class Registration {
 
+        private final SuccessActionProcessor processor;
+        private final long order;
+
+        private Registration(SuccessActionProcessor processor, long order) {
+            this.processor = processor;
+            this.order = order;
+        }
+    }
+
+    private static final List<Registration> successActionsProcessors = new CopyOnWriteArrayList<>();
+    private static volatile Map<String, Registration> taggedSuccessActionsProcessors = Collections.emptyMap();
+    private static long registrations;
+
+    /**
+     * Register a processor for any success action it is assignable to.
+     * Processors registered later are tried first, including the ones registered for a tag: a processor
+     * registered this way overrides the built-in ones.
+     * @param p the processor
+     */
     public static void registerSuccessActionProcessor(SuccessActionProcessor p) {
-        successActionsProcessors.add(p);
+        Objects.requireNonNull(p, "Processor cannot be null");
+        synchronized (successActionsProcessors) {
+            successActionsProcessors.add(new Registration(p, registrations++));
+        }
+    }
+
+    /**
+     * Register the processor for the success actions with the given tag.
+     * It replaces the processor previously registered for the same tag.
+     * @param tag the tag of the success action, eg. "message"
+     * @param p the processor
+     */
+    public static void registerSuccessActionProcessor(String tag, SuccessActionProcessor p) {
+        Objects.requireNonNull(tag, "Tag cannot be null");
+        Objects.requireNonNull(p, "Processor cannot be null");
+        synchronized (successActionsProcessors) {
+            Map<String, Registration> processors = new HashMap<>(taggedSuccessActionsProcessors);
+            processors.put(tag, new Registration(p, registrations++));
+            taggedSuccessActionsProcessors = Collections.unmodifiableMap(processors);
+        }
     }
 
     static {
         registerSuccessActionProcessor(
+            "message",
             new SuccessActionProcessor(
                 LnUrlMessageSuccessAction::isAssignableTo,
                 (req, data) -> new LnUrlMessageSuccessAction(data)
             )
         );
         registerSuccessActionProcessor(
+            "url",
             new SuccessActionProcessor(
                 LnUrlUrlSuccessAction::isAssignableTo,
                 (req, data) -> new LnUrlUrlSuccessAction(req, data)
             )
         );
         registerSuccessActionProcessor(
+            "aes",
             new SuccessActionProcessor(LnUrlAESSuccessAction::isAssignableTo, (req, data) -> new LnUrlAESSuccessAction(data))
         );
     }
@@ -116,6 +159,14 @@ public class LnUrlPaymentResponse {
     private final boolean disposable;
     private final URI verify;
     private LnUrlSuccessAction successAction;
+    private LnUrlHttpTransport transport;
+    private LnUrlDeadline deadline;
+    private LnUrlPay request;
+    private String nostrZapRequest;
+    private String payerData;
+    private volatile byte[] descriptionHash;
+    private volatile boolean descriptionHashParsed;
+    private final transient LnUrlJsonCache json = new LnUrlJsonCache(this::toMap);
 
     public LnUrlPaymentResponse(String pr, boolean disposable, URI verify, @Nonnull LnUrlSuccessAction successAction) {
         this.pr = pr;
@@ -125,6 +176,15 @@ public class LnUrlPaymentResponse {
     }
 
     public LnUrlPaymentResponse(Map<String, Object> data) {
+        this(null, data);
+    }
+
+    /**
+     * Create a payment response from the data returned by the callback of a pay request.
+     * @param req the pay request, used to validate the success action, or null if unknown
+     * @param data the response data
+     */
+    public LnUrlPaymentResponse(@Nullable LnUrlPay req, Map<String, Object> data) {
         if (!data.containsKey("pr")) throw new IllegalArgumentException("Data does not contain 'pr' field");
         this.pr = NGEUtils.safeString(data.get("pr"));
         this.disposable = NGEUtils.safeBool(data.getOrDefault("disposable", true));
@@ -132,16 +192,119 @@ public class LnUrlPaymentResponse {
         String verifyRaw = (String) data.get("verify");
         this.verify = verifyRaw != null ? NGEUtils.safeURI(verifyRaw) : null;
 
-        Map<String, Object> rawSuccessAction = (Map<String, Object>) data.get("successAction");
-        if (rawSuccessAction != null) {
-            for (int i = successActionsProcessors.size() - 1; i >= 0; i--) {
-                SuccessActionProcessor p = successActionsProcessors.get(i);
-                if (p.isAssignableTo.apply(rawSuccessAction)) {
-                    this.successAction = p.constructor.apply(null, rawSuccessAction);
-                    break;
+        this.successAction = parseSuccessAction(req, (Map<String, Object>) data.get("successAction"));
+    }
+
+    private static LnUrlSuccessAction parseSuccessAction(
+        @Nullable LnUrlPay req,
+        @Nullable Map<String, Object> rawSuccessAction
+    ) {
+        if (rawSuccessAction == null) {
+            return null;
+        }
+        Object tag = rawSuccessAction.get("tag");
+        Registration tagged = tag instanceof String ? taggedSuccessActionsProcessors.get(tag) : null;
+        Object[] processors = successActionsProcessors.toArray();
+        // every processor is tried newest first, the tagged one in its registration order
+        for (int i = processors.length - 1; i >= 0; i--) {
+            Registration r = (Registration) processors[i];
+            if (tagged != null && tagged.order > r.order) {
+                if (tagged.processor.isAssignableTo(rawSuccessAction)) {
+                    return tagged.processor.construct(req, rawSuccessAction);
+                }
+                tagged = null;
+            }
+            if (r.processor.isAssignableTo(rawSuccessAction)) {
+                return r.processor.construct(req, rawSuccessAction);
+            }
+        }
+        if (tagged != null && tagged.processor.isAssignableTo(rawSuccessAction)) {
+            return tagged.processor.construct(req, rawSuccessAction);
+        }
+        return null;
+    }
+
+    private static final String[] JSON_FIELDS = { "pr", "disposable", "verify", "successAction", "tag", "status", "reason" };
+
+    /**
+     * Parse a payment response directly from the json returned by the callback, reading only the known fields.
+     * @return the payment response, or null if the json is not a payment response
+     * @throws LnUrlException if the json is an error response
+     */
+    static LnUrlPaymentResponse fromJson(@Nullable LnUrlPay req, String json) throws LnUrlException {
+        String pr = null, verify = null, status = null, reason = null;
+        boolean hasPr = false, hasTag = false;
+        boolean disposable = true;
+        Map<String, Object> rawSuccessAction = null;
+
+        try {
+            LnUrlJsonReader reader = new LnUrlJsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(JSON_FIELDS)) {
+                    case 0:
+                        pr = reader.nextString();
+                        hasPr = true;
+                        break;
+                    case 1:
+                        disposable = reader.nextBoolean();
+                        break;
+                    case 2:
+                        verify = reader.nextString();
+                        break;
+                    case 3:
+                        rawSuccessAction = (Map<String, Object>) reader.readValue();
+                        break;
+                    case 4:
+                        reader.skipValue();
+                        hasTag = true;
+                        break;
+                    case 5:
+                        status = reader.nextString();
+                        break;
+                    case 6:
+                        reason = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
                 }
             }
+            reader.endObject();
+            reader.endDocument();
+        } catch (IOException e) {
+            throw new LnUrlException(LnUrlException.Status.INVALID, "Invalid LNURL payment response: " + e.getMessage(), e);
+        }
+
+        if ("ERROR".equals(status)) {
+            throw new LnUrlException(LnUrlException.Status.ERROR, reason);
+        }
+        if (!hasPr || hasTag) {
+            return null;
         }
+        return new LnUrlPaymentResponse(
+            NGEUtils.safeString(pr),
+            disposable,
+            verify != null ? NGEUtils.safeURI(verify) : null,
+            parseSuccessAction(req, rawSuccessAction)
+        );
+    }
+
+    /**
+     * Return the json representation of this response.
+     * The response is serialized on first use and the same array is returned on every call.
+     * @return the utf-8 encoded json of {@link #toMap()}, the array must not be modified
+     */
+    public byte[] toJsonBytes() {
+        return json.get();
+    }
+
+    /**
+     * Write the json representation of this response.
+     * @param out the stream to write to, it is not flushed or closed
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(toJsonBytes());
     }
 
     public Map<String, Object> toMap() {
@@ -179,25 +342,179 @@ public class LnUrlPaymentResponse {
         return verify != null;
     }
 
+    /**
+     * Get the description_hash of the bolt11 invoice.
+     * The invoice is parsed on first use and the result is cached.
+     * @return the description hash, or null if the invoice has no description hash
+     * @throws IllegalArgumentException if the invoice is not a valid bolt11 invoice
+     */
+    @Nullable
+    public byte[] getDescriptionHash() {
+        byte[] hash = descriptionHash();
+        return hash == null ? null : hash.clone();
+    }
+
+    private byte[] descriptionHash() {
+        if (!descriptionHashParsed) {
+            descriptionHash = parseDescriptionHash(pr);
+            descriptionHashParsed = true;
+        }
+        return descriptionHash;
+    }
+
+    private static final int BOLT11_TIMESTAMP_WORDS = 7;
+    private static final int BOLT11_SIGNATURE_WORDS = 104;
+    private static final int BOLT11_DESCRIPTION_HASH_TAG = 23;
+    private static final int BOLT11_DESCRIPTION_HASH_WORDS = 52;
+
+    private static byte[] parseDescriptionHash(String pr) {
+        byte[] words = LnUrlBech32.decodeWords(pr);
+        int end = words.length - BOLT11_SIGNATURE_WORDS;
+        if (end < BOLT11_TIMESTAMP_WORDS) {
+            throw new IllegalArgumentException("Invalid bolt11 invoice: too short");
+        }
+        int i = BOLT11_TIMESTAMP_WORDS;
+        while (i + 3 <= end) {
+            int type = words[i];
+            int length = (words[i + 1] << 5) | words[i + 2];
+            i += 3;
+            if (i + length > end) {
+                throw new IllegalArgumentException("Invalid bolt11 invoice: truncated tagged field");
+            }
+            // fields with an unexpected length must be skipped
+            if (type == BOLT11_DESCRIPTION_HASH_TAG && length == BOLT11_DESCRIPTION_HASH_WORDS) {
+                return LnUrlBech32.wordsToBytes(words, i, length);
+            }
+            i += length;
+        }
+        return null;
+    }
+
+    /**
+     * Check that the description_hash of the invoice matches the pay request that returned it.
+     * For zaps, the hash must match the zap request. Otherwise it must match the metadata of the pay request,
+     * or the metadata followed by the payer data (LUD-18) if payer data was sent.
+     * @return true if the hash matches
+     * @throws IllegalStateException if this response was not fetched with {@link LnUrlPay#fetchInvoice}
+     */
+    public boolean verifyDescriptionHash() {
+        if (request == null) {
+            throw new IllegalStateException("This payment response is not bound to a pay request");
+        }
+        return verifyDescriptionHash(request, nostrZapRequest, payerData);
+    }
+
+    /**
+     * Check that the description_hash of the invoice matches the given pay request.
+     * @param request the pay request the invoice was fetched from
+     * @param nostrZapRequest the zap request sent with the invoice request, or null if this is not a zap
+     * @return true if the hash matches
+     */
+    public boolean verifyDescriptionHash(LnUrlPay request, @Nullable String nostrZapRequest) {
+        return verifyDescriptionHash(request, nostrZapRequest, null);
+    }
+
+    /**
+     * Check that the description_hash of the invoice matches the given pay request.
+     * @param request the pay request the invoice was fetched from
+     * @param nostrZapRequest the zap request sent with the invoice request, or null if this is not a zap
+     * @param payerData the exact payerdata json sent with the invoice request, or null if none was sent
+     * @return true if the hash matches
+     */
+    public boolean verifyDescriptionHash(LnUrlPay request, @Nullable String nostrZapRequest, @Nullable String payerData) {
+        byte[] hash = descriptionHash();
+        if (hash == null) {
+            return false;
+        }
+        if (nostrZapRequest != null && !nostrZapRequest.isEmpty()) {
+            return Arrays.equals(hash, LnUrlPay.sha256(nostrZapRequest));
+        }
+        byte[] expected = request.metadataHash();
+        if (expected == null) {
+            return false;
+        }
+        if (Arrays.equals(hash, expected)) {
+            return true;
+        }
+        // services that support LUD-18 commit to the metadata followed by the payer data
+        return payerData != null && Arrays.equals(hash, LnUrlPay.sha256(request.getRawMetadata() + payerData));
+    }
+
+    void setRequest(LnUrlPay request, @Nullable String nostrZapRequest, @Nullable String payerData) {
+        this.request = request;
+        this.nostrZapRequest = nostrZapRequest;
+        this.payerData = payerData;
+    }
+
+    void setTransport(@Nullable LnUrlHttpTransport transport) {
+        this.transport = transport;
+    }
+
+    void setDeadline(@Nullable LnUrlDeadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Verify the payment.
+     * If this response was fetched with an explicit transport or deadline, the same transport and deadline
+     * are used.
+     * @param timeout the request timeout
+     */
     public AsyncTask<LnUrlVerify> verify(Duration timeout) throws IOException, InterruptedException {
+        return verify(timeout, transport);
+    }
+
+    /**
+     * Verify the payment using the given transport.
+     * @param timeout the request timeout
+     * @param transport the transport, or null to use the default transport
+     */
+    public AsyncTask<LnUrlVerify> verify(Duration timeout, @Nullable LnUrlHttpTransport transport)
+        throws IOException, InterruptedException {
+        return verify(timeout, transport, deadline);
+    }
+
+    /**
+     * Verify the payment within a deadline.
+     * The request is retried according to the {@link LnUrl#getRetryPolicy() retry policy}, if one is set.
+     * @param timeout the timeout of each attempt, bounded by the deadline
+     * @param transport the transport, or null to use the default transport
+     * @param deadline the deadline, or null for none
+     */
+    public AsyncTask<LnUrlVerify> verify(
+        Duration timeout,
+        @Nullable LnUrlHttpTransport transport,
+        @Nullable LnUrlDeadline deadline
+    ) throws IOException, InterruptedException {
         if (!isVerificable()) {
             throw new IllegalStateException("This payment response is not verificable");
         }
-        return NGEPlatform
-            .get()
-            .httpGet(verify.toString(), timeout, null)
-            .then(body -> {
-                Map<String, Object> data = NGEPlatform.get().fromJSON(body, Map.class);
-                if (LnUrlException.isAssignableTo(data)) {
-                    throw new RuntimeException(new LnUrlException(data));
-                }
-                if (LnUrlVerify.isAssignableTo(data)) {
-                    return new LnUrlVerify(data);
-                } else {
-                    throw new RuntimeException(
-                        new LnUrlException(LnUrlException.Status.INVALID, "Response does not contain a valid verify structure")
-                    );
-                }
-            });
+        return LnUrlHttp.instrument(
+            LnUrlInstrumentation.Operation.VERIFY,
+            verify.getHost(),
+            () ->
+                LnUrlHttp
+                    .getIdempotent(verify, timeout, deadline, null, transport)
+                    .then(body -> {
+                        LnUrlVerify verify;
+                        long parseStart = LnUrlHttp.parseStart();
+                        try {
+                            verify = LnUrlVerify.fromJson(body);
+                        } catch (LnUrlException e) {
+                            throw new RuntimeException(e);
+                        }
+                        LnUrlHttp.parseEnd(LnUrlInstrumentation.Operation.VERIFY, parseStart);
+                        if (verify != null) {
+                            return verify;
+                        } else {
+                            throw new RuntimeException(
+                                new LnUrlException(
+                                    LnUrlException.Status.INVALID,
+                                    "Response does not contain a valid verify structure"
+                                )
+                            );
+                        }
+                    })
+        );
     }
 }
@@ -0,0 +1,386 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.ngengine.platform.AsyncExecutor;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * Retries and hedges the idempotent LNURL requests: service lookups and payment verifications.
+ * <p>
+ * Failed requests are retried up to {@code maxAttempts} times, waiting a random delay between zero and
+ * {@code baseDelay * 2^(attempt - 1)}, capped at {@code maxDelay}. Invoice requests are never retried, since
+ * every callback can create a new invoice.
+ * </p>
+ * <p>
+ * If hedging is enabled, a second request is sent when the first one is still pending after the p95 latency of
+ * its host, and the first response wins. Hedging starts once the host has at least
+ * {@link #MIN_HEDGE_SAMPLES} recorded responses.
+ * </p>
+ * <p>
+ * Set it with {@link LnUrl#setRetryPolicy(LnUrlRetryPolicy)}. The policy belongs to whoever created it:
+ * replacing it does not close it, call {@link #close()} once it is no longer used to stop its timer thread.
+ * </p>
+ */
+public class LnUrlRetryPolicy implements AutoCloseable {
+
+    private static final LnUrlLogger logger = LnUrlLogger.get(LnUrlRetryPolicy.class);
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(200);
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(5);
+    public static final double HEDGE_PERCENTILE = 95;
+    public static final int MIN_HEDGE_SAMPLES = 20;
+    public static final int DEFAULT_MAX_HOSTS = 1024;
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final boolean hedge;
+    private final Map<String, LnUrlLatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final LnUrlLatencyHistogram otherLatency = new LnUrlLatencyHistogram();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final Set<Runnable> scheduledRetries = new HashSet<>();
+    private AsyncExecutor executor;
+    private boolean closed;
+
+    public LnUrlRetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, false);
+    }
+
+    /**
+     * Create a new retry policy.
+     * @param maxAttempts the maximum number of attempts of each request, including the first one
+     * @param baseDelay the backoff before the first retry, doubled at every further attempt
+     * @param maxDelay the maximum backoff
+     * @param hedge true to send a second request when the first one is slower than the p95 latency of its host
+     */
+    public LnUrlRetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, boolean hedge) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be greater than 0");
+        }
+        Objects.requireNonNull(baseDelay, "Base delay cannot be null");
+        Objects.requireNonNull(maxDelay, "Max delay cannot be null");
+        if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= baseDelay <= maxDelay");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.hedge = hedge;
+    }
+
+    /**
+     * Run a request, retrying and hedging it according to this policy.
+     * @param host the host the request is sent to
+     * @param request starts an attempt with the given timeout
+     * @param timeout the timeout of each attempt, or null for none
+     * @param deadline the deadline of the whole request, or null for none
+     */
+    <T> AsyncTask<T> run(
+        String host,
+        Function<Duration, AsyncTask<T>> request,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline
+    ) {
+        return NGEPlatform.get().promisify((res, rej) -> attempt(host, request, timeout, deadline, 1, res, rej), null);
+    }
+
+    private <T> void attempt(
+        String host,
+        Function<Duration, AsyncTask<T>> request,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        int attempt,
+        Consumer<T> res,
+        Consumer<Throwable> rej
+    ) {
+        if (deadline != null && deadline.isExpired()) {
+            rej.accept(deadline.exceeded());
+            return;
+        }
+        LnUrlLatencyHistogram latency = latencyFor(host);
+        // the latency is measured from the start of the attempt, so a hedge that wins records the time the
+        // caller waited, not its own shorter time
+        long start = System.nanoTime();
+        AtomicBoolean settled = new AtomicBoolean();
+        AtomicInteger pending = new AtomicInteger(1);
+        // the attempt fails only when the original request and its hedge have both failed
+        Consumer<Throwable> fail = e -> {
+            if (pending.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                retry(host, request, timeout, deadline, attempt, e, res, rej);
+            }
+        };
+        send(request, timeout, deadline, start, latency, settled, res, fail);
+
+        if (!hedge || latency.getCount() < MIN_HEDGE_SAMPLES) {
+            return;
+        }
+        long delay = latency.getPercentile(HEDGE_PERCENTILE).toMillis();
+        if (deadline != null && TimeUnit.MILLISECONDS.toNanos(delay) >= deadline.remainingNanos()) {
+            return;
+        }
+        AsyncExecutor executor = getExecutor();
+        if (executor == null) {
+            return;
+        }
+        executor
+            .runLater(
+                () -> {
+                    int p;
+                    do {
+                        p = pending.get();
+                        if (p == 0 || settled.get()) {
+                            return null;
+                        }
+                    } while (!pending.compareAndSet(p, p + 1));
+                    hedges.increment();
+                    logger.fine("Hedging request to {0} after {1} ms", host, delay);
+                    send(request, timeout, deadline, start, latency, settled, res, fail);
+                    return null;
+                },
+                delay,
+                TimeUnit.MILLISECONDS
+            );
+    }
+
+    private <T> void send(
+        Function<Duration, AsyncTask<T>> request,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        long start,
+        LnUrlLatencyHistogram latency,
+        AtomicBoolean settled,
+        Consumer<T> res,
+        Consumer<Throwable> fail
+    ) {
+        AsyncTask<T> task;
+        try {
+            task = request.apply(deadline != null ? deadline.bound(timeout) : timeout);
+        } catch (Throwable e) {
+            fail.accept(e);
+            return;
+        }
+        task
+            .then(r -> {
+                if (settled.compareAndSet(false, true)) {
+                    latency.record(System.nanoTime() - start);
+                    res.accept(r);
+                }
+                return null;
+            })
+            .catchException(fail::accept);
+    }
+
+    private <T> void retry(
+        String host,
+        Function<Duration, AsyncTask<T>> request,
+        @Nullable Duration timeout,
+        @Nullable LnUrlDeadline deadline,
+        int attempt,
+        Throwable error,
+        Consumer<T> res,
+        Consumer<Throwable> rej
+    ) {
+        if (attempt >= maxAttempts || !isRetryable(error)) {
+            rej.accept(error);
+            return;
+        }
+        long delay = getBackoff(attempt);
+        if (deadline != null && TimeUnit.MILLISECONDS.toNanos(delay) >= deadline.remainingNanos()) {
+            // the next attempt could not complete in time
+            rej.accept(error);
+            return;
+        }
+        // a retry cancelled by close() fails with the error of its last attempt
+        Runnable cancel = () -> rej.accept(error);
+        AsyncExecutor executor;
+        synchronized (this) {
+            executor = getExecutor();
+            if (executor != null) {
+                scheduledRetries.add(cancel);
+            }
+        }
+        if (executor == null) {
+            rej.accept(error);
+            return;
+        }
+        retries.increment();
+        logger.fine("Retrying request to {0} in {1} ms: {2}", host, delay, error.getMessage());
+        executor
+            .runLater(
+                () -> {
+                    synchronized (this) {
+                        if (!scheduledRetries.remove(cancel)) {
+                            return null;
+                        }
+                    }
+                    attempt(host, request, timeout, deadline, attempt + 1, res, rej);
+                    return null;
+                },
+                delay,
+                TimeUnit.MILLISECONDS
+            );
+    }
+
+    /**
+     * Get the backoff before the next attempt.
+     * @param attempt the attempt that failed, starting from 1
+     * @return a random delay in milliseconds between zero and the exponential backoff for the attempt
+     */
+    protected long getBackoff(int attempt) {
+        return backoff(baseDelay, maxDelay, attempt);
+    }
+
+    /**
+     * Capped exponential backoff with full jitter.
+     * @param baseDelay the backoff of the first attempt
+     * @param maxDelay the maximum backoff
+     * @param attempt the attempt that failed, starting from 1
+     * @return a random delay in milliseconds between zero and {@code min(maxDelay, baseDelay * 2^(attempt - 1))}
+     */
+    static long backoff(Duration baseDelay, Duration maxDelay, int attempt) {
+        double exp = baseDelay.toMillis() * Math.pow(2, attempt - 1);
+        long cap = (long) Math.min(maxDelay.toMillis(), exp);
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Network failures, timeouts and rejections by the host limiter are retried, errors reported by the service
+     * and invalid responses are not.
+     * @param error the error of the failed attempt
+     * @return true if the request should be retried
+     */
+    protected boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof LnUrlException) {
+                return ((LnUrlException) t).getStatus() == LnUrlException.Status.REJECTED;
+            }
+            if (t instanceof IllegalArgumentException) {
+                return false;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private LnUrlLatencyHistogram latencyFor(String host) {
+        String key = host == null ? "" : host;
+        LnUrlLatencyHistogram latency = latencies.get(key);
+        if (latency != null) {
+            return latency;
+        }
+        if (latencies.size() >= DEFAULT_MAX_HOSTS) {
+            return otherLatency;
+        }
+        return latencies.computeIfAbsent(key, h -> new LnUrlLatencyHistogram());
+    }
+
+    @Nullable
+    private synchronized AsyncExecutor getExecutor() {
+        if (executor == null && !closed) {
+            executor = NGEPlatform.get().newAsyncExecutor(LnUrlRetryPolicy.class);
+        }
+        return executor;
+    }
+
+    /**
+     * Close this policy and stop its timer thread.
+     * Requests waiting for a retry fail with the error of their last attempt, requests in flight complete
+     * normally but are no longer retried or hedged.
+     */
+    @Override
+    public void close() {
+        AsyncExecutor executor;
+        List<Runnable> cancelled;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelled = new ArrayList<>(scheduledRetries);
+            scheduledRetries.clear();
+            executor = this.executor;
+            this.executor = null;
+        }
+        for (Runnable cancel : cancelled) {
+            cancel.run();
+        }
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    /**
+     * @param host the host
+     * @return the latency of the successful attempts to the host, from the start of the attempt to the first
+     *         response, used to decide when to hedge
+     */
+    @Nullable
+    public LnUrlLatencyHistogram getLatency(String host) {
+        return latencies.get(host);
+    }
+
+    /**
+     * @return the number of retried attempts
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return the number of hedged requests
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+}
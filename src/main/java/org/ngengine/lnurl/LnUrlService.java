@@ -31,6 +31,8 @@
 
 package org.ngengine.lnurl;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -44,6 +46,24 @@ public interface LnUrlService {
 
     public Map<String, Object> toMap();
 
+    /**
+     * Return the json representation of this service.
+     * Immutable services serialize themselves once and return the same array on every call.
+     * @return the utf-8 encoded json of {@link #toMap()}, the array must not be modified
+     */
+    public default byte[] toJsonBytes() {
+        return LnUrlJsonWriter.toBytes(toMap());
+    }
+
+    /**
+     * Write the json representation of this service.
+     * @param out the stream to write to, it is not flushed or closed
+     * @throws IOException if the stream fails
+     */
+    public default void writeTo(OutputStream out) throws IOException {
+        out.write(toJsonBytes());
+    }
+
     /**
      * A human readable name for the service.
      * Used for debugging and logging purposes.
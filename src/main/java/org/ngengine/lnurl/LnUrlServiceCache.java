@@ -0,0 +1,88 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * A cache for resolved LNURL services.
+ * <p>
+ * When a cache is set with {@link LnUrl#setServiceCache(LnUrlServiceCache)}, {@link LnUrl#getService(Duration)}
+ * will consult it before fetching the service from the network, and will store every successfully
+ * resolved service in it. Withdraw and channel requests are never cached: their k1 can be used only once.
+ * </p>
+ */
+public interface LnUrlServiceCache {
+    /**
+     * Get a cached service.
+     * @param url the plain url of the LNURL
+     * @return the cached service, or null if there is no valid entry for this url
+     */
+    @Nullable
+    public LnUrlService get(URI url);
+
+    /**
+     * Store a service in the cache.
+     * @param url the plain url of the LNURL
+     * @param service the service to cache
+     * @param ttl how long the entry is valid for, or null to use the cache default
+     */
+    public void put(URI url, LnUrlService service, @Nullable Duration ttl);
+
+    /**
+     * Remove the entry for the given url, if present.
+     * @param url the plain url of the LNURL
+     */
+    public void invalidate(URI url);
+
+    /**
+     * Remove all the entries.
+     */
+    public void invalidateAll();
+
+    /**
+     * @return the number of lookups that returned a valid entry
+     */
+    public long getHits();
+
+    /**
+     * @return the number of lookups that did not return a valid entry
+     */
+    public long getMisses();
+
+    /**
+     * @return the number of entries dropped because the cache was full or because they expired
+     */
+    public long getEvictions();
+}
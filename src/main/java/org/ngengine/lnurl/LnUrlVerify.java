@@ -32,6 +32,7 @@
 package org.ngengine.lnurl;
 
 import jakarta.annotation.Nullable;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,6 +48,7 @@ public class LnUrlVerify implements LnUrlService {
     private final String pr;
     private final String preimage;
     private transient Map<String, Object> map;
+    private final transient LnUrlJsonCache json = new LnUrlJsonCache(this::toMap);
 
     protected static boolean isAssignableTo(Map<String, Object> data) {
         return data.containsKey("settled") && data.containsKey("pr");
@@ -61,6 +63,64 @@ public class LnUrlVerify implements LnUrlService {
         this.preimage = data.containsKey("preimage") ? NGEUtils.safeString(data.get("preimage")) : null;
     }
 
+    private LnUrlVerify(boolean settled, String pr, String preimage) {
+        this.settled = settled;
+        this.pr = pr;
+        this.preimage = preimage;
+    }
+
+    private static final String[] JSON_FIELDS = { "settled", "pr", "preimage", "status", "reason" };
+
+    /**
+     * Parse a verify response directly from the json returned by the service, reading only the known fields.
+     * @return the verify response, or null if the json is not a verify response
+     * @throws LnUrlException if the json is an error response
+     */
+    static LnUrlVerify fromJson(String json) throws LnUrlException {
+        String pr = null, preimage = null, status = null, reason = null;
+        boolean settled = false, hasSettled = false, hasPr = false;
+
+        try {
+            LnUrlJsonReader reader = new LnUrlJsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(JSON_FIELDS)) {
+                    case 0:
+                        settled = reader.nextBoolean();
+                        hasSettled = true;
+                        break;
+                    case 1:
+                        pr = reader.nextString();
+                        hasPr = true;
+                        break;
+                    case 2:
+                        preimage = reader.nextString();
+                        break;
+                    case 3:
+                        status = reader.nextString();
+                        break;
+                    case 4:
+                        reason = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            reader.endDocument();
+        } catch (IOException e) {
+            throw new LnUrlException(LnUrlException.Status.INVALID, "Invalid LNURL verify response: " + e.getMessage(), e);
+        }
+
+        if ("ERROR".equals(status)) {
+            throw new LnUrlException(LnUrlException.Status.ERROR, reason);
+        }
+        if (!hasSettled || !hasPr) {
+            return null;
+        }
+        return new LnUrlVerify(settled, NGEUtils.safeString(pr), preimage);
+    }
+
     /**
      * Get the preimage of the payment request if it was settled.
      * @return The preimage of the payment request, or null if not provided.
@@ -91,6 +151,11 @@ public class LnUrlVerify implements LnUrlService {
         return "Verify Service";
     }
 
+    @Override
+    public byte[] toJsonBytes() {
+        return json.get();
+    }
+
     @Override
     public Map<String, Object> toMap() {
         if (this.map == null) {
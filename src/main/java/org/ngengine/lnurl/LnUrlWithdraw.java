@@ -0,0 +1,190 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEUtils;
+
+/**
+ * An lnurl withdraw request service
+ */
+// lud-03
+public class LnUrlWithdraw implements LnUrlService {
+
+    protected static boolean isAssignableTo(Map<String, Object> data) {
+        return "withdrawRequest".equals(data.get("tag"));
+    }
+
+    private final URI callback;
+    private final String k1;
+    private final String defaultDescription;
+    private final long minWithdrawable, maxWithdrawable;
+    private final transient LnUrlJsonCache json = new LnUrlJsonCache(this::toMap);
+
+    protected LnUrlWithdraw(URI callback, String k1, String defaultDescription, long minWithdrawable, long maxWithdrawable) {
+        if (k1 == null || k1.isEmpty()) {
+            throw new IllegalArgumentException("k1 cannot be null or empty");
+        }
+        if (minWithdrawable < 0 || minWithdrawable > maxWithdrawable) {
+            throw new IllegalArgumentException("Invalid withdrawable range: " + minWithdrawable + " - " + maxWithdrawable);
+        }
+        this.callback = callback;
+        this.k1 = k1;
+        this.defaultDescription = defaultDescription != null ? defaultDescription : "";
+        this.minWithdrawable = minWithdrawable;
+        this.maxWithdrawable = maxWithdrawable;
+    }
+
+    protected LnUrlWithdraw(Map<String, Object> data) {
+        this(
+            NGEUtils.safeURI(requireTag(data).get("callback")),
+            NGEUtils.safeString(data.get("k1")),
+            data.containsKey("defaultDescription") ? NGEUtils.safeString(data.get("defaultDescription")) : null,
+            NGEUtils.safeLong(data.get("minWithdrawable")),
+            NGEUtils.safeLong(data.get("maxWithdrawable"))
+        );
+    }
+
+    private static Map<String, Object> requireTag(Map<String, Object> data) {
+        if (!isAssignableTo(data)) {
+            throw new IllegalArgumentException("Data does not represent a withdraw request");
+        }
+        return data;
+    }
+
+    public URI getCallback() {
+        return callback;
+    }
+
+    public String getK1() {
+        return k1;
+    }
+
+    public String getDefaultDescription() {
+        return defaultDescription;
+    }
+
+    /**
+     * @return the minimum amount that can be withdrawn, in millisatoshis
+     */
+    public long getMinWithdrawable() {
+        return minWithdrawable;
+    }
+
+    /**
+     * @return the maximum amount that can be withdrawn, in millisatoshis
+     */
+    public long getMaxWithdrawable() {
+        return maxWithdrawable;
+    }
+
+    public boolean canWithdraw(long amount) {
+        return amount >= minWithdrawable && amount <= maxWithdrawable;
+    }
+
+    /**
+     * Get the callback url that submits the given invoice.
+     * @param pr the bolt11 invoice to be paid by the service
+     */
+    public URI getCallback(String pr) {
+        return buildCallback(pr).toURI();
+    }
+
+    private LnUrlCallbackBuilder buildCallback(String pr) {
+        if (pr == null || pr.isEmpty()) {
+            throw new IllegalArgumentException("Invoice cannot be null or empty");
+        }
+        return new LnUrlCallbackBuilder(callback).param("k1", k1).param("pr", pr);
+    }
+
+    public AsyncTask<Void> withdraw(String pr) {
+        return withdraw(pr, LnUrl.DEFAULT_TIMEOUT, null);
+    }
+
+    public AsyncTask<Void> withdraw(String pr, Duration timeout) {
+        return withdraw(pr, timeout, null);
+    }
+
+    /**
+     * Submit an invoice to the service, that will pay it asynchronously.
+     * The k1 of the service can be used only once: fetch the service again to submit another invoice.
+     * @param pr the bolt11 invoice to be paid by the service
+     * @param timeout the request timeout
+     * @param transport the transport, or null to use the default transport
+     * @return an AsyncTask that completes when the service accepts the invoice, or fails with a {@link LnUrlException}
+     *          if the service rejects it
+     */
+    public AsyncTask<Void> withdraw(String pr, Duration timeout, @Nullable LnUrlHttpTransport transport) {
+        return LnUrlHttp.instrument(
+            LnUrlInstrumentation.Operation.WITHDRAW,
+            callback.getHost(),
+            () ->
+                LnUrlHttp
+                    .get(callback.getHost(), buildCallback(pr).toString(), timeout, null, transport)
+                    .then(body -> {
+                        try {
+                            LnUrlException.checkStatus(body);
+                        } catch (LnUrlException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return null;
+                    })
+        );
+    }
+
+    @Override
+    public String getName() {
+        return "LNURL Withdraw Request";
+    }
+
+    @Override
+    public byte[] toJsonBytes() {
+        return json.get();
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("tag", "withdrawRequest");
+        map.put("callback", callback.toString());
+        map.put("k1", k1);
+        map.put("defaultDescription", defaultDescription);
+        map.put("minWithdrawable", minWithdrawable);
+        map.put("maxWithdrawable", maxWithdrawable);
+        return map;
+    }
+}
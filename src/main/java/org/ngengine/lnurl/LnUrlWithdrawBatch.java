@@ -0,0 +1,489 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.ngengine.platform.AsyncExecutor;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * Redeem many LNURL withdraw links at once.
+ * <p>
+ * Each request resolves its {@link LnUrlWithdraw} service, obtains one invoice for it and submits the invoice
+ * to the service callback. The number of requests in flight is bounded globally and per host.
+ * Every request fetches its own service, since the k1 of a withdraw request can be used only once.
+ * Resolving the service is retried on network failures, with the capped exponential backoff and full jitter of
+ * {@link LnUrlRetryPolicy}. Submitting the invoice redeems the k1, so it is retried only when the host limiter
+ * rejected it before it was sent: after a timeout the service may have paid the invoice, and the result reports
+ * an unknown outcome instead.
+ * Errors reported by the service are not retried.
+ * A failure is reported in the result of the request that caused it and does not affect the others.
+ * </p>
+ * <p>
+ * A batch runner can be reused for many batches. It belongs to whoever created it, call {@link #close()} once it
+ * is no longer used to stop the timer thread of its retries.
+ * </p>
+ */
+public class LnUrlWithdrawBatch implements AutoCloseable {
+
+    private static final LnUrlLogger logger = LnUrlLogger.get(LnUrlWithdrawBatch.class);
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+    public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(1);
+    public static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+
+    /**
+     * A request to redeem a withdraw link.
+     */
+    public static class WithdrawRequest {
+
+        private final LnUrl lnurl;
+        private final Function<LnUrlWithdraw, AsyncTask<String>> invoiceFactory;
+
+        /**
+         * @param lnurl the withdraw link
+         * @param pr the invoice to submit
+         */
+        public WithdrawRequest(LnUrl lnurl, String pr) {
+            this(lnurl, service -> NGEPlatform.get().promisify((res, rej) -> res.accept(pr), null));
+            Objects.requireNonNull(pr, "Invoice cannot be null");
+        }
+
+        /**
+         * @param lnurl the withdraw link
+         * @param invoiceFactory creates the invoice to submit once the service is resolved, eg. for its
+         *          {@link LnUrlWithdraw#getMaxWithdrawable()}. It is called at most once per request.
+         */
+        public WithdrawRequest(LnUrl lnurl, Function<LnUrlWithdraw, AsyncTask<String>> invoiceFactory) {
+            this.lnurl = Objects.requireNonNull(lnurl, "LnUrl cannot be null");
+            this.invoiceFactory = Objects.requireNonNull(invoiceFactory, "Invoice factory cannot be null");
+        }
+
+        public LnUrl getLnUrl() {
+            return lnurl;
+        }
+    }
+
+    /**
+     * The outcome of a {@link WithdrawRequest}.
+     */
+    public static class WithdrawResult {
+
+        private final WithdrawRequest request;
+        private final LnUrlWithdraw service;
+        private final String pr;
+        private final Throwable error;
+        private final boolean outcomeUnknown;
+
+        private WithdrawResult(WithdrawRequest request, LnUrlWithdraw service, String pr, Throwable error) {
+            this(request, service, pr, error, false);
+        }
+
+        private WithdrawResult(
+            WithdrawRequest request,
+            LnUrlWithdraw service,
+            String pr,
+            Throwable error,
+            boolean outcomeUnknown
+        ) {
+            this.request = request;
+            this.service = service;
+            this.pr = pr;
+            this.error = error;
+            this.outcomeUnknown = outcomeUnknown;
+        }
+
+        public WithdrawRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * @return the resolved service, or null if it could not be resolved
+         */
+        @Nullable
+        public LnUrlWithdraw getService() {
+            return service;
+        }
+
+        /**
+         * @return the submitted invoice, or null if the request failed before an invoice was obtained
+         */
+        @Nullable
+        public String getPr() {
+            return pr;
+        }
+
+        /**
+         * @return the error that caused the request to fail, or null if the service accepted the invoice
+         */
+        @Nullable
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * @return true if the invoice was submitted but the service did not answer, eg. the callback timed out.
+         *          The service may have paid the invoice anyway, so check it before redeeming the link again.
+         */
+        public boolean isOutcomeUnknown() {
+            return outcomeUnknown;
+        }
+    }
+
+    private final LnUrlBoundedExecutor executor;
+    private final Duration timeout;
+    private final LnUrlHttpTransport transport;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Set<Runnable> scheduledRetries = new HashSet<>();
+    private AsyncExecutor retryExecutor;
+    private boolean closed;
+
+    public LnUrlWithdrawBatch() {
+        this(DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY_PER_HOST, LnUrl.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Create a new batch runner.
+     * @param maxConcurrency the maximum number of requests in flight
+     * @param maxConcurrencyPerHost the maximum number of requests in flight to the same host
+     * @param timeout the timeout of each http request
+     */
+    public LnUrlWithdrawBatch(int maxConcurrency, int maxConcurrencyPerHost, Duration timeout) {
+        this(maxConcurrency, maxConcurrencyPerHost, timeout, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY, null);
+    }
+
+    /**
+     * Create a new batch runner.
+     * @param maxConcurrency the maximum number of requests in flight
+     * @param maxConcurrencyPerHost the maximum number of requests in flight to the same host
+     * @param timeout the timeout of each http request
+     * @param maxAttempts the maximum number of attempts of each http request, 1 to disable retries
+     * @param retryDelay the maximum delay before the first retry, doubled on every further retry up to
+     *          {@link #MAX_RETRY_DELAY}. Each delay is random between zero and that maximum
+     * @param transport the transport, or null to use the default transport
+     */
+    public LnUrlWithdrawBatch(
+        int maxConcurrency,
+        int maxConcurrencyPerHost,
+        Duration timeout,
+        int maxAttempts,
+        Duration retryDelay,
+        @Nullable LnUrlHttpTransport transport
+    ) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be greater than 0");
+        }
+        this.executor = new LnUrlBoundedExecutor(maxConcurrency, maxConcurrencyPerHost);
+        this.timeout = Objects.requireNonNull(timeout, "Timeout cannot be null");
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = Objects.requireNonNull(retryDelay, "Retry delay cannot be null");
+        if (retryDelay.isNegative()) {
+            throw new IllegalArgumentException("Retry delay cannot be negative");
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * Redeem every request.
+     * @param requests the requests
+     * @return an AsyncTask that completes when every request is settled, with the results in the same order of the requests
+     */
+    public AsyncTask<List<WithdrawResult>> withdraw(List<WithdrawRequest> requests) {
+        return withdraw(requests, null);
+    }
+
+    /**
+     * Redeem every request.
+     * @param requests the requests
+     * @param onResult called as soon as each request is settled, in completion order
+     * @return an AsyncTask that completes when every request is settled, with the results in the same order of the requests
+     */
+    public AsyncTask<List<WithdrawResult>> withdraw(
+        List<WithdrawRequest> requests,
+        @Nullable Consumer<WithdrawResult> onResult
+    ) {
+        List<WithdrawRequest> reqs = new ArrayList<>(requests);
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    WithdrawResult[] results = new WithdrawResult[reqs.size()];
+                    AtomicInteger remaining = new AtomicInteger(reqs.size());
+                    if (reqs.isEmpty()) {
+                        res.accept(Collections.emptyList());
+                        return;
+                    }
+                    for (int i = 0; i < reqs.size(); i++) {
+                        int index = i;
+                        WithdrawRequest req = reqs.get(i);
+                        Consumer<WithdrawResult> settle = result -> {
+                            results[index] = result;
+                            if (onResult != null) {
+                                try {
+                                    onResult.accept(result);
+                                } catch (Exception e) {
+                                    logger.warning("Error in batch result listener: {0}", e.getMessage());
+                                }
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                res.accept(Collections.unmodifiableList(Arrays.asList(results)));
+                            }
+                        };
+                        executor
+                            .submit(req.getLnUrl().toURI().getHost(), () -> withdraw(req))
+                            .then(r -> {
+                                settle.accept(r);
+                                return null;
+                            })
+                            .catchException(e -> settle.accept(new WithdrawResult(req, null, null, e)));
+                    }
+                },
+                null
+            );
+    }
+
+    private AsyncTask<WithdrawResult> withdraw(WithdrawRequest req) {
+        return retry(
+            () -> {
+                try {
+                    return req.getLnUrl().<LnUrlService>getService(timeout, transport);
+                } catch (LnUrlException e) {
+                    throw new RuntimeException(e);
+                }
+            },
+            LnUrlWithdrawBatch::isRetryable
+        )
+            .compose(s -> {
+                if (!(s instanceof LnUrlWithdraw)) {
+                    throw new RuntimeException(
+                        new LnUrlException(
+                            LnUrlException.Status.INVALID,
+                            "Not a withdraw request: " + req.getLnUrl().toURI() + " (" + s.getName() + ")"
+                        )
+                    );
+                }
+                LnUrlWithdraw service = (LnUrlWithdraw) s;
+                return req.invoiceFactory.apply(service).compose(pr -> submit(req, service, pr));
+            });
+    }
+
+    private AsyncTask<WithdrawResult> submit(WithdrawRequest req, LnUrlWithdraw service, String pr) {
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    // a callback that was sent may have redeemed the k1, only the ones never sent are retried
+                    retry(() -> service.withdraw(pr, timeout, transport), LnUrlWithdrawBatch::isRejected)
+                        .then(r -> {
+                            res.accept(new WithdrawResult(req, service, pr, null));
+                            return null;
+                        })
+                        .catchException(e -> {
+                            // without an answer from the service the invoice may have been paid or not
+                            boolean unknown = findLnUrlException(e) == null;
+                            res.accept(new WithdrawResult(req, service, pr, e, unknown));
+                        });
+                },
+                null
+            );
+    }
+
+    private <T> AsyncTask<T> retry(Supplier<AsyncTask<T>> request, Predicate<Throwable> retryable) {
+        return NGEPlatform.get().promisify((res, rej) -> attempt(request, retryable, 1, res, rej), null);
+    }
+
+    private <T> void attempt(
+        Supplier<AsyncTask<T>> request,
+        Predicate<Throwable> retryable,
+        int attempt,
+        Consumer<T> res,
+        Consumer<Throwable> rej
+    ) {
+        AsyncTask<T> task;
+        try {
+            task = request.get();
+        } catch (Throwable e) {
+            rej.accept(e);
+            return;
+        }
+        task
+            .then(r -> {
+                res.accept(r);
+                return null;
+            })
+            .catchException(e -> {
+                if (attempt >= maxAttempts || !retryable.test(e)) {
+                    rej.accept(e);
+                    return;
+                }
+                long delay = getBackoff(attempt);
+                // a retry cancelled by close() fails with the error of its last attempt
+                Runnable cancel = () -> rej.accept(e);
+                AsyncExecutor retryExecutor;
+                synchronized (this) {
+                    retryExecutor = getRetryExecutor();
+                    if (retryExecutor != null) {
+                        scheduledRetries.add(cancel);
+                    }
+                }
+                if (retryExecutor == null) {
+                    rej.accept(e);
+                    return;
+                }
+                logger.fine("Retrying request in {0} ms, attempt {1}: {2}", delay, attempt + 1, e.getMessage());
+                retryExecutor
+                    .runLater(
+                        () -> {
+                            synchronized (this) {
+                                if (!scheduledRetries.remove(cancel)) {
+                                    return null;
+                                }
+                            }
+                            attempt(request, retryable, attempt + 1, res, rej);
+                            return null;
+                        },
+                        delay,
+                        TimeUnit.MILLISECONDS
+                    );
+            });
+    }
+
+    /**
+     * @param attempt the attempt that failed, starting from 1
+     * @return a random delay in milliseconds between zero and the exponential backoff for the attempt
+     */
+    long getBackoff(int attempt) {
+        Duration maxDelay = retryDelay.compareTo(MAX_RETRY_DELAY) > 0 ? retryDelay : MAX_RETRY_DELAY;
+        return LnUrlRetryPolicy.backoff(retryDelay, maxDelay, attempt);
+    }
+
+    @Nullable
+    private synchronized AsyncExecutor getRetryExecutor() {
+        if (retryExecutor == null && !closed) {
+            retryExecutor = NGEPlatform.get().newAsyncExecutor(LnUrlWithdrawBatch.class);
+        }
+        return retryExecutor;
+    }
+
+    /**
+     * Close this batch runner and stop the timer thread of its retries.
+     * Requests waiting for a retry fail with the error of their last attempt, requests in flight complete
+     * normally but are no longer retried.
+     */
+    @Override
+    public void close() {
+        AsyncExecutor retryExecutor;
+        List<Runnable> cancelled;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelled = new ArrayList<>(scheduledRetries);
+            scheduledRetries.clear();
+            retryExecutor = this.retryExecutor;
+            this.retryExecutor = null;
+        }
+        for (Runnable cancel : cancelled) {
+            cancel.run();
+        }
+        if (retryExecutor != null) {
+            retryExecutor.close();
+        }
+    }
+
+    /**
+     * Network failures and rejections by the host limiter are retried, errors reported by the service
+     * and invalid responses are not.
+     */
+    private static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof LnUrlException) {
+                return ((LnUrlException) t).getStatus() == LnUrlException.Status.REJECTED;
+            }
+            if (t instanceof IllegalArgumentException) {
+                return false;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Requests rejected by the host limiter were never sent.
+     */
+    private static boolean isRejected(Throwable e) {
+        LnUrlException lnurlException = findLnUrlException(e);
+        return lnurlException != null && lnurlException.getStatus() == LnUrlException.Status.REJECTED;
+    }
+
+    /**
+     * @return the {@link LnUrlException} that caused the failure, or null if it was not reported by the service
+     *          or the host limiter, eg. a timeout
+     */
+    @Nullable
+    private static LnUrlException findLnUrlException(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof LnUrlException) {
+                return (LnUrlException) t;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return null;
+    }
+}
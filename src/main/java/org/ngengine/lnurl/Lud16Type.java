@@ -31,6 +31,8 @@
 
 package org.ngengine.lnurl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -56,31 +58,119 @@ public class Lud16Type {
     }
 
     public boolean isAssignableTo(String lnurl) {
-        return lnurl.toLowerCase().trim().startsWith(prefix + "://");
+        int start = skipWhitespace(lnurl);
+        return (
+            lnurl.regionMatches(true, start, prefix, 0, prefix.length()) &&
+            lnurl.startsWith("://", start + prefix.length())
+        );
     }
 
     public String toHttps(String url) {
         if (!isAssignableTo(url)) {
             throw new IllegalArgumentException("URL does not start with the expected prefix: " + prefix);
         }
-        return "https://" + url.substring(prefix.length() + 3); // +3 for "://"
+        int start = skipWhitespace(url) + prefix.length() + 3; // +3 for "://"
+        return "https://" + url.substring(start).trim();
     }
 
-    private static final List<Lud16Type> LUD_16_TYPES = List.of(
-        new Lud16Type("lnurlc", "channelRequest"),
-        new Lud16Type("lnurlw", "withdrawRequest"),
-        new Lud16Type("lnurlp", "payRequest"),
-        new Lud16Type("keyauth", "login")
-    );
+    private static int skipWhitespace(CharSequence s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    /**
+     * A node of the prefix trie, indexed by lower case ascii character.
+     */
+    private static final class Node {
+
+        private final Node[] children = new Node[128];
+        private Lud16Type type;
+    }
+
+    private static final List<Lud16Type> types = new ArrayList<>();
+    private static volatile Node root = new Node();
+
+    static {
+        register(new Lud16Type("lnurlc", "channelRequest"));
+        register(new Lud16Type("lnurlw", "withdrawRequest"));
+        register(new Lud16Type("lnurlp", "payRequest"));
+        register(new Lud16Type("keyauth", "login"));
+    }
+
+    /**
+     * Register a new lud16 url type.
+     * A type registered with the prefix of an existing type replaces it.
+     * @param type the type, its prefix can contain only ascii letters, digits, '+', '-' and '.'
+     */
+    public static synchronized void register(Lud16Type type) {
+        Objects.requireNonNull(type, "Type cannot be null");
+        String prefix = type.prefix();
+        if (prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("Prefix cannot be null or empty");
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            boolean alphanumeric = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (!alphanumeric && c != '+' && c != '-' && c != '.') {
+                throw new IllegalArgumentException("Invalid prefix: " + prefix);
+            }
+        }
+        types.removeIf(t -> t.prefix().equalsIgnoreCase(prefix));
+        types.add(type);
+
+        // rebuild and publish a new trie, so lookups never need to lock
+        Node newRoot = new Node();
+        for (Lud16Type t : types) {
+            Node node = newRoot;
+            for (int i = 0; i < t.prefix().length(); i++) {
+                int c = Character.toLowerCase(t.prefix().charAt(i));
+                if (node.children[c] == null) {
+                    node.children[c] = new Node();
+                }
+                node = node.children[c];
+            }
+            node.type = t;
+        }
+        root = newRoot;
+    }
+
+    /**
+     * Get all the registered lud16 url types.
+     */
+    public static synchronized List<Lud16Type> getTypes() {
+        return Collections.unmodifiableList(new ArrayList<>(types));
+    }
 
     public static boolean isLud16(String lnurl) {
-        if (lnurl == null || lnurl.isEmpty()) return false;
-        return LUD_16_TYPES.stream().anyMatch(prefix -> prefix.isAssignableTo(lnurl));
+        return getLud16(lnurl) != null;
     }
 
     public static Lud16Type getLud16(String lnurl) {
         if (lnurl == null || lnurl.isEmpty()) return null;
-        return LUD_16_TYPES.stream().filter(prefix -> prefix.isAssignableTo(lnurl)).findFirst().orElse(null);
+        return getLud16(lnurl, skipWhitespace(lnurl), lnurl.length());
+    }
+
+    /**
+     * Find the type of the lud16 url in s[start, end), case insensitively and without allocating.
+     * @return the type, or null if the url does not start with a registered prefix followed by "://"
+     */
+    static Lud16Type getLud16(CharSequence s, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                return node.type != null && i + 2 < end && s.charAt(i + 1) == '/' && s.charAt(i + 2) == '/' ? node.type : null;
+            }
+            if (c >= 128) {
+                return null;
+            }
+            node = node.children[c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c];
+            if (node == null) {
+                return null;
+            }
+        }
+        return null;
     }
 
     @Override
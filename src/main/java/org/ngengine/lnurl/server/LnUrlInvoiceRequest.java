@@ -0,0 +1,113 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl.server;
+
+import jakarta.annotation.Nullable;
+import org.ngengine.lnurl.LnUrlPay;
+
+/**
+ * A validated request for an invoice, received on the callback of a pay request.
+ */
+public final class LnUrlInvoiceRequest {
+
+    private final String username;
+    private final LnUrlPay payRequest;
+    private final long amount;
+    private final String comment;
+    private final String payerData;
+    private final String nostrZapRequest;
+    private final byte[] descriptionHash;
+
+    LnUrlInvoiceRequest(
+        String username,
+        LnUrlPay payRequest,
+        long amount,
+        @Nullable String comment,
+        @Nullable String payerData,
+        @Nullable String nostrZapRequest,
+        byte[] descriptionHash
+    ) {
+        this.username = username;
+        this.payRequest = payRequest;
+        this.amount = amount;
+        this.comment = comment;
+        this.payerData = payerData;
+        this.nostrZapRequest = nostrZapRequest;
+        this.descriptionHash = descriptionHash;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public LnUrlPay getPayRequest() {
+        return payRequest;
+    }
+
+    /**
+     * @return the amount in millisatoshis
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    @Nullable
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * @return the payer data json, or null if not provided
+     */
+    @Nullable
+    public String getPayerData() {
+        return payerData;
+    }
+
+    /**
+     * @return the nip-57 zap request json, or null if this is not a zap
+     */
+    @Nullable
+    public String getNostrZapRequest() {
+        return nostrZapRequest;
+    }
+
+    /**
+     * Get the description hash the invoice must commit to.
+     * It is the hash of the zap request for zaps, the hash of the pay request metadata followed by the payer data
+     * if payer data was sent, or the hash of the pay request metadata.
+     * @return the 32 bytes hash
+     */
+    public byte[] getDescriptionHash() {
+        return descriptionHash.clone();
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl.server;
+
+import jakarta.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.ngengine.lnurl.LnUrlLogger;
+import org.ngengine.lnurl.LnUrlPay;
+import org.ngengine.lnurl.LnUrlPayerData;
+import org.ngengine.lnurl.LnUrlPaymentResponse;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+import org.ngengine.platform.NGEUtils;
+
+/**
+ * The receiving side of LNURL pay.
+ * <p>
+ * Serves the pay request of every registered user at {@code /.well-known/lnurlp/<user>}, and the invoice
+ * requests received on their callbacks. The server is independent of the http server: pass it the path and
+ * the raw query of each request and write back the returned {@link LnUrlServerResponse}.
+ * </p>
+ * <p>
+ * Pay request documents are serialized once, when the user is registered, and served as shared byte arrays.
+ * Callback parameters are validated on the raw query without decoding it, and only valid requests are decoded
+ * and handed to the {@link LnUrlInvoiceBackend}.
+ * </p>
+ * <p>
+ * Nip-57 zap requests are checked for their kind, tags and amount, but their signature is not verified: the
+ * backend must verify it before it publishes the zap receipt.
+ * </p>
+ */
+// lud-06, lud-12, lud-16, lud-18, nip-57
+public class LnUrlPayServer {
+
+    private static final LnUrlLogger logger = LnUrlLogger.get(LnUrlPayServer.class);
+
+    public static final String WELL_KNOWN_PATH = "/.well-known/lnurlp/";
+
+    private static final String[] ZAP_REQUEST_FIELDS = { "id", "pubkey", "sig" };
+
+    // lud-06: routes are deprecated, but some wallets still expect the field
+    private static final byte[] ROUTES = ",\"routes\":[]}".getBytes(StandardCharsets.US_ASCII);
+
+    // the error responses with a fixed reason are serialized once and shared
+    private static final LnUrlServerResponse MISSING_AMOUNT = LnUrlServerResponse.error(400, "Missing amount");
+    private static final LnUrlServerResponse INVALID_COMMENT = LnUrlServerResponse.error(400, "Invalid or too long comment");
+    private static final LnUrlServerResponse NOSTR_NOT_SUPPORTED = LnUrlServerResponse.error(
+        400,
+        "Nostr zaps are not supported"
+    );
+    private static final LnUrlServerResponse MISSING_PAYER_DATA = LnUrlServerResponse.error(400, "Missing payer data");
+    private static final LnUrlServerResponse MISSING_REQUIRED_PAYER_DATA = LnUrlServerResponse.error(
+        400,
+        "Missing required payer data"
+    );
+    private static final LnUrlServerResponse INVALID_ZAP_REQUEST = LnUrlServerResponse.error(400, "Invalid zap request");
+    private static final LnUrlServerResponse INVALID_PARAMETERS = LnUrlServerResponse.error(400, "Invalid parameters");
+    private static final LnUrlServerResponse INVOICE_FAILED = LnUrlServerResponse.error(500, "Failed to create invoice");
+
+    private static final class Route {
+
+        private final String username;
+        private final LnUrlPay payRequest;
+        private final String callbackPath;
+        private final byte[] document;
+        private final String rawMetadata;
+        private final byte[] metadataHash;
+        private final LnUrlServerResponse invalidAmount;
+
+        private Route(
+            String username,
+            LnUrlPay payRequest,
+            String callbackPath,
+            byte[] document,
+            String rawMetadata,
+            byte[] metadataHash
+        ) {
+            this.username = username;
+            this.payRequest = payRequest;
+            this.callbackPath = callbackPath;
+            this.document = document;
+            this.rawMetadata = rawMetadata;
+            this.metadataHash = metadataHash;
+            this.invalidAmount =
+                LnUrlServerResponse.error(
+                    400,
+                    "Amount must be between " + payRequest.getMinSendable() + " and " + payRequest.getMaxSendable()
+                );
+        }
+    }
+
+    private final LnUrlInvoiceBackend backend;
+    private final Map<String, Route> documents = new ConcurrentHashMap<>();
+    private final Map<String, Route> callbacks = new ConcurrentHashMap<>();
+
+    public LnUrlPayServer(LnUrlInvoiceBackend backend) {
+        this.backend = Objects.requireNonNull(backend, "Backend cannot be null");
+    }
+
+    /**
+     * Register, or replace, the pay request of a user.
+     * @param username the username, only a-z0-9-_.+ characters are allowed
+     * @param payRequest the pay request, its callback path must be unique to this user
+     */
+    public void register(String username, LnUrlPay payRequest) {
+        Objects.requireNonNull(payRequest, "Pay request cannot be null");
+        if (username == null || username.isEmpty()) {
+            throw new IllegalArgumentException("Username cannot be null or empty");
+        }
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '_' && c != '.' && c != '+') {
+                throw new IllegalArgumentException("Invalid username format. Only a-z0-9-_.+ characters are allowed.");
+            }
+        }
+        String callbackPath = payRequest.getCallback().getRawPath();
+        if (callbackPath == null || callbackPath.isEmpty() || callbackPath.startsWith(WELL_KNOWN_PATH)) {
+            throw new IllegalArgumentException("Invalid callback path: " + callbackPath);
+        }
+        byte[] metadataHash = payRequest.getMetadataHash();
+        if (metadataHash == null) {
+            throw new IllegalArgumentException("Pay request must have metadata");
+        }
+        byte[] document = payRequest.toJsonBytes();
+        Route route = new Route(username, payRequest, callbackPath, document, payRequest.getRawMetadata(), metadataHash);
+
+        synchronized (this) {
+            Route other = callbacks.get(callbackPath);
+            if (other != null && !other.username.equals(username)) {
+                throw new IllegalArgumentException("Callback path already used by " + other.username + ": " + callbackPath);
+            }
+            Route old = documents.put(WELL_KNOWN_PATH + username, route);
+            if (old != null) {
+                callbacks.remove(old.callbackPath);
+            }
+            callbacks.put(callbackPath, route);
+        }
+    }
+
+    /**
+     * Remove the pay request of a user.
+     * @param username the username
+     */
+    public synchronized void unregister(String username) {
+        Route old = documents.remove(WELL_KNOWN_PATH + username);
+        if (old != null) {
+            callbacks.remove(old.callbackPath);
+        }
+    }
+
+    /**
+     * Get the serialized pay request of a user.
+     * @param username the username
+     * @return the utf-8 encoded json document, or null if the user is not registered. It must not be modified.
+     */
+    @Nullable
+    public byte[] getPayRequestDocument(String username) {
+        Route route = documents.get(WELL_KNOWN_PATH + username);
+        return route == null ? null : route.document;
+    }
+
+    /**
+     * Handle a GET request.
+     * @param path the path of the request, eg. /.well-known/lnurlp/alice
+     * @param rawQuery the raw, still url encoded, query string, or null if there is none
+     * @return an AsyncTask that completes with the response, it never fails
+     */
+    public AsyncTask<LnUrlServerResponse> handle(String path, @Nullable String rawQuery) {
+        Route route = documents.get(path);
+        if (route != null) {
+            return completed(new LnUrlServerResponse(200, route.document));
+        }
+        route = callbacks.get(path);
+        if (route == null) {
+            return completed(LnUrlServerResponse.NOT_FOUND);
+        }
+        return handleCallback(route, rawQuery);
+    }
+
+    private AsyncTask<LnUrlServerResponse> handleCallback(Route route, @Nullable String query) {
+        LnUrlPay payRequest = route.payRequest;
+
+        long amountRange = LnUrlQuery.find(query, "amount");
+        if (amountRange == LnUrlQuery.NOT_FOUND) {
+            return completed(MISSING_AMOUNT);
+        }
+        long amount = LnUrlQuery.parseLong(query, amountRange);
+        if (amount < 0 || !payRequest.canSend(amount)) {
+            return completed(route.invalidAmount);
+        }
+
+        long commentRange = LnUrlQuery.find(query, "comment");
+        if (commentRange != LnUrlQuery.NOT_FOUND) {
+            int length = LnUrlQuery.decodedLength(query, commentRange);
+            if (length < 0 || length > payRequest.getMaxCommentLength()) {
+                return completed(INVALID_COMMENT);
+            }
+        }
+
+        long nostrRange = LnUrlQuery.find(query, "nostr");
+        if (nostrRange != LnUrlQuery.NOT_FOUND && !payRequest.isNostrAllowed()) {
+            return completed(NOSTR_NOT_SUPPORTED);
+        }
+
+        long payerDataRange = LnUrlQuery.find(query, "payerdata");
+        LnUrlPayerData template = payRequest.getPayerData();
+        boolean payerDataRequired = template != null && !template.getRequired().isEmpty();
+        if (payerDataRange == LnUrlQuery.NOT_FOUND && payerDataRequired) {
+            return completed(MISSING_PAYER_DATA);
+        }
+
+        // the request is valid, decode what the backend needs
+        String comment, payerData, nostrZapRequest;
+        try {
+            comment = LnUrlQuery.decode(query, commentRange);
+            payerData = LnUrlQuery.decode(query, payerDataRange);
+            nostrZapRequest = LnUrlQuery.decode(query, nostrRange);
+            if (payerData != null && payerDataRequired) {
+                Map<String, Object> fields = NGEPlatform.get().fromJSON(payerData, Map.class);
+                if (!fields.keySet().containsAll(template.getRequired())) {
+                    return completed(MISSING_REQUIRED_PAYER_DATA);
+                }
+            }
+            if (nostrZapRequest != null && !isValidZapRequest(nostrZapRequest, amount)) {
+                return completed(INVALID_ZAP_REQUEST);
+            }
+        } catch (Exception e) {
+            return completed(INVALID_PARAMETERS);
+        }
+
+        // nip-57: zaps commit to the zap request, lud-18: payer data is committed to with the metadata
+        byte[] descriptionHash;
+        if (nostrZapRequest != null) {
+            descriptionHash = sha256(nostrZapRequest);
+        } else if (payerData != null) {
+            descriptionHash = sha256(route.rawMetadata + payerData);
+        } else {
+            descriptionHash = route.metadataHash;
+        }
+        LnUrlInvoiceRequest request = new LnUrlInvoiceRequest(
+            route.username,
+            payRequest,
+            amount,
+            comment,
+            payerData,
+            nostrZapRequest,
+            descriptionHash
+        );
+
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    AsyncTask<LnUrlPaymentResponse> invoice;
+                    try {
+                        invoice = backend.createInvoice(request);
+                    } catch (Exception e) {
+                        logger.warning("Failed to create invoice for {0}: {1}", route.username, e.getMessage());
+                        res.accept(INVOICE_FAILED);
+                        return;
+                    }
+                    invoice
+                        .then(response -> {
+                            res.accept(serialize(response));
+                            return null;
+                        })
+                        .catchException(e -> {
+                            logger.warning("Failed to create invoice for {0}: {1}", route.username, e.getMessage());
+                            res.accept(INVOICE_FAILED);
+                        });
+                },
+                null
+            );
+    }
+
+    private static LnUrlServerResponse serialize(LnUrlPaymentResponse response) {
+        // the response is always a non empty object, the routes field replaces its closing brace
+        byte[] json = response.toJsonBytes();
+        byte[] body = Arrays.copyOf(json, json.length - 1 + ROUTES.length);
+        System.arraycopy(ROUTES, 0, body, json.length - 1, ROUTES.length);
+        return new LnUrlServerResponse(200, body);
+    }
+
+    /**
+     * Check the zap request as required by nip-57, except for its signature.
+     * @param amount the amount query parameter, that the amount tag must match if present
+     */
+    private static boolean isValidZapRequest(String nostrZapRequest, long amount) {
+        Map<String, Object> event = NGEPlatform.get().fromJSON(nostrZapRequest, Map.class);
+        if (NGEUtils.safeInt(event.get("kind")) != 9734) {
+            return false;
+        }
+        for (String field : ZAP_REQUEST_FIELDS) {
+            if (!(event.get(field) instanceof String)) {
+                return false;
+            }
+        }
+        if (!(event.get("tags") instanceof List)) {
+            return false;
+        }
+        int p = 0, e = 0;
+        for (Object t : (List<Object>) event.get("tags")) {
+            if (!(t instanceof List) || ((List<Object>) t).size() < 2) {
+                continue;
+            }
+            List<Object> tag = (List<Object>) t;
+            String name = NGEUtils.safeString(tag.get(0));
+            if ("p".equals(name)) {
+                p++;
+            } else if ("e".equals(name)) {
+                e++;
+            } else if ("amount".equals(name) && NGEUtils.safeLong(tag.get(1)) != amount) {
+                return false;
+            }
+        }
+        return p == 1 && e <= 1;
+    }
+
+    private static byte[] sha256(String data) {
+        try {
+            return NGEPlatform.get().sha256(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to compute sha256", e);
+        }
+    }
+
+    private static <T> AsyncTask<T> completed(T value) {
+        return NGEPlatform.get().promisify((res, rej) -> res.accept(value), null);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl.server;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation free helpers to read the parameters of a raw, still url encoded, query string.
+ * Parameter values are located as ranges packed in a long, and only decoded when needed.
+ */
+final class LnUrlQuery {
+
+    static final long NOT_FOUND = -1;
+
+    private LnUrlQuery() {}
+
+    /**
+     * Find the value of a parameter.
+     * @return the range of the value packed as start << 32 | end, or {@link #NOT_FOUND}
+     */
+    static long find(String query, String name) {
+        if (query == null) {
+            return NOT_FOUND;
+        }
+        int len = query.length();
+        int start = 0;
+        while (start < len) {
+            int end = query.indexOf('&', start);
+            if (end == -1) {
+                end = len;
+            }
+            int eq = start + name.length();
+            if (eq < end && query.charAt(eq) == '=' && query.startsWith(name, start)) {
+                return ((long) (eq + 1) << 32) | end;
+            }
+            start = end + 1;
+        }
+        return NOT_FOUND;
+    }
+
+    static int start(long range) {
+        return (int) (range >>> 32);
+    }
+
+    static int end(long range) {
+        return (int) range;
+    }
+
+    /**
+     * Parse a non negative decimal value.
+     * @return the value, or -1 if it is not a valid non negative long
+     */
+    static long parseLong(String query, long range) {
+        int start = start(range), end = end(range);
+        if (start == end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Count the characters of a value once decoded, without decoding it.
+     * @return the number of code points, or -1 if the value is not correctly encoded
+     */
+    static int decodedLength(String query, long range) {
+        int start = start(range), end = end(range);
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= end) {
+                    return -1;
+                }
+                int hi = Character.digit(query.charAt(i + 1), 16);
+                int lo = Character.digit(query.charAt(i + 2), 16);
+                if (hi == -1 || lo == -1) {
+                    return -1;
+                }
+                // utf-8 continuation bytes don't start a new character
+                if ((hi & 0xc) != 0x8) {
+                    count++;
+                }
+                i += 2;
+            } else if (!Character.isLowSurrogate(c)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static String decode(String query, long range) {
+        if (range == NOT_FOUND) {
+            return null;
+        }
+        return URLDecoder.decode(query.substring(start(range), end(range)), StandardCharsets.UTF_8);
+    }
+}
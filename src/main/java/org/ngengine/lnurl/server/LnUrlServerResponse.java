@@ -0,0 +1,99 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl.server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response to send back to the http client.
+ * The body is always json.
+ */
+public final class LnUrlServerResponse {
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    static final LnUrlServerResponse NOT_FOUND = error(404, "Not found");
+
+    private final int statusCode;
+    private final byte[] body;
+
+    LnUrlServerResponse(int statusCode, byte[] body) {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    /**
+     * Build an error response.
+     * Responses with a fixed reason should be built once and reused, they can be shared between requests.
+     */
+    static LnUrlServerResponse error(int statusCode, String reason) {
+        return new LnUrlServerResponse(statusCode, errorBody(reason));
+    }
+
+    /**
+     * Serialize the body of an error response, without going through the platform.
+     */
+    static byte[] errorBody(String reason) {
+        StringBuilder sb = new StringBuilder(reason.length() + 32).append("{\"status\":\"ERROR\",\"reason\":\"");
+        for (int i = 0; i < reason.length(); i++) {
+            char c = reason.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the http status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Get the response body.
+     * The returned array can be shared between responses and must not be modified.
+     * @return the utf-8 encoded json body
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+}
@@ -70,7 +70,7 @@ public class LnUrlUrlSuccessAction implements LnUrlSuccessAction {
 
     private void check() {
         // check if url domain is the same of payReq callback domain
-        if (!payReq.getCallback().getHost().equals(this.url.getHost())) {
+        if (payReq != null && !payReq.getCallback().getHost().equals(this.url.getHost())) {
             throw new IllegalArgumentException("URL domain does not match the pay request callback domain");
         }
         if (this.description.length() > MAX_DESCRIPTION_LENGTH) {
@@ -0,0 +1,257 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.ngengine.platform.AsyncTask;
+
+/**
+ * Drives the full pay flow, {@link LnUrl#getService} then {@link LnUrlPay#fetchInvoice} then
+ * {@link LnUrlPaymentResponse#verify}, against a {@link MockLnUrlServer} at a target rate, and reports
+ * throughput and latency percentiles.
+ * <p>
+ * Flows are started on a fixed schedule, whether or not the previous ones completed, so a slow client shows up
+ * as higher latency instead of a lower request rate.
+ * </p>
+ * <p>
+ * Run it with {@code ./gradlew loadTest -Pargs="rps=500 seconds=30 latency=50 jitter=50 failureRate=0.01"}.
+ * </p>
+ */
+public final class LnUrlLoadHarness {
+
+    public static final class Result {
+
+        private final long started;
+        private final long completed;
+        private final long failed;
+        private final Duration elapsed;
+        private final long[] latenciesNanos;
+
+        private Result(long started, long completed, long failed, Duration elapsed, long[] latenciesNanos) {
+            this.started = started;
+            this.completed = completed;
+            this.failed = failed;
+            this.elapsed = elapsed;
+            this.latenciesNanos = latenciesNanos;
+            Arrays.sort(this.latenciesNanos);
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the completed flows per second
+         */
+        public double getThroughput() {
+            return completed / (elapsed.toNanos() / 1e9);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the latency of the successful flows at the given percentile
+         */
+        public Duration getLatency(double percentile) {
+            if (latenciesNanos.length == 0) {
+                return Duration.ZERO;
+            }
+            int i = (int) Math.ceil(percentile / 100.0 * latenciesNanos.length) - 1;
+            return Duration.ofNanos(latenciesNanos[Math.max(0, Math.min(i, latenciesNanos.length - 1))]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "started=%d completed=%d failed=%d elapsed=%.1fs throughput=%.1f/s%n" +
+                "latency p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                started,
+                completed,
+                failed,
+                elapsed.toNanos() / 1e9,
+                getThroughput(),
+                millis(getLatency(50)),
+                millis(getLatency(90)),
+                millis(getLatency(99)),
+                millis(getLatency(99.9)),
+                millis(getLatency(100))
+            );
+        }
+
+        private static double millis(Duration d) {
+            return d.toNanos() / 1e6;
+        }
+    }
+
+    private LnUrlLoadHarness() {}
+
+    /**
+     * Run the pay flow for the given targets, in round robin, at the given rate.
+     * @param targets the lnurls to pay
+     * @param transport the transport used by every request
+     * @param rps the number of flows started per second
+     * @param duration how long to start new flows for
+     * @param timeout the timeout of each http request, it also bounds how long to wait for the last flows
+     * @return the result
+     */
+    public static Result run(List<LnUrl> targets, LnUrlHttpTransport transport, int rps, Duration duration, Duration timeout)
+        throws InterruptedException {
+        if (targets.isEmpty() || rps < 1) {
+            throw new IllegalArgumentException("At least one target and a positive rate are required");
+        }
+        int total = (int) Math.max(1, duration.toMillis() * rps / 1000);
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicLong failed = new AtomicLong();
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(total);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long start = System.nanoTime();
+        scheduler.scheduleAtFixedRate(
+            () -> {
+                int n = started.getAndIncrement();
+                if (n >= total) {
+                    return;
+                }
+                LnUrl target = targets.get(n % targets.size());
+                long t0 = System.nanoTime();
+                try {
+                    payFlow(target, transport, timeout)
+                        .then(v -> {
+                            latencies[completed.getAndIncrement()] = System.nanoTime() - t0;
+                            done.countDown();
+                            return null;
+                        })
+                        .catchException(e -> {
+                            failed.incrementAndGet();
+                            done.countDown();
+                        });
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    done.countDown();
+                }
+            },
+            0,
+            Math.max(1, 1_000_000_000L / rps),
+            TimeUnit.NANOSECONDS
+        );
+        done.await(duration.toMillis() + timeout.toMillis() * 3, TimeUnit.MILLISECONDS);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        scheduler.shutdownNow();
+
+        int ok = Math.min(completed.get(), total);
+        return new Result(Math.min(started.get(), total), ok, failed.get(), elapsed, Arrays.copyOf(latencies, ok));
+    }
+
+    private static AsyncTask<LnUrlVerify> payFlow(
+        LnUrl target,
+        LnUrlHttpTransport transport,
+        Duration timeout
+    ) throws LnUrlException {
+        return target
+            .<LnUrlPay>getService(timeout, transport)
+            .compose(pay -> {
+                try {
+                    return pay.fetchInvoice(pay.getMinSendable(), null, null, timeout, null, null, transport);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            })
+            .compose(response -> {
+                try {
+                    return response.verify(timeout);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            })
+            .then(verify -> {
+                if (!verify.isSettled()) {
+                    throw new IllegalStateException("Invoice not settled: " + verify.getPr());
+                }
+                return verify;
+            });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int rps = Integer.parseInt(opts.getOrDefault("rps", "200"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "10"));
+        int users = Integer.parseInt(opts.getOrDefault("users", "100"));
+        long latency = Long.parseLong(opts.getOrDefault("latency", "20"));
+        long jitter = Long.parseLong(opts.getOrDefault("jitter", "20"));
+        double failureRate = Double.parseDouble(opts.getOrDefault("failureRate", "0"));
+        long timeout = Long.parseLong(opts.getOrDefault("timeout", "5000"));
+
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl")
+            .setLatency(Duration.ofMillis(latency), Duration.ofMillis(jitter))
+            .setFailureRate(failureRate);
+        List<LnUrl> targets = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            server.addUser("user" + i, 1000, 100000000);
+            targets.add(new LnAddress("user" + i + "@mock.lnurl"));
+        }
+
+        System.out.println(
+            "Running " + rps + " flows/s for " + seconds + "s against " + users + " users, latency " + latency + "ms + " +
+            jitter + "ms jitter, failure rate " + failureRate
+        );
+        Result result = run(targets, server, rps, Duration.ofSeconds(seconds), Duration.ofMillis(timeout));
+        System.out.println(result);
+        System.out.println("http requests=" + server.getRequests() + " injected failures=" + server.getFailures());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.ngengine.lnurl.server.LnUrlInvoiceRequest;
+import org.ngengine.lnurl.server.LnUrlPayServer;
+import org.ngengine.platform.AsyncExecutor;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+/**
+ * An in-process LNURL pay server, used as {@link LnUrlHttpTransport} to run tests and load tests offline.
+ * <p>
+ * It serves the pay requests of its users through a {@link LnUrlPayServer}, issues fake invoices and answers
+ * their lud-21 verify urls. Latency and failures can be injected to simulate a real service.
+ * </p>
+ */
+public class MockLnUrlServer implements LnUrlHttpTransport {
+
+    private final String host;
+    private final LnUrlPayServer server;
+    private final Map<String, Boolean> invoices = new ConcurrentHashMap<>();
+    private final AtomicLong invoiceCounter = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration latencyJitter = Duration.ZERO;
+    private volatile double failureRate;
+    private volatile boolean autoSettle = true;
+    private AsyncExecutor executor;
+
+    public MockLnUrlServer(String host) {
+        this.host = host;
+        this.server = new LnUrlPayServer(this::createInvoice);
+    }
+
+    /**
+     * Add a user that can receive payments at {@code username@host}.
+     */
+    public MockLnUrlServer addUser(String username, long minSendable, long maxSendable) {
+        URI callback = URI.create("https://" + host + "/lnurlp/" + username + "/callback");
+        server.register(
+            username,
+            new LnUrlPay(
+                maxSendable,
+                minSendable,
+                callback,
+                255,
+                List.of(
+                    new LnUrlPay.Metadata("text/plain", "Sats for " + username + "@" + host),
+                    new LnUrlPay.Metadata("text/identifier", username + "@" + host)
+                ),
+                null
+            )
+        );
+        return this;
+    }
+
+    /**
+     * Delay every response by the given latency, plus a random jitter between 0 and latencyJitter.
+     */
+    public MockLnUrlServer setLatency(Duration latency, Duration latencyJitter) {
+        this.latency = latency;
+        this.latencyJitter = latencyJitter;
+        return this;
+    }
+
+    /**
+     * Fail the given fraction of requests, between 0 and 1, with an http 500 error.
+     */
+    public MockLnUrlServer setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * If true, invoices are reported as settled by their verify url as soon as they are issued.
+     */
+    public MockLnUrlServer setAutoSettle(boolean autoSettle) {
+        this.autoSettle = autoSettle;
+        return this;
+    }
+
+    public void settle(String pr) {
+        invoices.replace(pr, true);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getInvoices() {
+        return invoiceCounter.get();
+    }
+
+    private AsyncTask<LnUrlPaymentResponse> createInvoice(LnUrlInvoiceRequest request) {
+        String id = Long.toString(invoiceCounter.incrementAndGet());
+        String pr = "lnbcmock" + request.getAmount() + "n1" + id;
+        invoices.put(pr, autoSettle);
+        URI verify = URI.create("https://" + host + "/verify/" + pr);
+        return NGEPlatform.get().promisify((res, rej) -> res.accept(new LnUrlPaymentResponse(pr, true, verify, null)), null);
+    }
+
+    @Override
+    public AsyncTask<String> httpGet(String url, Duration timeout, @Nullable Map<String, String> headers) {
+        requests.incrementAndGet();
+        long delay = latency.toMillis();
+        long jitter = latencyJitter.toMillis();
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (delay == 0) {
+            return handle(url);
+        }
+        long wait = timeout != null ? Math.min(delay, timeout.toMillis()) : delay;
+        boolean timedOut = wait < delay;
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) ->
+                    getExecutor()
+                        .runLater(
+                            () -> {
+                                if (timedOut) {
+                                    rej.accept(new TimeoutException("Request timed out after " + timeout));
+                                } else {
+                                    handle(url)
+                                        .then(r -> {
+                                            res.accept(r);
+                                            return null;
+                                        })
+                                        .catchException(rej);
+                                }
+                                return null;
+                            },
+                            wait,
+                            TimeUnit.MILLISECONDS
+                        ),
+                null
+            );
+    }
+
+    private AsyncTask<String> handle(String url) {
+        return NGEPlatform
+            .get()
+            .promisify(
+                (res, rej) -> {
+                    URI uri = URI.create(url);
+                    if (!host.equals(uri.getHost())) {
+                        rej.accept(new IOException("Unknown host: " + uri.getHost()));
+                        return;
+                    }
+                    double rate = failureRate;
+                    if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+                        failures.incrementAndGet();
+                        rej.accept(new IOException("HTTP 500: injected failure"));
+                        return;
+                    }
+                    String path = uri.getRawPath();
+                    if (path.startsWith("/verify/")) {
+                        res.accept(verify(path.substring("/verify/".length())));
+                        return;
+                    }
+                    server
+                        .handle(path, uri.getRawQuery())
+                        .then(r -> {
+                            String body = new String(r.getBody(), StandardCharsets.UTF_8);
+                            if (r.getStatusCode() == 200) {
+                                res.accept(body);
+                            } else {
+                                rej.accept(new IOException("HTTP " + r.getStatusCode() + ": " + body));
+                            }
+                            return null;
+                        })
+                        .catchException(rej);
+                },
+                null
+            );
+    }
+
+    private String verify(String pr) {
+        Boolean settled = invoices.get(pr);
+        Map<String, Object> map = new HashMap<>();
+        if (settled == null) {
+            map.put("status", "ERROR");
+            map.put("reason", "Not found");
+        } else {
+            map.put("status", "OK");
+            map.put("settled", settled);
+            map.put("pr", pr);
+            map.put("preimage", settled ? "00".repeat(32) : null);
+        }
+        return NGEPlatform.get().toJSON(map);
+    }
+
+    private synchronized AsyncExecutor getExecutor() {
+        if (executor == null) {
+            executor = NGEPlatform.get().newAsyncExecutor(MockLnUrlServer.class);
+        }
+        return executor;
+    }
+}
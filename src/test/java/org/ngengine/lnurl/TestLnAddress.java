@@ -32,6 +32,9 @@
 package org.ngengine.lnurl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -52,6 +55,47 @@ public class TestLnAddress {
         assertEquals(lnAddressObj.toURI().toString(), lnUrl);
     }
 
+    @Test
+    public void validateAddresses() throws Exception {
+        assertTrue(LnAddress.isValid("unit@lntest.rblb.it"));
+        assertTrue(LnAddress.isValid("a+b_c.d-e@Example.COM:8080"));
+        assertTrue(LnAddress.isValid(new StringBuilder("unit@").append("example.com")));
+        assertFalse(LnAddress.isValid(null));
+        assertFalse(LnAddress.isValid(""));
+        assertFalse(LnAddress.isValid("Unit@example.com"));
+        assertFalse(LnAddress.isValid("unit@exa_mple.com"));
+        assertFalse(LnAddress.isValid("unit@@example.com"));
+        assertFalse(LnAddress.isValid("unit@"));
+        assertFalse(LnAddress.isValid("@example.com"));
+        assertFalse(LnAddress.isValid("unit"));
+
+        LnAddress address = new LnAddress(new StringBuilder("a+b_c.d-e@Example.COM:8080"));
+        assertEquals(address.toURI().toString(), "https://Example.COM:8080/.well-known/lnurlp/a+b_c.d-e");
+        assertEquals(address.toString(), "a+b_c.d-e@Example.COM:8080");
+        assertEquals(new LnAddress("unit@hidden.ONION").toURI().toString(), "http://hidden.ONION/.well-known/lnurlp/unit");
+    }
+
+    @Test
+    public void reportErrorPositions() {
+        assertError("", 0, "Lightning address cannot be null or empty");
+        assertError("@example.com", 0, "Username cannot be empty");
+        assertError("unit", 4, "Invalid lightning address format");
+        assertError("unit@", 5, "Domain cannot be empty");
+        assertError("Unit@example.com", 0, "Invalid username format. Only a-z0-9-_.+ characters are allowed.");
+        assertError("un it@example.com", 2, "Invalid username format. Only a-z0-9-_.+ characters are allowed.");
+        assertError("unit@example@com", 12, "Invalid lightning address format");
+        assertError("unit@exa_mple.com", 8, "Invalid domain format");
+        assertError("unit@ex\u00e4mple.com", 7, "Invalid domain format");
+        assertError("unit\u00e4@example.com", 4, "Invalid username format. Only a-z0-9-_.+ characters are allowed.");
+    }
+
+    private static void assertError(String address, int index, String reason) {
+        URISyntaxException e = assertThrows(URISyntaxException.class, () -> new LnAddress(address));
+        assertEquals(e.getIndex(), index);
+        assertEquals(e.getReason(), reason);
+        assertEquals(e.getInput(), address);
+    }
+
     @Test
     public void getInvoice() throws Exception {
         LnAddress lnAddressObj = new LnAddress("unit@lntest.rblb.it");
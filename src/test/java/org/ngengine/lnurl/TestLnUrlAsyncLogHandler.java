@@ -0,0 +1,106 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.Test;
+
+public class TestLnUrlAsyncLogHandler {
+
+    /**
+     * A slow handler that records what it publishes and how many records were published at each flush.
+     */
+    private static class RecordingHandler extends Handler {
+
+        private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> flushes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            published.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+            flushes.add(published.size());
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    public void flushPublishesQueuedRecords() {
+        RecordingHandler delegate = new RecordingHandler();
+        LnUrlAsyncLogHandler handler = new LnUrlAsyncLogHandler(delegate, 1000);
+        try {
+            for (int i = 0; i < 100; i++) {
+                handler.publish(new LogRecord(Level.INFO, "record " + i));
+            }
+            handler.flush();
+            // the delegate is flushed once every queued record is published, in order
+            assertEquals(delegate.flushes, List.of(100));
+            assertEquals(delegate.published.get(99), "record 99");
+            assertEquals(handler.getDropped(), 0);
+        } finally {
+            handler.close();
+        }
+        // flushing a closed handler does not wait
+        handler.flush();
+        assertEquals(delegate.flushes, List.of(100, 100));
+    }
+
+    @Test
+    public void dropRecordsWhenFull() {
+        RecordingHandler delegate = new RecordingHandler();
+        LnUrlAsyncLogHandler handler = new LnUrlAsyncLogHandler(delegate, 1);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+        handler.flush();
+        // dropped records are not waited for
+        assertEquals(delegate.published.size() + handler.getDropped(), 100);
+        handler.close();
+    }
+}
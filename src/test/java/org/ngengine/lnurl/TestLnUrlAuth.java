@@ -0,0 +1,235 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.ngengine.platform.NGEPlatform;
+import org.ngengine.platform.NGEUtils;
+
+public class TestLnUrlAuth {
+
+    private static final String K1 = "e2af6254a8df433264fa23f67eb8188635d15ce883e8fc020989d5f82ae6f11e";
+
+    // a stand-in for a real secp256k1 key: the "public key" is the derivation path and the "signature" hashes it
+    // together with the challenge, enough to check what ends up in the callback
+    private static final class TestSigner implements LnUrlAuthSigner {
+
+        private final byte[] publicKey;
+
+        TestSigner(long[] path) {
+            publicKey = new byte[33];
+            publicKey[0] = 0x02;
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    publicKey[1 + i * 4 + j] = (byte) (path[i] >>> (24 - j * 8));
+                }
+            }
+        }
+
+        @Override
+        public byte[] getPublicKey() {
+            return publicKey;
+        }
+
+        @Override
+        public byte[] sign(byte[] k1) {
+            byte[] data = Arrays.copyOf(publicKey, publicKey.length + k1.length);
+            System.arraycopy(k1, 0, data, publicKey.length, k1.length);
+            return NGEPlatform.get().sha256(data);
+        }
+    }
+
+    private static final class TestKeychain implements LnUrlAuthKeychain {
+
+        final List<long[]> derived = Collections.synchronizedList(new ArrayList<>());
+        int hashingKeyReads;
+
+        @Override
+        public byte[] getHashingKey() {
+            hashingKeyReads++;
+            return NGEUtils.hexToBytes("7d417a6a5e9a6a4a879aeaba11a11838764c8fa2b959c242d43dea682b3e409b");
+        }
+
+        @Override
+        public LnUrlAuthSigner deriveLinkingKey(long[] path) {
+            derived.add(path);
+            return new TestSigner(path);
+        }
+    }
+
+    private static byte[] repeat(int b, int n) {
+        byte[] out = new byte[n];
+        Arrays.fill(out, (byte) b);
+        return out;
+    }
+
+    private static String hmac(byte[] key, String data) {
+        return hmac(key, data.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String hmac(byte[] key, byte[] data) {
+        return NGEUtils.bytesToHex(LnUrlAuthKeys.hmacSha256(key, data));
+    }
+
+    @Test
+    public void hmacSha256Rfc4231() {
+        // RFC 4231 test cases 1, 2, 3, 4, 6 and 7 (5 checks a truncated output)
+        assertEquals(
+            hmac(repeat(0x0b, 20), "Hi There"),
+            "b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7"
+        );
+        assertEquals(
+            hmac("Jefe".getBytes(StandardCharsets.US_ASCII), "what do ya want for nothing?"),
+            "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843"
+        );
+        assertEquals(
+            hmac(repeat(0xaa, 20), repeat(0xdd, 50)),
+            "773ea91e36800e46854db8ebd09181a72959098b3ef8c122d9635514ced565fe"
+        );
+        assertEquals(
+            hmac(NGEUtils.hexToBytes("0102030405060708090a0b0c0d0e0f10111213141516171819"), repeat(0xcd, 50)),
+            "82558a389a443c0ea4cc819899f2083a85f0faa3e578f8077a2e3ff46729665b"
+        );
+        assertEquals(
+            hmac(repeat(0xaa, 131), "Test Using Larger Than Block-Size Key - Hash Key First"),
+            "60e431591ee0b67f0d8a26aacbf5b77f8e0bc6213728c5140546040f0ee37f54"
+        );
+        assertEquals(
+            hmac(
+                repeat(0xaa, 131),
+                "This is a test using a larger than block-size key and a larger than block-size data. " +
+                "The key needs to be hashed before being used by the HMAC algorithm."
+            ),
+            "9b09ffa71b942fcb27635fbcd5b0e944bfdc63644f0713938a7f51535c3a35e2"
+        );
+    }
+
+    @Test
+    public void derivationPath() {
+        byte[] hashingKey = NGEUtils.hexToBytes("7d417a6a5e9a6a4a879aeaba11a11838764c8fa2b959c242d43dea682b3e409b");
+        // hmac-sha256(hashingKey, "site.com") = 5eae68af 9e814062 02458433 f68b7d7a ...
+        assertArrayEquals(
+            LnUrlAuthKeys.getDerivationPath(hashingKey, "site.com"),
+            new long[] { 1588488367L, 2659270754L, 38110259L, 4136336762L }
+        );
+    }
+
+    @Test
+    public void loginCallback() throws Exception {
+        List<URI> requests = Collections.synchronizedList(new ArrayList<>());
+        LnUrlHttpTransport transport = (url, timeout, headers) -> {
+            requests.add(URI.create(url));
+            return NGEPlatform.get().promisify((res, rej) -> res.accept("{\"status\":\"OK\"}"), null);
+        };
+        TestKeychain keychain = new TestKeychain();
+        LnUrlAuthKeys keys = new LnUrlAuthKeys(keychain);
+
+        LnUrlAuth auth = new LnUrlAuth(URI.create("https://site.com/auth?tag=login&k1=" + K1 + "&action=login"));
+        assertEquals(auth.getDomain(), "site.com");
+        assertEquals(auth.getAction(), "login");
+        auth.login(keys, Duration.ofSeconds(5), transport).await();
+
+        assertEquals(requests.size(), 1);
+        URI callback = requests.get(0);
+        assertEquals(callback.getHost(), "site.com");
+        assertEquals(callback.getPath(), "/auth");
+        LnUrlAuthSigner signer = keys.getLinkingKey("site.com");
+        assertEquals(
+            callback.getQuery(),
+            "tag=login&k1=" +
+            K1 +
+            "&action=login&sig=" +
+            NGEUtils.bytesToHex(signer.sign(NGEUtils.hexToBytes(K1))) +
+            "&key=" +
+            NGEUtils.bytesToHex(signer.getPublicKey())
+        );
+        assertArrayEquals(keychain.derived.get(0), new long[] { 1588488367L, 2659270754L, 38110259L, 4136336762L });
+
+        // a second login to the same domain reuses the linking key, another domain derives a new one
+        LnUrlAuth again = new LnUrlAuth(URI.create("https://site.com/auth?tag=login&k1=" + K1));
+        again.login(keys, Duration.ofSeconds(5), transport).await();
+        LnUrlAuth other = new LnUrlAuth(URI.create("https://other.com/auth?tag=login&k1=" + K1));
+        other.login(keys, Duration.ofSeconds(5), transport).await();
+        assertEquals(requests.size(), 3);
+        assertEquals(keys.getHits(), 2);
+        assertEquals(keys.getMisses(), 2);
+        assertEquals(keys.size(), 2);
+        assertEquals(keychain.derived.size(), 2);
+        assertEquals(keychain.hashingKeyReads, 1);
+        assertSame(keys.getLinkingKey("site.com"), signer);
+        assertNotSame(keys.getLinkingKey("other.com"), signer);
+    }
+
+    @Test
+    public void rejectedLogin() throws Exception {
+        LnUrlHttpTransport transport = (url, timeout, headers) ->
+            NGEPlatform.get().promisify((res, rej) -> res.accept("{\"status\":\"ERROR\",\"reason\":\"bad sig\"}"), null);
+        LnUrlAuth auth = new LnUrlAuth(URI.create("https://site.com/auth?tag=login&k1=" + K1));
+        try {
+            auth.login(new LnUrlAuthKeys(new TestKeychain()), Duration.ofSeconds(5), transport).await();
+            throw new AssertionError("login should fail");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof LnUrlException)) cause = cause.getCause();
+            assertEquals(((LnUrlException) cause).getStatus(), LnUrlException.Status.ERROR);
+        }
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedKeys() {
+        TestKeychain keychain = new TestKeychain();
+        LnUrlAuthKeys keys = new LnUrlAuthKeys(keychain, 2);
+        LnUrlAuthSigner a = keys.getLinkingKey("a.com");
+        keys.getLinkingKey("b.com");
+        assertSame(keys.getLinkingKey("a.com"), a);
+        keys.getLinkingKey("c.com");
+        assertEquals(keys.size(), 2);
+        // b.com was the least recently used, so it is derived again
+        keys.getLinkingKey("b.com");
+        assertEquals(keychain.derived.size(), 4);
+        assertSame(keys.getLinkingKey("c.com"), keys.getLinkingKey("c.com"));
+        keys.clear();
+        assertEquals(keys.size(), 0);
+    }
+}
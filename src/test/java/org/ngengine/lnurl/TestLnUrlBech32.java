@@ -0,0 +1,197 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import org.junit.Test;
+import org.ngengine.platform.NGEUtils;
+
+public class TestLnUrlBech32 {
+
+    // LUD-01 example
+    private static final String LNURL =
+        "LNURL1DP68GURN8GHJ7UM9WFMXJCM99E3K7MF0V9CXJ0M385EKVCENXC6R2C35XVUKXEFCV5MKVV34X5EKZD3EV56NYD3HXQURZEPEXEJ" +
+        "XXEPNXSCRVWFNV9NXZCN9XQ6XYEFHVGCXXCMYXYMNSERXFQ5FNS";
+    private static final String LNURL_DECODED =
+        "https://service.com/api?q=3fc3645b439ce8e7f2553a69e5267081d96dcd340693afabe04be7b0ccd178df";
+
+    // BOLT 11 example: "Now send $24 for an entire list of things (hashed)"
+    private static final String BOLT11 =
+        "lnbc20m1pvjluezpp5qqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqypqhp58yjmdan79s6qqdhdzgynm4zwqd5" +
+        "d7xmw5fk98klysy043l2ahrqscc6gd6ql3jrc5yzme8v4ntcewwz5cnw92tz0pc8qcuufvq7khhr8wpald05e92xw006sq94mg8v" +
+        "2ndf4sefvf9sygkshp5zfem29trqq2yxxz7";
+    private static final String BOLT11_DESCRIPTION_HASH_HEX =
+        "3925b6f67e2c340036ed12093dd44e0368df1b6ea26c53dbe4811f58fd5db8c1";
+
+    private static String decode(String s) {
+        return LnUrlBech32.decodeUtf8(s, 0, s.length());
+    }
+
+    @Test
+    public void roundTrip() {
+        assertEquals(LNURL.toLowerCase(), LnUrlBech32.encodeUtf8("lnurl", LNURL_DECODED));
+        assertEquals(LNURL_DECODED, decode(LNURL.toLowerCase()));
+
+        String[] urls = {
+            "",
+            "https://a.b",
+            "https://example.com/.well-known/lnurlp/alice",
+            "https://example.com/pay?name=caff\u00e8&emoji=\ud83d\ude00&kanji=\u6f22\u5b57",
+        };
+        for (String url : urls) {
+            String bech32 = LnUrlBech32.encodeUtf8("lnurl", url);
+            assertEquals(bech32.toLowerCase(), bech32);
+            assertEquals(url, decode(bech32));
+            assertEquals(url, decode(bech32.toUpperCase()));
+        }
+    }
+
+    @Test
+    public void acceptUpperCase() {
+        assertEquals(LNURL_DECODED, decode(LNURL));
+        assertEquals(LNURL_DECODED, LnUrlBech32.decodeUtf8("lightning:" + LNURL + " ", 10, LNURL.length() + 10));
+        assertEquals(
+            Arrays.toString(LnUrlBech32.decodeWords(BOLT11)),
+            Arrays.toString(LnUrlBech32.decodeWords(BOLT11.toUpperCase()))
+        );
+    }
+
+    @Test
+    public void rejectMixedCase() {
+        String mixed = "lnurl" + LNURL.substring(5);
+        assertThrows(IllegalArgumentException.class, () -> decode(mixed));
+        assertThrows(IllegalArgumentException.class, () -> decode(LNURL.substring(0, 20) + "d" + LNURL.substring(21)));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlBech32.decodeWords("LNBC" + BOLT11.substring(4)));
+    }
+
+    @Test
+    public void rejectBadChecksum() {
+        String lnurl = LNURL.toLowerCase();
+        String flipped = lnurl.substring(0, lnurl.length() - 1) + (lnurl.endsWith("q") ? "p" : "q");
+        assertThrows(IllegalArgumentException.class, () -> decode(flipped));
+        // a changed data character
+        assertThrows(IllegalArgumentException.class, () -> decode(lnurl.substring(0, 10) + "q" + lnurl.substring(11)));
+        // a changed human readable part
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurm" + lnurl.substring(5)));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlBech32.decodeWords(BOLT11.replace("lnbc20m", "lnbc21m")));
+    }
+
+    @Test
+    public void rejectInvalidCharacters() {
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurl1dp68gurn8ghj7cfwvg8cuzpb"));
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurl1dp68gurn8ghj7cfwvg8cu\u00e8pc"));
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurlqqqqqqqq"));
+        assertThrows(IllegalArgumentException.class, () -> decode("1qqqqqqqqqq"));
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurl1qqqqq"));
+    }
+
+    @Test
+    public void rejectNonZeroPadding() {
+        // "https://a.b" with zero padding, with a padding bit set and with a whole word of padding,
+        // all with valid checksums
+        assertEquals("https://a.b", decode("lnurl1dp68gurn8ghj7cfwvg8cuzpc"));
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurl1dp68gurn8ghj7cfwvf6wghu2"));
+        assertThrows(IllegalArgumentException.class, () -> decode("lnurl1dp68gurn8ghj7cfwvgqe943cy"));
+    }
+
+    @Test
+    public void rejectTooLong() {
+        StringBuilder url = new StringBuilder("https://example.com/?q=");
+        while (url.length() < LnUrlBech32.MAX_LENGTH) {
+            url.append("0123456789");
+        }
+        // the length is checked before the checksum
+        StringBuilder tooLong = new StringBuilder("lnurl1");
+        while (tooLong.length() <= LnUrlBech32.MAX_LENGTH) {
+            tooLong.append('q');
+        }
+        assertThrows(IllegalArgumentException.class, () -> decode(tooLong.toString()));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlBech32.decodeWords(tooLong));
+
+        // a string right at the limit is still accepted
+        int maxBytes = (LnUrlBech32.MAX_LENGTH - 12) * 5 / 8;
+        String longest = LnUrlBech32.encodeUtf8("lnurl", url.substring(0, maxBytes));
+        assertEquals(LnUrlBech32.MAX_LENGTH, longest.length());
+        assertEquals(url.substring(0, maxBytes), decode(longest));
+        // and what is encoded can always be decoded
+        assertThrows(IllegalArgumentException.class, () -> LnUrlBech32.encodeUtf8("lnurl", url.substring(0, maxBytes + 1)));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlBech32.encodeUtf8("lnurl", url));
+    }
+
+    @Test
+    public void rejectTooLongMultiByteText() throws Exception {
+        int maxBytes = (LnUrlBech32.MAX_LENGTH - 12) * 5 / 8;
+        // fewer chars than the limit, but more bytes
+        StringBuilder text = new StringBuilder("https://example.com/?q=");
+        while (text.length() < maxBytes / 2) {
+            text.append("\u00e8\u6f22\ud83d\ude00");
+        }
+        assertThrows(IllegalArgumentException.class, () -> LnUrlBech32.encodeUtf8("lnurl", text));
+        // the buffer kept for the thread is still usable
+        assertEquals(decode(LnUrlBech32.encodeUtf8("lnurl", "https://a.b")), "https://a.b");
+
+        // an url right at the limit, the longest that LnUrl.encode accepts
+        StringBuilder url = new StringBuilder("https://example.com/?q=");
+        while (url.length() < maxBytes) {
+            url.append('0');
+        }
+        LnUrl lnurl = LnUrl.encode(url.toString());
+        assertEquals(new LnUrl(lnurl.toBech32()).toURI().toString(), url.toString());
+        url.append('0');
+        assertThrows(URISyntaxException.class, () -> LnUrl.encode(url.toString()));
+    }
+
+    @Test
+    public void decodeBolt11DescriptionHash() {
+        byte[] words = LnUrlBech32.decodeWords(BOLT11);
+        // the data part, without the 6 checksum characters
+        assertEquals(BOLT11.length() - "lnbc20m1".length() - 6, words.length);
+
+        // 7 words of timestamp, then the payment hash (p, 52 words) and the description hash (h, 52 words)
+        assertEquals(1, words[7]);
+        assertEquals(52, (words[8] << 5) | words[9]);
+        assertEquals(23, words[62]);
+        assertEquals(52, (words[63] << 5) | words[64]);
+        assertArrayEquals(NGEUtils.hexToBytes(BOLT11_DESCRIPTION_HASH_HEX), LnUrlBech32.wordsToBytes(words, 65, 52));
+
+        // the payment hash is 0001020304050607080900010203040506070809000102030405060708090102
+        assertArrayEquals(
+            NGEUtils.hexToBytes("0001020304050607080900010203040506070809000102030405060708090102"),
+            LnUrlBech32.wordsToBytes(words, 10, 52)
+        );
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlBoundedExecutor {
+
+    @Test
+    public void runSynchronousJobs() throws Exception {
+        LnUrlBoundedExecutor executor = new LnUrlBoundedExecutor(4, 2);
+        int n = 10000;
+        AtomicInteger completed = new AtomicInteger();
+        List<AsyncTask<Integer>> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int value = i;
+            tasks.add(
+                executor.submit(
+                    "host" + (i % 3),
+                    () -> {
+                        completed.incrementAndGet();
+                        return NGEPlatform.get().promisify((res, rej) -> res.accept(value), null);
+                    }
+                )
+            );
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals((int) tasks.get(i).await(), i);
+        }
+        assertEquals(completed.get(), n);
+        assertEquals(executor.getPending(), 0);
+        assertEquals(executor.getRunning(), 0);
+    }
+
+    @Test
+    public void boundConcurrencyPerKey() throws Exception {
+        LnUrlBoundedExecutor executor = new LnUrlBoundedExecutor(3, 2);
+        List<Consumer<Integer>> running = new ArrayList<>();
+        List<String> started = new ArrayList<>();
+        List<AsyncTask<Integer>> tasks = new ArrayList<>();
+        String[] keys = { "a", "a", "a", "b", "b", "c" };
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            int value = i;
+            tasks.add(
+                executor.submit(
+                    key,
+                    () ->
+                        NGEPlatform
+                            .get()
+                            .<Integer>promisify(
+                                (res, rej) -> {
+                                    started.add(key + value);
+                                    running.add(res);
+                                },
+                                null
+                            )
+                )
+            );
+        }
+        // the third job of "a" waits for a slot of its key, the next ready job starts in its place
+        assertEquals(started.toString(), "[a0, a1, b3]");
+        assertEquals(executor.getRunning(), 3);
+        assertEquals(executor.getPending(), 3);
+
+        running.get(0).accept(0);
+        assertEquals(started.toString(), "[a0, a1, b3, b4]");
+        running.get(1).accept(1);
+        assertEquals(started.toString(), "[a0, a1, b3, b4, c5]");
+        running.get(2).accept(3);
+        assertEquals(started.toString(), "[a0, a1, b3, b4, c5, a2]");
+        for (int i = 3; i < running.size(); i++) {
+            running.get(i).accept(i);
+        }
+        for (AsyncTask<Integer> task : tasks) {
+            assertTrue(task.isDone());
+        }
+        assertEquals(executor.getRunning(), 0);
+    }
+}
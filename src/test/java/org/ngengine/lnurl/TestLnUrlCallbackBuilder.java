@@ -0,0 +1,125 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TestLnUrlCallbackBuilder {
+
+    private static final String[] VALUES = {
+        "",
+        "abcXYZ019",
+        " ",
+        "a b+c",
+        "*-._~",
+        "!\"#$%&'()+,/:;<=>?@[\\]^`{|}",
+        "\u0000\t\n\r\u007f",
+        "\u00e8\u00e9\u07ff", // 2 bytes
+        "\u20ac\u0800\uffff", // 3 bytes
+        "\ud83d\ude00\udbff\udfff", // 4 bytes
+        "a\ud83db", // unpaired high surrogate
+        "a\ude00b", // unpaired low surrogate
+        "\ude00\ud83d", // swapped pair
+        "end\ud83d", // high surrogate at the end
+        "{\"name\":\"Sat\u014dshi \ud83d\ude00\"}",
+    };
+
+    private static String urlEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void encodeLikeUrlEncoder() {
+        for (String value : VALUES) {
+            String url = LnUrlCallbackBuilder.fromPrefix("https://a.test/cb?").param("v", value).toString();
+            assertEquals(url, "https://a.test/cb?v=" + urlEncode(value));
+            // names are encoded the same way
+            url = LnUrlCallbackBuilder.fromPrefix("https://a.test/cb?").param(value, 1).toString();
+            assertEquals(url, "https://a.test/cb?" + urlEncode(value) + "=1");
+        }
+    }
+
+    @Test
+    public void encodeUtf8BytesLikeUrlEncoder() {
+        for (String value : VALUES) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            String url = LnUrlCallbackBuilder.fromPrefix("https://a.test/cb?").param("v", utf8).toString();
+            // URLEncoder replaces unpaired surrogates the same way String.getBytes does
+            assertEquals(url, "https://a.test/cb?v=" + urlEncode(value));
+        }
+    }
+
+    @Test
+    public void appendToBaseQuery() {
+        assertEquals(LnUrlCallbackBuilder.prefix("https://a.test/cb"), "https://a.test/cb?");
+        assertEquals(LnUrlCallbackBuilder.prefix("https://a.test/cb?"), "https://a.test/cb?");
+        assertEquals(LnUrlCallbackBuilder.prefix("https://a.test/cb?k=1"), "https://a.test/cb?k=1&");
+        assertEquals(LnUrlCallbackBuilder.prefix("https://a.test/cb?k=1&"), "https://a.test/cb?k=1&");
+
+        LnUrlCallbackBuilder builder = new LnUrlCallbackBuilder(URI.create("https://a.test/cb?k=1"));
+        assertEquals(builder.toString(), "https://a.test/cb?k=1&");
+        assertEquals(
+            builder.param("amount", 1000).param("comment", "hi there").toString(),
+            "https://a.test/cb?k=1&amount=1000&comment=hi+there"
+        );
+        builder = new LnUrlCallbackBuilder(URI.create("https://a.test/cb?k=1&"));
+        assertEquals(builder.param("amount", -5).toString(), "https://a.test/cb?k=1&amount=-5");
+        assertEquals(builder.toURI(), URI.create("https://a.test/cb?k=1&amount=-5"));
+    }
+
+    @Test
+    public void reuseAfterReset() {
+        LnUrlCallbackBuilder builder = new LnUrlCallbackBuilder(URI.create("https://a.test/cb"));
+        assertEquals(builder.param("amount", 1000).param("comment", "x").toString(), "https://a.test/cb?amount=1000&comment=x");
+        // the first parameter after a reset has no separator
+        assertEquals(builder.reset().toString(), "https://a.test/cb?");
+        assertEquals(builder.param("amount", 2000).toString(), "https://a.test/cb?amount=2000");
+        assertEquals(builder.reset().reset().param("a", "1").param("b", "2").toString(), "https://a.test/cb?a=1&b=2");
+    }
+
+    @Test
+    public void toBytes() {
+        LnUrlCallbackBuilder ascii = LnUrlCallbackBuilder.fromPrefix("https://a.test/cb?").param("c", "\u00e8 \ud83d\ude00");
+        assertArrayEquals(ascii.toBytes(), ascii.toString().getBytes(StandardCharsets.US_ASCII));
+
+        // a non ascii base is kept as is, and encoded to utf-8
+        LnUrlCallbackBuilder unicode = LnUrlCallbackBuilder.fromPrefix("https://\u00e8.test/caf\u00e9?").param("c", "\u00e8");
+        assertEquals(unicode.toString(), "https://\u00e8.test/caf\u00e9?c=%C3%A8");
+        assertArrayEquals(unicode.toBytes(), "https://\u00e8.test/caf\u00e9?c=%C3%A8".getBytes(StandardCharsets.UTF_8));
+    }
+}
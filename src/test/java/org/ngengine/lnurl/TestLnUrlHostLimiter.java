@@ -0,0 +1,170 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlHostLimiter {
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        LnUrlHostLimiter limiter = new LnUrlHostLimiter(1, 1, Duration.ofMinutes(1));
+        List<Consumer<String>> running = new ArrayList<>();
+        AsyncTask<String> first = limiter.run("a.test", () -> pending(running));
+        AsyncTask<String> second = limiter.run("a.test", () -> pending(running));
+        AsyncTask<String> third = limiter.run("a.test", () -> pending(running));
+        assertEquals(limiter.getInFlight("a.test"), 1);
+        assertEquals(limiter.getQueueDepth("a.test"), 1);
+        assertRejected(third);
+
+        running.get(0).accept("first");
+        assertEquals(first.await(), "first");
+        running.get(1).accept("second");
+        assertEquals(second.await(), "second");
+        assertEquals(limiter.getRejected("a.test"), 1);
+        assertEquals(limiter.getRejected(), 1);
+    }
+
+    @Test
+    public void forgetIdleHosts() throws Exception {
+        LnUrlHostLimiter limiter = new LnUrlHostLimiter(1, 0, Duration.ofMinutes(1));
+        int hosts = LnUrlHostLimiter.MAX_TRACKED_HOSTS + 100;
+        for (int i = 0; i < hosts; i++) {
+            String host = "h" + i + ".test";
+            List<Consumer<String>> running = new ArrayList<>();
+            AsyncTask<String> ok = limiter.run(host, () -> pending(running));
+            AsyncTask<String> rejected = limiter.run(host, () -> pending(running));
+            assertTrue(rejected.isFailed());
+            running.get(0).accept("ok");
+            ok.await();
+        }
+        // rejected hosts are dropped once idle, only their counters are kept, for the most recent hosts
+        assertEquals(limiter.getActiveHosts(), 0);
+        assertEquals(limiter.getRejected(), hosts);
+        assertEquals(limiter.getRejected("h0.test"), 0);
+        assertEquals(limiter.getRejected("h" + (hosts - 1) + ".test"), 1);
+    }
+
+    @Test
+    public void startQueuedSynchronousRequests() throws Exception {
+        int n = 100000;
+        LnUrlHostLimiter limiter = new LnUrlHostLimiter(1, n, Duration.ofMinutes(1));
+        List<Consumer<String>> running = new ArrayList<>();
+        AsyncTask<String> first = limiter.run("a.test", () -> pending(running));
+        List<AsyncTask<String>> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String value = Integer.toString(i);
+            tasks.add(limiter.run("a.test", () -> NGEPlatform.get().promisify((res, rej) -> res.accept(value), null)));
+        }
+        assertEquals(limiter.getQueueDepth("a.test"), n);
+        // every queued request completes synchronously when it starts
+        running.get(0).accept("first");
+        assertEquals(first.await(), "first");
+        for (int i = 0; i < n; i++) {
+            assertEquals(tasks.get(i).await(), Integer.toString(i));
+        }
+        assertEquals(limiter.getActiveHosts(), 0);
+    }
+
+    @Test
+    public void boundTimeoutWhenTheRequestStarts() throws Exception {
+        List<Consumer<String>> running = new ArrayList<>();
+        List<Duration> timeouts = new ArrayList<>();
+        LnUrlHttpTransport transport = (url, timeout, headers) -> {
+            timeouts.add(timeout);
+            return pending(running);
+        };
+        LnUrlHostLimiter limiter = new LnUrlHostLimiter(1, 1, Duration.ofMinutes(1));
+        LnUrl.setHostLimiter(limiter);
+        try {
+            LnUrlDeadline deadline = LnUrlDeadline.after(Duration.ofSeconds(5));
+            Duration timeout = Duration.ofSeconds(5);
+            AsyncTask<String> first = LnUrlHttp.get("a.test", "https://a.test/1", timeout, null, transport);
+            AsyncTask<String> second = LnUrlHttp.get("a.test", "https://a.test/2", timeout, deadline, null, transport);
+            Thread.sleep(200);
+            running.get(0).accept("first");
+            first.await();
+            // the time spent in the queue is taken from the deadline
+            assertTrue(timeouts.get(1).compareTo(Duration.ofMillis(4850)) < 0);
+            running.get(1).accept("second");
+            assertEquals(second.await(), "second");
+        } finally {
+            LnUrl.setHostLimiter(null);
+            limiter.close();
+        }
+    }
+
+    @Test
+    public void rejectQueuedRequestsWhenClosed() throws Exception {
+        LnUrlHostLimiter limiter = new LnUrlHostLimiter(1, 1, Duration.ofMinutes(1));
+        List<Consumer<String>> running = new ArrayList<>();
+        AsyncTask<String> first = limiter.run("a.test", () -> pending(running));
+        AsyncTask<String> queued = limiter.run("a.test", () -> pending(running));
+        limiter.close();
+        assertRejected(queued);
+        assertRejected(limiter.run("b.test", () -> pending(running)));
+        assertEquals(limiter.getQueueDepth("a.test"), 0);
+
+        // requests in flight complete normally
+        running.get(0).accept("first");
+        assertEquals(first.await(), "first");
+        assertEquals(running.size(), 1);
+        limiter.close();
+    }
+
+    private static void assertRejected(AsyncTask<String> task) {
+        try {
+            task.await();
+            fail("Expected the request to be rejected");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (!(cause instanceof LnUrlException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertEquals(((LnUrlException) cause).getStatus(), LnUrlException.Status.REJECTED);
+        }
+    }
+
+    private static AsyncTask<String> pending(List<Consumer<String>> running) {
+        return NGEPlatform.get().promisify((res, rej) -> running.add(res), null);
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class TestLnUrlInternCache {
+
+    private static final String LNURL = "lnurl1dp68gurn8ghj7unzd33zu6t59uh8wetvdskkkmn0wahz7mrww4excup00fshqeug7aa";
+
+    @Test
+    public void shareParsedLnUrls() throws Exception {
+        LnUrlInternCache cache = LnUrl.getParseCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        LnUrl first = LnUrl.parse(LNURL);
+        LnUrl second = LnUrl.parse(LNURL);
+        assertSame(second, first);
+        assertEquals(first.toURI().toString(), "https://rblb.it/.well-known/lnurlp/zap");
+        assertEquals(cache.getMisses() - misses, 1);
+        assertEquals(cache.getHits() - hits, 1);
+        // the constructor still creates a new instance
+        assertNotSame(new LnUrl(LNURL), first);
+        // the key is the exact input string
+        assertNotSame(LnUrl.parse(LNURL.toUpperCase()), first);
+    }
+
+    @Test
+    public void shareParsedAddresses() throws Exception {
+        LnUrlInternCache cache = LnAddress.getParseCache();
+        long hits = cache.getHits();
+        LnAddress first = LnAddress.parse("intern@example.com");
+        LnAddress second = LnAddress.parse("intern@example.com");
+        assertSame(second, first);
+        assertEquals(first.toURI().toString(), "https://example.com/.well-known/lnurlp/intern");
+        assertEquals(cache.getHits() - hits, 1);
+        assertNotSame(LnAddress.parse("other@example.com"), first);
+        assertNotSame(LnUrl.getParseCache(), cache);
+    }
+
+    @Test
+    public void neverCacheInvalidInputs() throws Exception {
+        LnUrlInternCache cache = LnAddress.getParseCache();
+        int size = cache.size();
+        long misses = cache.getMisses();
+        assertThrows(URISyntaxException.class, () -> LnAddress.parse("not an address"));
+        assertThrows(URISyntaxException.class, () -> LnAddress.parse("not an address"));
+        assertEquals(cache.getMisses() - misses, 2);
+        assertEquals(cache.size(), size);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        AtomicInteger parsed = new AtomicInteger();
+        LnUrlInternCache cache = new LnUrlInternCache(
+            2,
+            value -> {
+                parsed.incrementAndGet();
+                return new LnAddress(value);
+            }
+        );
+        assertEquals(cache.getHitRate(), 0.0, 0);
+        LnUrl a = cache.get("a@a.test");
+        cache.get("b@b.test");
+        // a becomes the most recently used entry, so b is evicted
+        assertSame(cache.get("a@a.test"), a);
+        cache.get("c@c.test");
+        assertEquals(cache.size(), 2);
+        assertEquals(parsed.get(), 3);
+        cache.get("b@b.test");
+        assertEquals(parsed.get(), 4);
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 4);
+        assertEquals(cache.getHitRate(), 0.2, 1e-9);
+        cache.clear();
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getMaxEntries(), 2);
+    }
+}
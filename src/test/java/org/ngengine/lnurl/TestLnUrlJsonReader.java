@@ -0,0 +1,256 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class TestLnUrlJsonReader {
+
+    private static final String[] NAMES = { "a", "b" };
+
+    @Test
+    public void readEscapes() throws Exception {
+        LnUrlJsonReader reader = new LnUrlJsonReader(
+            "[\"q\\\"b\\\\s\\/n\\nt\\tr\\rb\\bf\\f\", \"\\u00e8\\u20AC\", \"\\ud83d\\ude00\", \"\\u0000\"]"
+        );
+        reader.beginArray();
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextString(), "q\"b\\s/n\nt\tr\rb\bf\f");
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextString(), "\u00e8\u20ac");
+        assertTrue(reader.hasNext());
+        String emoji = reader.nextString();
+        assertEquals(emoji, "\ud83d\ude00");
+        assertEquals(emoji.codePointAt(0), 0x1F600);
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextString(), "\u0000");
+        assertFalse(reader.hasNext());
+        reader.endArray();
+
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("\"\\x\"").nextString());
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("\"\\u12\"").nextString());
+    }
+
+    @Test
+    public void matchEscapedNames() throws Exception {
+        LnUrlJsonReader reader = new LnUrlJsonReader("{\"\\u0062\": 1, \"c\": 2, \"a\": 3}");
+        reader.beginObject();
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextName(NAMES), 1);
+        assertEquals(reader.nextLong(), 1);
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextName(NAMES), -1);
+        reader.skipValue();
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextName(NAMES), 0);
+        assertEquals(reader.nextLong(), 3);
+        assertFalse(reader.hasNext());
+        reader.endObject();
+    }
+
+    @Test
+    public void skipNestedValues() throws Exception {
+        LnUrlJsonReader reader = new LnUrlJsonReader(
+            "{\"x\": {\"y\": [1, {\"z\": \"}]\"}, [], {}], \"w\": null}, \"b\": true, \"s\": \"\\\"\", \"a\": -1.5e3}"
+        );
+        reader.beginObject();
+        int found = 0;
+        while (reader.hasNext()) {
+            switch (reader.nextName(NAMES)) {
+                case 0:
+                    assertEquals(reader.nextLong(), -1500);
+                    found++;
+                    break;
+                case 1:
+                    assertTrue(reader.nextBoolean());
+                    found++;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        assertEquals(found, 2);
+        assertEquals(reader.peek(), LnUrlJsonReader.Token.END);
+    }
+
+    @Test
+    public void readNumbersAndBooleansAsStrings() throws Exception {
+        LnUrlJsonReader reader = new LnUrlJsonReader("[\"1000\", \" 42 \", \"1.9\", \"true\", 12, false]");
+        reader.beginArray();
+        reader.hasNext();
+        assertEquals(reader.nextLong(), 1000);
+        reader.hasNext();
+        assertEquals(reader.nextInt(), 42);
+        reader.hasNext();
+        assertEquals(reader.nextLong(), 1);
+        reader.hasNext();
+        assertTrue(reader.nextBoolean());
+        reader.hasNext();
+        assertEquals(reader.nextString(), "12");
+        reader.hasNext();
+        assertEquals(reader.nextString(), "false");
+        reader.endArray();
+
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("\"abc\"").nextLong());
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("3000000000").nextInt());
+    }
+
+    @Test
+    public void readNullValues() throws Exception {
+        LnUrlJsonReader reader = new LnUrlJsonReader("[null, null, null, null]");
+        reader.beginArray();
+        reader.hasNext();
+        assertNull(reader.nextString());
+        reader.hasNext();
+        // null numbers and booleans are read as their default value
+        assertEquals(reader.nextLong(), 0);
+        reader.hasNext();
+        assertFalse(reader.nextBoolean());
+        reader.hasNext();
+        assertNull(reader.readValue());
+        reader.endArray();
+    }
+
+    @Test
+    public void readValues() throws Exception {
+        Map<String, Object> map = (Map<String, Object>) new LnUrlJsonReader(
+            "{\"a\": [1, 2.5, \"x\", true, null, 123456789012345678901234567890], \"b\": {\"c\": {}}}"
+        )
+            .readValue();
+        List<Object> list = (List<Object>) map.get("a");
+        assertEquals(list.subList(0, 5), Arrays.asList(1L, 2.5, "x", true, null));
+        assertTrue(list.get(5) instanceof Double);
+        assertTrue(((Map<String, Object>) ((Map<String, Object>) map.get("b")).get("c")).isEmpty());
+    }
+
+    @Test
+    public void rejectTruncatedInput() {
+        String[] inputs = {
+            "{",
+            "{\"a\"",
+            "{\"a\":",
+            "{\"a\": 1",
+            "{\"a\": 1,",
+            "[1, 2",
+            "\"abc",
+            "\"abc\\",
+            "{\"a\": \"\\u00",
+            "[tru",
+        };
+        for (String input : inputs) {
+            assertThrows(input, IOException.class, () -> new LnUrlJsonReader(input).readValue());
+            assertThrows(input, IOException.class, () -> new LnUrlJsonReader(input).skipValue());
+        }
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("{\"a\" 1}").readValue());
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("[1 2]").readValue());
+    }
+
+    @Test
+    public void rejectLiteralsWithoutDelimiter() throws Exception {
+        String[] inputs = { "truex", "[truex]", "{\"a\": falsey}", "nullx", "[1x]", "{\"a\": 12abc}" };
+        for (String input : inputs) {
+            assertThrows(input, IOException.class, () -> new LnUrlJsonReader(input).readValue());
+            assertThrows(input, IOException.class, () -> new LnUrlJsonReader(input).skipValue());
+        }
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("truex").nextBoolean());
+        assertThrows(IOException.class, () -> new LnUrlJsonReader("nullx").nextString());
+        assertEquals(new LnUrlJsonReader("[true,false, null]").readValue(), Arrays.asList(true, false, null));
+    }
+
+    @Test
+    public void rejectTrailingData() throws Exception {
+        LnUrlJsonReader reader = new LnUrlJsonReader("{\"pr\":\"x\"} garbage");
+        reader.beginObject();
+        assertEquals(reader.nextName(), "pr");
+        assertEquals(reader.nextString(), "x");
+        reader.endObject();
+        assertThrows(IOException.class, reader::endDocument);
+
+        reader = new LnUrlJsonReader(" {\"pr\":\"x\"} \n");
+        reader.beginObject();
+        reader.nextName();
+        reader.nextString();
+        reader.endObject();
+        reader.endDocument();
+
+        assertThrows(LnUrlException.class, () -> LnUrlPaymentResponse.fromJson(null, "{\"pr\":\"x\",\"routes\":[]} garbage"));
+        String pay =
+            "{\"tag\":\"payRequest\",\"callback\":\"https://mock.lnurl/callback\",\"minSendable\":1000," +
+            "\"maxSendable\":1000000,\"metadata\":\"[[\\\"text/plain\\\",\\\"x\\\"]]\"}";
+        LnUrlPay.fromJson(pay);
+        assertThrows(LnUrlException.class, () -> LnUrlPay.fromJson(pay + "{}"));
+    }
+
+    @Test
+    public void limitNestingDepth() throws Exception {
+        StringBuilder ok = new StringBuilder();
+        for (int i = 0; i < LnUrlJsonReader.MAX_DEPTH; i++) ok.append('[');
+        for (int i = 0; i < LnUrlJsonReader.MAX_DEPTH; i++) ok.append(']');
+        new LnUrlJsonReader(ok.toString()).readValue();
+        new LnUrlJsonReader(ok.toString()).skipValue();
+
+        StringBuilder deep = new StringBuilder("{\"tag\": \"payRequest\", \"x\": ");
+        for (int i = 0; i < 100000; i++) deep.append("[{\"a\":");
+        assertThrows(IOException.class, () -> new LnUrlJsonReader(deep.toString()).readValue());
+        assertThrows(IOException.class, () -> new LnUrlJsonReader(deep.toString()).skipValue());
+        LnUrlException e = assertThrows(LnUrlException.class, () -> LnUrlPay.fromJson(deep.toString()));
+        assertEquals(e.getStatus(), LnUrlException.Status.INVALID);
+    }
+
+    @Test
+    public void readErrorBodies() {
+        String body = "{\"status\": \"ERROR\", \"reason\": \"amount too low\"}";
+        LnUrlException e = assertThrows(LnUrlException.class, () -> LnUrlPay.fromJson(body));
+        assertEquals(e.getStatus(), LnUrlException.Status.ERROR);
+        assertTrue(e.getMessage().contains("amount too low"));
+        e = assertThrows(LnUrlException.class, () -> LnUrlPaymentResponse.fromJson(null, body));
+        assertEquals(e.getStatus(), LnUrlException.Status.ERROR);
+        e = assertThrows(LnUrlException.class, () -> LnUrlVerify.fromJson(body));
+        assertEquals(e.getStatus(), LnUrlException.Status.ERROR);
+        e = assertThrows(LnUrlException.class, () -> LnUrlException.checkStatus(body));
+        assertEquals(e.getStatus(), LnUrlException.Status.ERROR);
+
+        e = assertThrows(LnUrlException.class, () -> LnUrlException.checkStatus("{\"status\": \"OK\""));
+        assertEquals(e.getStatus(), LnUrlException.Status.INVALID);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlJsonWriter {
+
+    private static String write(Object value) {
+        return new String(LnUrlJsonWriter.toBytes(value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a value and read it back with the platform parser.
+     */
+    private static Object roundTrip(Object value) {
+        Map<String, Object> wrapper = new LinkedHashMap<>();
+        wrapper.put("v", value);
+        Map<String, Object> map = NGEPlatform.get().fromJSON(write(wrapper), Map.class);
+        return map.get("v");
+    }
+
+    /**
+     * Replace every number with its double value, parsers don't agree on the type of json numbers.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Map) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                out.put(String.valueOf(e.getKey()), normalize(e.getValue()));
+            }
+            return out;
+        } else if (value instanceof List) {
+            List<Object> out = new ArrayList<>();
+            for (Object v : (List<?>) value) {
+                out.add(normalize(v));
+            }
+            return out;
+        }
+        return value;
+    }
+
+    @Test
+    public void escapeStrings() {
+        assertEquals(write("a\"b\\c/d"), "\"a\\\"b\\\\c/d\"");
+        assertEquals(write("\n\r\t\u0000\u001f\u007f"), "\"\\n\\r\\t\\u0000\\u001f\u007f\"");
+        StringBuilder controls = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) controls.append(c);
+        controls.append("\"\\/\u007f");
+        assertEquals(roundTrip(controls.toString()), controls.toString());
+    }
+
+    @Test
+    public void encodeUtf8() {
+        String text = "\u00e8\u20ac\ud83d\ude00";
+        assertArrayEquals(LnUrlJsonWriter.toBytes(text), ("\"" + text + "\"").getBytes(StandardCharsets.UTF_8));
+        assertEquals(roundTrip(text), text);
+        // unpaired surrogates are replaced the same way String.getBytes does
+        String unpaired = "a\ud83db\ude00c\ud83d";
+        assertArrayEquals(LnUrlJsonWriter.toBytes(unpaired), ("\"" + unpaired + "\"").getBytes(StandardCharsets.UTF_8));
+        assertEquals(roundTrip(unpaired), "a?b?c?");
+    }
+
+    @Test
+    public void writeNumbers() {
+        assertEquals(write(1.0), "1");
+        assertEquals(write(-2.0f), "-2");
+        assertEquals(write(1.5), "1.5");
+        assertEquals(write(0), "0");
+        assertEquals(write(-1), "-1");
+        assertEquals(write(Integer.MIN_VALUE), "-2147483648");
+        assertEquals(write(Long.MAX_VALUE), "9223372036854775807");
+        assertEquals(write(Long.MIN_VALUE), "-9223372036854775808");
+        assertEquals(write((short) 7), "7");
+        assertEquals(((Number) roundTrip(1e20)).doubleValue(), 1e20, 0);
+        assertEquals(((Number) roundTrip(0.1)).doubleValue(), 0.1, 0);
+        assertEquals(((Number) roundTrip(21000L)).longValue(), 21000L);
+        assertThrows(IllegalArgumentException.class, () -> LnUrlJsonWriter.toBytes(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlJsonWriter.toBytes(Float.NaN));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlJsonWriter.toBytes(Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> LnUrlJsonWriter.toBytes(List.of(Double.NEGATIVE_INFINITY)));
+    }
+
+    @Test
+    public void writeNestedValues() {
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("flags", Arrays.asList(true, false, null));
+        inner.put("empty", new LinkedHashMap<>());
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("list", Arrays.asList(1, "two", inner, new ArrayList<>()));
+        document.put("array", new Object[] { "a", 2L });
+        document.put("nested", List.of(List.of(List.of("deep"))));
+        document.put("null", null);
+        assertEquals(
+            write(document),
+            "{\"list\":[1,\"two\",{\"flags\":[true,false,null],\"empty\":{}},[]],\"array\":[\"a\",2]," +
+            "\"nested\":[[[\"deep\"]]],\"null\":null}"
+        );
+        document.put("array", Arrays.asList("a", 2L));
+        assertEquals(normalize(roundTrip(document)), normalize(document));
+    }
+
+    @Test
+    public void payToJsonBytesMatchesToMap() {
+        LnUrlPay pay = new LnUrlPay(
+            1000000,
+            1000,
+            URI.create("https://mock.lnurl/lnurlp/unit/callback?k=1"),
+            255,
+            List.of(new LnUrlPay.Metadata("text/plain", "Sats for \"unit\" \u00e8 \ud83d\ude00")),
+            null,
+            "00".repeat(32),
+            true
+        );
+        byte[] json = pay.toJsonBytes();
+        Map<String, Object> parsed = NGEPlatform.get().fromJSON(new String(json, StandardCharsets.UTF_8), Map.class);
+        assertEquals(normalize(parsed), normalize(pay.toMap()));
+        // the document is serialized once
+        assertSame(pay.toJsonBytes(), json);
+    }
+}
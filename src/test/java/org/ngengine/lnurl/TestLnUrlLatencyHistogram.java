@@ -0,0 +1,127 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import org.junit.Test;
+
+public class TestLnUrlLatencyHistogram {
+
+    @Test
+    public void bucketBounds() {
+        // the first buckets hold one value each
+        for (int i = 0; i < 8; i++) {
+            assertEquals(LnUrlLatencyHistogram.bucket(i), i);
+            assertEquals(LnUrlLatencyHistogram.lowerBound(i), i);
+        }
+        // then 8 buckets for every power of two
+        assertEquals(LnUrlLatencyHistogram.bucket(8), 8);
+        assertEquals(LnUrlLatencyHistogram.bucket(15), 15);
+        assertEquals(LnUrlLatencyHistogram.bucket(16), 16);
+        assertEquals(LnUrlLatencyHistogram.bucket(17), 16);
+        assertEquals(LnUrlLatencyHistogram.lowerBound(17), 18);
+        assertEquals(LnUrlLatencyHistogram.bucket(1000), LnUrlLatencyHistogram.bucket(1023));
+        assertEquals(LnUrlLatencyHistogram.lowerBound(LnUrlLatencyHistogram.bucket(1023)), 960);
+
+        long[] values = { 0, 1, 7, 8, 9, 100, 1000, 4095, 4096, 999_999, 1L << 40, (1L << 40) + 12345, Long.MAX_VALUE };
+        for (long v : values) {
+            int b = LnUrlLatencyHistogram.bucket(v);
+            long lower = LnUrlLatencyHistogram.lowerBound(b);
+            assertTrue(lower <= v);
+            // the bucket is at most 12.5% wide
+            assertTrue(v - lower <= lower / 8);
+            if (v < Long.MAX_VALUE) {
+                assertTrue(LnUrlLatencyHistogram.bucket(v + 1) >= b);
+            }
+        }
+        // every bucket starts right after the previous one
+        int last = LnUrlLatencyHistogram.bucket(Long.MAX_VALUE);
+        for (int b = 1; b <= last; b++) {
+            long lower = LnUrlLatencyHistogram.lowerBound(b);
+            assertTrue(lower > LnUrlLatencyHistogram.lowerBound(b - 1));
+            assertEquals(LnUrlLatencyHistogram.bucket(lower), b);
+            assertEquals(LnUrlLatencyHistogram.bucket(lower - 1), b - 1);
+        }
+    }
+
+    @Test
+    public void selectPercentiles() {
+        LnUrlLatencyHistogram h = new LnUrlLatencyHistogram();
+        assertEquals(h.getPercentile(50), Duration.ZERO);
+        for (int ms = 1; ms <= 100; ms++) {
+            h.record(Duration.ofMillis(ms).toNanos());
+        }
+        assertEquals(h.getCount(), 100);
+        assertEquals(h.getMax(), Duration.ofMillis(100));
+        assertEquals(h.getMean(), Duration.ofNanos(50_500_000));
+        assertNear(h.getPercentile(0), 1);
+        assertNear(h.getPercentile(50), 50);
+        assertNear(h.getPercentile(90), 90);
+        assertNear(h.getPercentile(99), 99);
+        // the midpoint of the last bucket is capped at the max
+        assertEquals(h.getPercentile(100), Duration.ofMillis(100));
+        assertThrows(IllegalArgumentException.class, () -> h.getPercentile(-1));
+        assertThrows(IllegalArgumentException.class, () -> h.getPercentile(101));
+
+        // a percentile is the value of the ceil(p * count)-th sample
+        LnUrlLatencyHistogram two = new LnUrlLatencyHistogram();
+        two.record(Duration.ofMillis(1).toNanos());
+        two.record(Duration.ofSeconds(1).toNanos());
+        assertNear(two.getPercentile(50), 1);
+        assertNear(two.getPercentile(51), 1000);
+
+        h.reset();
+        assertEquals(h.getCount(), 0);
+        assertEquals(h.getMean(), Duration.ZERO);
+        assertEquals(h.getMax(), Duration.ZERO);
+        assertEquals(h.getPercentile(99), Duration.ZERO);
+    }
+
+    @Test
+    public void recordNegativeAsZero() {
+        LnUrlLatencyHistogram h = new LnUrlLatencyHistogram();
+        h.record(-5000);
+        h.record(Long.MAX_VALUE);
+        assertEquals(h.getCount(), 2);
+        assertEquals(h.getPercentile(0), Duration.ZERO);
+        assertEquals(h.getMax(), Duration.ofNanos(Long.MAX_VALUE / 1000 * 1000));
+    }
+
+    private static void assertNear(Duration actual, long expectedMillis) {
+        double ms = actual.toNanos() / 1e6;
+        assertTrue(ms + " ms, expected " + expectedMillis, Math.abs(ms - expectedMillis) <= expectedMillis * 0.125);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+import org.ngengine.lnurl.LnUrlInstrumentation.Operation;
+
+public class TestLnUrlMetrics {
+
+    @Test
+    public void recordRequests() {
+        LnUrlMetrics metrics = new LnUrlMetrics(2);
+        metrics.onRequestStart(Operation.GET_SERVICE, "a.test");
+        metrics.onRequestEnd(Operation.GET_SERVICE, "a.test", Duration.ofMillis(10).toNanos());
+        metrics.onRequestStart(Operation.FETCH_INVOICE, "b.test");
+        metrics.onRequestError(
+            Operation.FETCH_INVOICE,
+            "b.test",
+            Duration.ofMillis(20).toNanos(),
+            new RuntimeException(new LnUrlException(LnUrlException.Status.ERROR, "no route"))
+        );
+        metrics.onRequestError(Operation.FETCH_INVOICE, "b.test", 1000, new TimeoutException());
+        metrics.onRequestError(Operation.VERIFY, "c.test", 1000, new RuntimeException(new IOException("reset")));
+        metrics.onRequestEnd(Operation.VERIFY, "d.test", 1000);
+        metrics.onParse(Operation.GET_SERVICE, 5000);
+        metrics.onCacheHit("a.test");
+        metrics.onCacheMiss("a.test");
+        metrics.onCacheMiss("b.test");
+
+        assertEquals(metrics.getStarted(Operation.GET_SERVICE), 1);
+        assertEquals(metrics.getStarted(Operation.FETCH_INVOICE), 1);
+        // only successful requests are in the operation latency, the host latency has all of them
+        assertEquals(metrics.getLatency(Operation.GET_SERVICE).getCount(), 1);
+        assertEquals(metrics.getLatency(Operation.FETCH_INVOICE).getCount(), 0);
+        assertEquals(metrics.getHostLatency("b.test").getCount(), 2);
+        assertEquals(metrics.getParseTime(Operation.GET_SERVICE).getCount(), 1);
+        assertEquals(metrics.getErrors(LnUrlException.Status.ERROR), 1);
+        assertEquals(metrics.getTransportErrors(), 2);
+        assertEquals(metrics.getCacheHits(), 1);
+        assertEquals(metrics.getCacheMisses(), 2);
+
+        // hosts past the limit are recorded together
+        assertNull(metrics.getHostLatency("c.test"));
+        assertEquals(metrics.getHostLatency(LnUrlMetrics.OTHER_HOSTS).getCount(), 2);
+        assertEquals(metrics.getHosts().size(), 3);
+
+        metrics.reset();
+        assertEquals(metrics.getStarted(Operation.GET_SERVICE), 0);
+        assertEquals(metrics.getLatency(Operation.GET_SERVICE).getCount(), 0);
+        assertEquals(metrics.getTransportErrors(), 0);
+        assertEquals(metrics.getCacheMisses(), 0);
+        assertTrue(metrics.getHosts().isEmpty());
+    }
+
+    @Test
+    public void pairRequestEvents() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000);
+        List<Object> started = new ArrayList<>();
+        List<Object> settled = new ArrayList<>();
+        LnUrlMetrics metrics = new LnUrlMetrics() {
+            @Override
+            public Object startRequest(Operation operation, String host) {
+                super.startRequest(operation, host);
+                Object context = new Object();
+                started.add(context);
+                return context;
+            }
+
+            @Override
+            public void onRequestEnd(Operation operation, String host, long nanos, Object context) {
+                super.onRequestEnd(operation, host, nanos, context);
+                settled.add(context);
+            }
+
+            @Override
+            public void onRequestError(Operation operation, String host, long nanos, Throwable error, Object context) {
+                super.onRequestError(operation, host, nanos, error, context);
+                settled.add(context);
+            }
+        };
+        LnUrl.setInstrumentation(metrics);
+        try {
+            new LnAddress("unit@mock.lnurl").getService(Duration.ofSeconds(5), server).await();
+            server.setFailureRate(1);
+            try {
+                new LnAddress("unit@mock.lnurl").getService(Duration.ofSeconds(5), server).await();
+                throw new AssertionError("Expected the request to fail");
+            } catch (Exception e) {
+                // the injected failure
+            }
+        } finally {
+            LnUrl.setInstrumentation(null);
+        }
+        assertEquals(started.size(), 2);
+        assertEquals(settled.size(), 2);
+        assertSame(settled.get(0), started.get(0));
+        assertSame(settled.get(1), started.get(1));
+        // the default implementations still call the callbacks without a context
+        assertEquals(metrics.getStarted(Operation.GET_SERVICE), 2);
+        assertEquals(metrics.getLatency(Operation.GET_SERVICE).getCount(), 1);
+        assertEquals(metrics.getTransportErrors(), 1);
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlOffline {
+
+    private static final String PAY_JSON =
+        "{\"tag\":\"payRequest\",\"callback\":\"https://fast.test/callback\",\"minSendable\":1000," +
+        "\"maxSendable\":1000000,\"metadata\":\"[[\\\"text/plain\\\",\\\"x\\\"]]\"}";
+
+    @Test
+    public void getInvoiceAndVerify() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000);
+        LnAddress lnAddress = new LnAddress("unit@mock.lnurl");
+        LnUrlPay service = lnAddress.<LnUrlPay>getService(Duration.ofSeconds(5), server).await();
+        assertEquals(service.getIdentifier(), "unit@mock.lnurl");
+        assertTrue(service.canSend(1000));
+
+        LnUrlPayerData payerData = new LnUrlPayerData();
+        payerData.setName("Test Payer");
+        LnUrlPaymentResponse resp = service
+            .fetchInvoice(1000, "test payment", payerData, Duration.ofSeconds(5), null, null, server)
+            .await();
+        assertTrue(resp.getPr().startsWith("lnbc"));
+
+        LnUrlVerify verify = resp.verify(Duration.ofSeconds(5)).await();
+        assertTrue(verify.isSettled());
+        assertEquals(verify.getPr(), resp.getPr());
+    }
+
+    @Test
+    public void rejectOutOfRangeAmount() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 2000);
+        LnUrlPay service = new LnAddress("unit@mock.lnurl").<LnUrlPay>getService(Duration.ofSeconds(5), server).await();
+        try {
+            service.getCallback(5000, null, null);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(server.getInvoices(), 0);
+    }
+
+    @Test
+    public void injectedFailure() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000).setFailureRate(1);
+        try {
+            new LnAddress("unit@mock.lnurl").getService(Duration.ofSeconds(5), server).await();
+            fail("Expected the request to fail");
+        } catch (Exception e) {
+            // expected
+        }
+        assertEquals(server.getFailures(), 1);
+    }
+
+    @Test
+    public void retryIdempotentRequests() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000).setFailureRate(1);
+        LnUrlRetryPolicy policy = new LnUrlRetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(10), false);
+        LnUrl.setRetryPolicy(policy);
+        try {
+            new LnAddress("unit@mock.lnurl").getService(Duration.ofSeconds(5), server).await();
+            fail("Expected the request to fail");
+        } catch (Exception e) {
+            // expected
+        } finally {
+            LnUrl.setRetryPolicy(null);
+        }
+        assertEquals(server.getFailures(), 3);
+        assertEquals(policy.getRetries(), 2);
+    }
+
+    @Test
+    public void expiredDeadline() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000);
+        try {
+            new LnAddress("unit@mock.lnurl")
+                .getService(Duration.ofSeconds(5), server, LnUrlDeadline.after(Duration.ZERO))
+                .await();
+            fail("Expected the request to fail");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause.getCause() != null && !(cause instanceof TimeoutException)) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof TimeoutException);
+        }
+        assertEquals(server.getRequests(), 0);
+    }
+
+    @Test
+    public void coalesceConcurrentLookups() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl")
+            .addUser("unit", 1000, 1000000)
+            .setLatency(Duration.ofMillis(50), Duration.ZERO);
+        LnAddress address = new LnAddress("unit@mock.lnurl");
+        AsyncTask<LnUrlPay> first = address.getService(Duration.ofSeconds(5), server);
+        AsyncTask<LnUrlPay> second = address.getService(Duration.ofSeconds(5), server);
+        assertSame(first.await(), second.await());
+        assertEquals(server.getRequests(), 1);
+        // the in-flight slot is released once the request settles
+        address.getService(Duration.ofSeconds(5), server).await();
+        assertEquals(server.getRequests(), 2);
+    }
+
+    @Test
+    public void boundJoinedLookupsByTheirOwnDeadline() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl")
+            .addUser("unit", 1000, 1000000)
+            .setLatency(Duration.ofMillis(500), Duration.ZERO);
+        LnAddress address = new LnAddress("unit@mock.lnurl");
+        AsyncTask<LnUrlPay> leader = address.getService(Duration.ofSeconds(5), server);
+        long start = System.nanoTime();
+        try {
+            address.getService(Duration.ofSeconds(5), server, LnUrlDeadline.after(Duration.ofMillis(50))).await();
+            fail("Expected the joined lookup to time out");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause.getCause() != null && !(cause instanceof TimeoutException)) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof TimeoutException);
+        }
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(400).toNanos());
+        // the shared request is not affected by the joined caller giving up
+        assertEquals(leader.await().getCallback().getHost(), "mock.lnurl");
+        assertEquals(server.getRequests(), 1);
+    }
+
+    @Test
+    public void sendRequestsOutsideTheInFlightLock() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LnUrlHttpTransport transport = (url, timeout, headers) -> {
+            if (url.startsWith("https://slow.test/")) {
+                // a transport that does blocking work before it hands back its task
+                sending.countDown();
+                try {
+                    // bounded, so a regression fails the test instead of hanging it
+                    release.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return NGEPlatform.get().promisify((res, rej) -> res.accept(PAY_JSON), null);
+        };
+        Thread slow = new Thread(() -> {
+            try {
+                LnUrl.encode("https://slow.test/lnurlp/unit").getService(Duration.ofSeconds(5), transport);
+            } catch (Exception e) {
+                // the outcome of this lookup is not checked
+            }
+        });
+        slow.start();
+        try {
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            LnUrl fast = LnUrl.encode("https://fast.test/lnurlp/unit");
+            AsyncTask<LnUrlPay> other = fast.getService(Duration.ofSeconds(5), transport);
+            assertEquals(other.await().getCallback().getHost(), "fast.test");
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        } finally {
+            release.countDown();
+            slow.join();
+        }
+    }
+
+    @Test
+    public void fetchWithdrawServicesEveryTime() throws Exception {
+        // every GET issues a new k1, and the url has no tag that tells it is a withdraw request
+        AtomicInteger k1 = new AtomicInteger();
+        LnUrlHttpTransport transport = (url, timeout, headers) ->
+            NGEPlatform
+                .get()
+                .promisify(
+                    (res, rej) ->
+                        new Thread(() -> {
+                            String body =
+                                "{\"tag\":\"withdrawRequest\",\"callback\":\"https://withdraw.test/cb\",\"k1\":\"" +
+                                k1.incrementAndGet() +
+                                "\",\"minWithdrawable\":1000,\"maxWithdrawable\":2000}";
+                            try {
+                                Thread.sleep(50);
+                            } catch (InterruptedException e) {
+                                // answer right away
+                            }
+                            res.accept(body);
+                        })
+                            .start(),
+                    null
+                );
+        LnUrlLruServiceCache cache = new LnUrlLruServiceCache();
+        LnUrl.setServiceCache(cache);
+        try {
+            LnUrl lnurl = LnUrl.encode("https://withdraw.test/voucher");
+            AsyncTask<LnUrlWithdraw> first = lnurl.getService(Duration.ofSeconds(5), transport);
+            AsyncTask<LnUrlWithdraw> second = lnurl.getService(Duration.ofSeconds(5), transport);
+            assertNotEquals(first.await().getK1(), second.await().getK1());
+            assertNull(cache.get(lnurl.toURI()));
+            assertEquals(k1.get(), 2);
+        } finally {
+            LnUrl.setServiceCache(null);
+        }
+    }
+}
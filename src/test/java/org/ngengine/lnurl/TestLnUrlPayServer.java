@@ -0,0 +1,155 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.ngengine.lnurl.server.LnUrlInvoiceRequest;
+import org.ngengine.lnurl.server.LnUrlPayServer;
+import org.ngengine.lnurl.server.LnUrlServerResponse;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlPayServer {
+
+    private static final String CALLBACK = "/lnurlp/unit/callback";
+    private static final String PAYER_DATA = "{\"name\":\"Test Payer\"}";
+    private static final String PUBKEY = "00".repeat(32);
+
+    private final AtomicReference<LnUrlInvoiceRequest> received = new AtomicReference<>();
+    private final LnUrlPayServer server = new LnUrlPayServer(request -> {
+        received.set(request);
+        LnUrlPaymentResponse response = new LnUrlPaymentResponse("lnbcunit", true, null, null);
+        return NGEPlatform.get().promisify((res, rej) -> res.accept(response), null);
+    });
+    private final LnUrlPay payRequest = new LnUrlPay(
+        1000000,
+        1000,
+        URI.create("https://mock.lnurl" + CALLBACK),
+        255,
+        List.of(new LnUrlPay.Metadata("text/plain", "Sats for unit@mock.lnurl")),
+        null,
+        PUBKEY,
+        true
+    );
+
+    {
+        server.register("unit", payRequest);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String zapRequest(String tags) {
+        return (
+            "{\"id\":\"" + "11".repeat(32) + "\",\"pubkey\":\"" + "22".repeat(32) + "\",\"created_at\":1700000000," +
+            "\"kind\":9734,\"tags\":" + tags + ",\"content\":\"\",\"sig\":\"" + "33".repeat(64) + "\"}"
+        );
+    }
+
+    private int call(String query) throws Exception {
+        received.set(null);
+        LnUrlServerResponse response = server.handle(CALLBACK, query).await();
+        return response.getStatusCode();
+    }
+
+    @Test
+    public void serializeResponses() throws Exception {
+        LnUrlServerResponse invoice = server.handle(CALLBACK, "amount=1000").await();
+        Map<String, Object> body = NGEPlatform.get().fromJSON(new String(invoice.getBody(), StandardCharsets.UTF_8), Map.class);
+        assertEquals(body.get("pr"), "lnbcunit");
+        assertEquals(body.get("disposable"), true);
+        assertEquals(body.get("routes"), List.of());
+        assertEquals(body.size(), 3);
+
+        LnUrlServerResponse missing = server.handle(CALLBACK, "comment=x").await();
+        assertEquals(missing.getStatusCode(), 400);
+        assertEquals(
+            new String(missing.getBody(), StandardCharsets.UTF_8),
+            "{\"status\":\"ERROR\",\"reason\":\"Missing amount\"}"
+        );
+        // fixed error bodies are shared between requests
+        assertSame(server.handle(CALLBACK, "comment=y").await().getBody(), missing.getBody());
+
+        LnUrlServerResponse range = server.handle(CALLBACK, "amount=1").await();
+        assertEquals(
+            new String(range.getBody(), StandardCharsets.UTF_8),
+            "{\"status\":\"ERROR\",\"reason\":\"Amount must be between 1000 and 1000000\"}"
+        );
+        assertEquals(server.handle("/unknown", null).await().getStatusCode(), 404);
+    }
+
+    @Test
+    public void hashMetadata() throws Exception {
+        assertEquals(call("amount=1000"), 200);
+        assertArrayEquals(received.get().getDescriptionHash(), payRequest.getMetadataHash());
+    }
+
+    @Test
+    public void hashMetadataAndPayerData() throws Exception {
+        assertEquals(call("amount=1000&payerdata=" + encode(PAYER_DATA)), 200);
+        assertArrayEquals(received.get().getDescriptionHash(), LnUrlPay.sha256(payRequest.getRawMetadata() + PAYER_DATA));
+    }
+
+    @Test
+    public void hashZapRequest() throws Exception {
+        String zap = zapRequest("[[\"p\",\"" + PUBKEY + "\"],[\"amount\",\"1000\"],[\"relays\",\"wss://relay.test\"]]");
+        assertEquals(call("amount=1000&payerdata=" + encode(PAYER_DATA) + "&nostr=" + encode(zap)), 200);
+        assertArrayEquals(received.get().getDescriptionHash(), LnUrlPay.sha256(zap));
+    }
+
+    @Test
+    public void rejectInvalidZapRequests() throws Exception {
+        String p = "[\"p\",\"" + PUBKEY + "\"]";
+        // wrong amount
+        assertEquals(call("amount=1000&nostr=" + encode(zapRequest("[" + p + ",[\"amount\",\"2000\"]]"))), 400);
+        // no p tag, or more than one
+        assertEquals(call("amount=1000&nostr=" + encode(zapRequest("[[\"amount\",\"1000\"]]"))), 400);
+        assertEquals(call("amount=1000&nostr=" + encode(zapRequest("[" + p + "," + p + "]"))), 400);
+        // wrong kind
+        assertEquals(call("amount=1000&nostr=" + encode(zapRequest("[" + p + "]").replace("9734", "1"))), 400);
+        // not signed
+        String unsigned = zapRequest("[" + p + "]").replaceFirst(",\"sig\":\"[0-9]*\"", "");
+        assertEquals(call("amount=1000&nostr=" + encode(unsigned)), 400);
+        assertNull(received.get());
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.Test;
+import org.ngengine.lnurl.successAction.LnUrlMessageSuccessAction;
+import org.ngengine.lnurl.successAction.LnUrlSuccessAction;
+import org.ngengine.lnurl.successAction.LnUrlUrlSuccessAction;
+import org.ngengine.platform.NGEPlatform;
+import org.ngengine.platform.NGEUtils;
+
+public class TestLnUrlPaymentResponse {
+
+    // BOLT 11 example: "Now send $24 for an entire list of things (hashed)"
+    private static final String BOLT11_DESCRIPTION_HASH =
+        "lnbc20m1pvjluezpp5qqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqypqhp58yjmdan79s6qqdhdzgynm4zwqd5" +
+        "d7xmw5fk98klysy043l2ahrqscc6gd6ql3jrc5yzme8v4ntcewwz5cnw92tz0pc8qcuufvq7khhr8wpald05e92xw006sq94mg8v" +
+        "2ndf4sefvf9sygkshp5zfem29trqq2yxxz7";
+    private static final String BOLT11_DESCRIPTION_HASH_HEX =
+        "3925b6f67e2c340036ed12093dd44e0368df1b6ea26c53dbe4811f58fd5db8c1";
+
+    // BOLT 11 example: "Please send $3 for a cup of coffee to the same peer, within one minute",
+    // it has a description and no description hash
+    private static final String BOLT11_DESCRIPTION =
+        "lnbc2500u1pvjluezpp5qqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqypqdq5xysxxatsyp3k7enxv4jsxqzpu" +
+        "aztrnwngzn3kdzw5hydlzf03qdgm2hdq27cqv3agm2awhz5se903vruatfhq77w3ls4evs3ch9zw97j25emudupq63nyw24cg27h" +
+        "2rspfj9srp";
+
+    private static final String METADATA =
+        "[[\"text/plain\",\"Sats for unit@mock.lnurl\"],[\"text/identifier\",\"unit@mock.lnurl\"]]";
+    private static final String PAYER_DATA = "{\"name\":\"Test Payer\"}";
+
+    // the fields of the first example, with the description hash replaced by sha256(METADATA)
+    private static final String METADATA_INVOICE =
+        "lnbc10n1pvjluezpp5qqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqypqhp5eujhpqeum4yrv4kswznhv0qq5uh" +
+        "v7g72sekwa8ndw27ltglycppscc6gd6ql3jrc5yzme8v4ntcewwz5cnw92tz0pc8qcuufvq7khhr8wpald05e92xw006sq94mg8v" +
+        "2ndf4sefvf9sygkshp5zfem29trqqhtfsp3";
+
+    // the same, with the description hash replaced by sha256(METADATA + PAYER_DATA) as required by LUD-18
+    private static final String PAYER_DATA_INVOICE =
+        "lnbc10n1pvjluezpp5qqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqqqsyqcyq5rqwzqfqypqhp5jt7lqavd909y3w5a4nzsq24mcgu" +
+        "3c9u9tzvh5tjpzfuhmcth5tyscc6gd6ql3jrc5yzme8v4ntcewwz5cnw92tz0pc8qcuufvq7khhr8wpald05e92xw006sq94mg8v" +
+        "2ndf4sefvf9sygkshp5zfem29trqqsqxgc8";
+
+    private static LnUrlPaymentResponse response(String pr) {
+        return new LnUrlPaymentResponse(pr, true, null, null);
+    }
+
+    private static LnUrlPay payRequest() throws Exception {
+        return LnUrlPay.fromJson(
+            "{\"tag\":\"payRequest\",\"callback\":\"https://mock.lnurl/lnurlp/unit/callback\",\"minSendable\":1000," +
+            "\"maxSendable\":1000000,\"metadata\":\"" +
+            METADATA.replace("\"", "\\\"") +
+            "\",\"payerData\":{\"name\":{\"mandatory\":false}}}"
+        );
+    }
+
+    @Test
+    public void extractDescriptionHash() {
+        assertArrayEquals(
+            response(BOLT11_DESCRIPTION_HASH).getDescriptionHash(),
+            NGEUtils.hexToBytes(BOLT11_DESCRIPTION_HASH_HEX)
+        );
+        assertArrayEquals(
+            response(BOLT11_DESCRIPTION_HASH.toUpperCase()).getDescriptionHash(),
+            NGEUtils.hexToBytes(BOLT11_DESCRIPTION_HASH_HEX)
+        );
+        String description =
+            "One piece of chocolate cake, one icecream cone, one pickle, one slice of swiss cheese, " +
+            "one slice of salami, one lollypop, one piece of cherry pie, one sausage, one cupcake, " +
+            "and one slice of watermelon";
+        byte[] cake = NGEPlatform.get().sha256(description.getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(response(BOLT11_DESCRIPTION_HASH).getDescriptionHash(), cake);
+        assertNull(response(BOLT11_DESCRIPTION).getDescriptionHash());
+
+        String badChecksum = BOLT11_DESCRIPTION_HASH.substring(0, BOLT11_DESCRIPTION_HASH.length() - 1) + "8";
+        assertThrows(IllegalArgumentException.class, () -> response(badChecksum).getDescriptionHash());
+        assertThrows(IllegalArgumentException.class, () -> response("lnbc1qqqqqqqyyrfll").getDescriptionHash());
+    }
+
+    @Test
+    public void verifyMetadataHash() throws Exception {
+        LnUrlPay pay = payRequest();
+        assertEquals(pay.getRawMetadata(), METADATA);
+        assertTrue(response(METADATA_INVOICE).verifyDescriptionHash(pay, null));
+        assertTrue(response(METADATA_INVOICE).verifyDescriptionHash(pay, null, PAYER_DATA));
+        assertFalse(response(PAYER_DATA_INVOICE).verifyDescriptionHash(pay, null));
+        assertFalse(response(BOLT11_DESCRIPTION_HASH).verifyDescriptionHash(pay, null));
+        assertFalse(response(BOLT11_DESCRIPTION).verifyDescriptionHash(pay, null));
+    }
+
+    @Test
+    public void verifyPayerDataHash() throws Exception {
+        LnUrlPay pay = payRequest();
+        assertTrue(response(PAYER_DATA_INVOICE).verifyDescriptionHash(pay, null, PAYER_DATA));
+        assertFalse(response(PAYER_DATA_INVOICE).verifyDescriptionHash(pay, null, "{\"name\":\"Someone Else\"}"));
+        // a zap must commit to the zap request
+        assertFalse(response(PAYER_DATA_INVOICE).verifyDescriptionHash(pay, "{}", PAYER_DATA));
+    }
+
+    @Test
+    public void verifyFetchedInvoice() throws Exception {
+        LnUrlPay pay = payRequest();
+        String[] sent = new String[1];
+        LnUrlHttpTransport transport = (url, timeout, headers) -> {
+            sent[0] = url;
+            String body = "{\"pr\":\"" + PAYER_DATA_INVOICE + "\",\"routes\":[]}";
+            return NGEPlatform.get().promisify((res, rej) -> res.accept(body), null);
+        };
+        LnUrlPayerData payerData = new LnUrlPayerData();
+        payerData.setName("Test Payer");
+        LnUrlPaymentResponse response = pay
+            .fetchInvoice(1000, null, payerData, Duration.ofSeconds(5), null, null, transport)
+            .await();
+        String query = URLDecoder.decode(URI.create(sent[0]).getRawQuery(), StandardCharsets.UTF_8);
+        assertTrue(query.contains("payerdata=" + PAYER_DATA));
+        assertTrue(response.verifyDescriptionHash());
+    }
+
+    @Test
+    public void overrideBuiltInSuccessActions() throws Exception {
+        LnUrlSuccessAction override = new LnUrlMessageSuccessAction("overridden");
+        LnUrlPaymentResponse.registerSuccessActionProcessor(
+            new LnUrlPaymentResponse.SuccessActionProcessor(
+                data -> "message".equals(data.get("tag")) && "override me".equals(data.get("message")),
+                (req, data) -> override
+            )
+        );
+        String json = "{\"pr\":\"lnbc1\",\"successAction\":{\"tag\":\"message\",\"message\":\"%s\"}}";
+        assertSame(LnUrlPaymentResponse.fromJson(null, String.format(json, "override me")).getSuccessAction(), override);
+        LnUrlSuccessAction builtIn = LnUrlPaymentResponse.fromJson(null, String.format(json, "thanks")).getSuccessAction();
+        assertEquals(((LnUrlMessageSuccessAction) builtIn).getMessage(), "thanks");
+    }
+
+    @Test
+    public void rejectUrlSuccessActionOnAnotherDomain() throws Exception {
+        LnUrlPay pay = payRequest();
+        String json =
+            "{\"pr\":\"" +
+            METADATA_INVOICE +
+            "\",\"successAction\":{\"tag\":\"url\",\"description\":\"receipt\",\"url\":\"https://%s/receipt\"}}";
+        LnUrlPaymentResponse sameDomain = LnUrlPaymentResponse.fromJson(pay, String.format(json, "mock.lnurl"));
+        assertTrue(sameDomain.getSuccessAction() instanceof LnUrlUrlSuccessAction);
+        // lud-09: an url on another domain fails the whole response, the payment must not go ahead
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> LnUrlPaymentResponse.fromJson(pay, String.format(json, "evil.test"))
+        );
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+import org.ngengine.platform.AsyncTask;
+
+public class TestLnUrlRetryPolicy {
+
+    @Test
+    public void boundBackoff() {
+        LnUrlRetryPolicy policy = new LnUrlRetryPolicy(100, Duration.ofMillis(100), Duration.ofSeconds(1), false);
+        long[] caps = { 100, 200, 400, 800, 1000, 1000 };
+        for (int attempt = 1; attempt <= caps.length; attempt++) {
+            long max = 0;
+            for (int i = 0; i < 2000; i++) {
+                long delay = policy.getBackoff(attempt);
+                assertTrue(delay >= 0 && delay <= caps[attempt - 1]);
+                max = Math.max(max, delay);
+            }
+            // full jitter: the delays spread over the whole range
+            assertTrue(max > caps[attempt - 1] / 2);
+        }
+        // no overflow for large attempt counts
+        for (int attempt : new int[] { 63, 64, 99, Integer.MAX_VALUE }) {
+            long delay = policy.getBackoff(attempt);
+            assertTrue(delay >= 0 && delay <= 1000);
+        }
+        LnUrlRetryPolicy noDelay = new LnUrlRetryPolicy(3, Duration.ZERO, Duration.ZERO, false);
+        assertEquals(noDelay.getBackoff(1), 0);
+        assertEquals(noDelay.getBackoff(50), 0);
+    }
+
+    @Test
+    public void classifyErrors() {
+        LnUrlRetryPolicy policy = new LnUrlRetryPolicy();
+        // network failures, timeouts and rejections by the host limiter
+        assertTrue(policy.isRetryable(new IOException("HTTP 500")));
+        assertTrue(policy.isRetryable(new TimeoutException()));
+        assertTrue(policy.isRetryable(new RuntimeException(new IOException("connection reset"))));
+        assertTrue(policy.isRetryable(new LnUrlException(LnUrlException.Status.REJECTED, "busy")));
+        assertTrue(policy.isRetryable(new RuntimeException(new LnUrlException(LnUrlException.Status.REJECTED, "busy"))));
+        // errors reported by the service and invalid responses
+        assertFalse(policy.isRetryable(new LnUrlException(LnUrlException.Status.ERROR, "no")));
+        assertFalse(policy.isRetryable(new RuntimeException(new LnUrlException(LnUrlException.Status.INVALID, "bad"))));
+        assertFalse(policy.isRetryable(new LnUrlException(LnUrlException.Status.NOT_FOUND, "gone")));
+        assertFalse(policy.isRetryable(new IllegalArgumentException("bad url")));
+        assertFalse(policy.isRetryable(new RuntimeException(new IllegalArgumentException("bad url"))));
+    }
+
+    @Test
+    public void hedgeSlowRequests() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl")
+            .addUser("unit", 1000, 1000000)
+            .setLatency(Duration.ofMillis(20), Duration.ZERO);
+        LnUrlRetryPolicy policy = new LnUrlRetryPolicy(1, Duration.ZERO, Duration.ZERO, true);
+        LnUrl.setRetryPolicy(policy);
+        try {
+            LnAddress address = new LnAddress("unit@mock.lnurl");
+            for (int i = 0; i < LnUrlRetryPolicy.MIN_HEDGE_SAMPLES; i++) {
+                address.getService(Duration.ofSeconds(5), server).await();
+            }
+            assertEquals(policy.getHedges(), 0);
+            LnUrlLatencyHistogram latency = policy.getLatency("mock.lnurl");
+            assertEquals(latency.getCount(), LnUrlRetryPolicy.MIN_HEDGE_SAMPLES);
+            long hedgeDelay = latency.getPercentile(LnUrlRetryPolicy.HEDGE_PERCENTILE).toNanos();
+            long sumBefore = latency.getMean().toNanos() * latency.getCount();
+
+            // the first request stalls, the hedge sent after the p95 latency answers
+            server.setLatency(Duration.ofSeconds(2), Duration.ZERO);
+            long start = System.nanoTime();
+            AsyncTask<LnUrlPay> task = address.getService(Duration.ofSeconds(5), server);
+            server.setLatency(Duration.ofMillis(20), Duration.ZERO);
+            task.await();
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+            assertEquals(policy.getHedges(), 1);
+            assertEquals(server.getRequests(), LnUrlRetryPolicy.MIN_HEDGE_SAMPLES + 2);
+            // the winning hedge records the time since the first request, not its own 20 ms
+            assertEquals(latency.getCount(), LnUrlRetryPolicy.MIN_HEDGE_SAMPLES + 1);
+            long recorded = latency.getMean().toNanos() * latency.getCount() - sumBefore;
+            assertTrue(recorded >= hedgeDelay + Duration.ofMillis(15).toNanos());
+        } finally {
+            LnUrl.setRetryPolicy(null);
+            policy.close();
+        }
+    }
+
+    @Test
+    public void retryWithinDeadline() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000).setFailureRate(1);
+        // the backoff of the second retry cannot fit in the deadline
+        LnUrlRetryPolicy policy = new LnUrlRetryPolicy(10, Duration.ofSeconds(10), Duration.ofSeconds(10), false) {
+            @Override
+            protected long getBackoff(int attempt) {
+                return attempt == 1 ? 10 : 10000;
+            }
+        };
+        LnUrl.setRetryPolicy(policy);
+        long start = System.nanoTime();
+        try {
+            new LnAddress("unit@mock.lnurl")
+                .getService(Duration.ofSeconds(5), server, LnUrlDeadline.after(Duration.ofSeconds(2)))
+                .await();
+            throw new AssertionError("Expected the request to fail");
+        } catch (Exception e) {
+            // the error of the last attempt
+            Throwable cause = e;
+            while (cause.getCause() != null && !(cause instanceof IOException)) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof IOException);
+        } finally {
+            LnUrl.setRetryPolicy(null);
+            policy.close();
+        }
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        assertEquals(server.getFailures(), 2);
+        assertEquals(policy.getRetries(), 1);
+    }
+
+    @Test
+    public void failScheduledRetriesOnClose() throws Exception {
+        MockLnUrlServer server = new MockLnUrlServer("mock.lnurl").addUser("unit", 1000, 1000000).setFailureRate(1);
+        LnUrlRetryPolicy policy = new LnUrlRetryPolicy(10, Duration.ofSeconds(10), Duration.ofSeconds(10), false) {
+            @Override
+            protected long getBackoff(int attempt) {
+                return 10000;
+            }
+        };
+        LnUrl.setRetryPolicy(policy);
+        try {
+            AsyncTask<LnUrlPay> task = new LnAddress("unit@mock.lnurl").getService(Duration.ofSeconds(5), server);
+            long wait = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+            while (policy.getRetries() == 0 && System.nanoTime() < wait) {
+                Thread.sleep(5);
+            }
+            assertEquals(policy.getRetries(), 1);
+            long start = System.nanoTime();
+            policy.close();
+            try {
+                task.await();
+                throw new AssertionError("Expected the request to fail");
+            } catch (Exception e) {
+                // the error of the last attempt
+                Throwable cause = e;
+                while (cause.getCause() != null && !(cause instanceof IOException)) {
+                    cause = cause.getCause();
+                }
+                assertTrue(cause instanceof IOException);
+            }
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+            assertEquals(server.getFailures(), 1);
+        } finally {
+            LnUrl.setRetryPolicy(null);
+            policy.close();
+        }
+    }
+}
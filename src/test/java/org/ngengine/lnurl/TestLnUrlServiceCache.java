@@ -0,0 +1,173 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlServiceCache {
+
+    private static final String PAY_JSON =
+        "{\"tag\":\"payRequest\",\"callback\":\"https://a.test/callback\",\"minSendable\":1000," +
+        "\"maxSendable\":1000000,\"metadata\":\"[[\\\"text/plain\\\",\\\"x\\\"]]\"}";
+
+    private static LnUrlService service(String name) {
+        return new LnUrlService() {
+            @Override
+            public Map<String, Object> toMap() {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        LnUrlLruServiceCache cache = new LnUrlLruServiceCache(2, Duration.ofMinutes(1));
+        URI a = URI.create("https://a.test/lnurlp/a");
+        URI b = URI.create("https://b.test/lnurlp/b");
+        URI c = URI.create("https://c.test/lnurlp/c");
+        LnUrlService sa = service("a");
+        cache.put(a, sa, null);
+        cache.put(b, service("b"), null);
+        // a becomes the most recently used entry, so b is evicted
+        assertSame(cache.get(a), sa);
+        cache.put(c, service("c"), null);
+        assertEquals(cache.size(), 2);
+        assertNull(cache.get(b));
+        assertSame(cache.get(a), sa);
+        assertEquals(cache.get(c).getName(), "c");
+        assertEquals(cache.getEvictions(), 1);
+        assertEquals(cache.getHits(), 3);
+        assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void expireEntries() throws Exception {
+        LnUrlLruServiceCache cache = new LnUrlLruServiceCache(16, Duration.ofMinutes(1));
+        URI a = URI.create("https://a.test/lnurlp/a");
+        URI b = URI.create("https://b.test/lnurlp/b");
+        cache.put(a, service("a"), Duration.ofMillis(10));
+        cache.put(b, service("b"), null);
+        Thread.sleep(50);
+        assertNull(cache.get(a));
+        assertEquals(cache.get(b).getName(), "b");
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.getEvictions(), 1);
+
+        cache.put(b, service("b"), Duration.ZERO);
+        assertNull(cache.get(b));
+    }
+
+    @Test
+    public void parseMaxAge() {
+        assertNull(new LnUrlHttpResponse("{}", null).getMaxAge());
+        assertNull(response("public").getMaxAge());
+        assertNull(response("max-age=soon").getMaxAge());
+        assertEquals(response("max-age=60").getMaxAge(), Duration.ofSeconds(60));
+        assertEquals(response("public, MAX-AGE=\"120\", must-revalidate").getMaxAge(), Duration.ofSeconds(120));
+        assertEquals(response("max-age=0").getMaxAge(), Duration.ZERO);
+        assertEquals(response("max-age=60, no-store").getMaxAge(), Duration.ZERO);
+        assertEquals(response("no-cache").getMaxAge(), Duration.ZERO);
+        // header names are case insensitive
+        LnUrlHttpResponse lower = new LnUrlHttpResponse("{}", Collections.singletonMap("cache-control", "max-age=5"));
+        assertEquals(lower.getMaxAge(), Duration.ofSeconds(5));
+        assertEquals(lower.getHeader("CACHE-CONTROL"), "max-age=5");
+    }
+
+    @Test
+    public void cacheServicesForTheirMaxAge() throws Exception {
+        List<Duration> ttls = new ArrayList<>();
+        LnUrlServiceCache cache = new LnUrlLruServiceCache() {
+            @Override
+            public synchronized void put(URI url, LnUrlService service, @Nullable Duration ttl) {
+                ttls.add(ttl);
+                super.put(url, service, ttl);
+            }
+        };
+        LnUrlHttpTransport transport = new LnUrlHttpTransport() {
+            @Override
+            public AsyncTask<String> httpGet(String url, Duration timeout, @Nullable Map<String, String> headers) {
+                return NGEPlatform.get().promisify((res, rej) -> res.accept(PAY_JSON), null);
+            }
+
+            @Override
+            public AsyncTask<LnUrlHttpResponse> httpGetResponse(
+                String url,
+                Duration timeout,
+                @Nullable Map<String, String> headers
+            ) {
+                String cacheControl = url.endsWith("/fresh") ? "max-age=60" : "no-store";
+                LnUrlHttpResponse response = new LnUrlHttpResponse(
+                    PAY_JSON,
+                    Collections.singletonMap("Cache-Control", cacheControl)
+                );
+                return NGEPlatform.get().promisify((res, rej) -> res.accept(response), null);
+            }
+        };
+        // a transport that does not expose the headers
+        LnUrlHttpTransport bodyOnly = (url, timeout, headers) ->
+            NGEPlatform.get().promisify((res, rej) -> res.accept(PAY_JSON), null);
+        LnUrl.setServiceCache(cache);
+        try {
+            LnUrl.encode("https://a.test/fresh").getService(Duration.ofSeconds(5), transport).await();
+            LnUrl.encode("https://a.test/private").getService(Duration.ofSeconds(5), transport).await();
+            LnUrl.encode("https://a.test/default").getService(Duration.ofSeconds(5), bodyOnly).await();
+            assertEquals(ttls, Arrays.asList(Duration.ofSeconds(60), Duration.ZERO, null));
+            assertEquals(cache.get(URI.create("https://a.test/fresh")).getName(), "LNURL Pay Request");
+            assertNull(cache.get(URI.create("https://a.test/private")));
+        } finally {
+            LnUrl.setServiceCache(null);
+        }
+    }
+
+    private static LnUrlHttpResponse response(String cacheControl) {
+        return new LnUrlHttpResponse("{}", Collections.singletonMap("Cache-Control", cacheControl));
+    }
+}
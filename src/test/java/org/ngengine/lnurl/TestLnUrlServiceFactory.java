@@ -0,0 +1,130 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlServiceFactory {
+
+    private static final String PAY_JSON =
+        "{\"tag\":\"payRequest\",\"callback\":\"https://a.test/callback\",\"minSendable\":1000," +
+        "\"maxSendable\":1000000,\"metadata\":\"[[\\\"text/plain\\\",\\\"x\\\"]]\"}";
+
+    @Test
+    public void replaceTaggedFactories() throws Exception {
+        AtomicInteger first = new AtomicInteger();
+        LnUrl.registerServiceFactory("testReplaced", data -> service("first", first));
+        assertEquals(getService("https://a.test/replaced/1", "{\"tag\":\"testReplaced\"}").getName(), "first");
+
+        AtomicInteger second = new AtomicInteger();
+        LnUrl.registerServiceFactory("testReplaced", data -> service("second", second));
+        assertEquals(getService("https://a.test/replaced/2", "{\"tag\":\"testReplaced\"}").getName(), "second");
+        assertEquals(first.get(), 1);
+        assertEquals(second.get(), 1);
+    }
+
+    @Test
+    public void fallBackToUntaggedFactories() throws Exception {
+        AtomicInteger untagged = new AtomicInteger();
+        LnUrl.registerServiceFactory(data -> "testFallback".equals(data.get("tag")) ? service("untagged", untagged) : null);
+
+        // no factory for the tag
+        assertEquals(getService("https://a.test/fallback/1", "{\"tag\":\"testFallback\"}").getName(), "untagged");
+        // the tagged factory cannot handle the data
+        AtomicInteger tagged = new AtomicInteger();
+        LnUrl.registerServiceFactory("testFallback", data -> data.containsKey("k1") ? service("tagged", tagged) : null);
+        assertEquals(getService("https://a.test/fallback/2", "{\"tag\":\"testFallback\"}").getName(), "untagged");
+        assertEquals(getService("https://a.test/fallback/3", "{\"tag\":\"testFallback\",\"k1\":\"x\"}").getName(), "tagged");
+        // the tagged factory fails
+        LnUrl.registerServiceFactory(
+            "testFallback",
+            data -> {
+                throw new LnUrlException(LnUrlException.Status.INVALID, "broken factory");
+            }
+        );
+        assertEquals(getService("https://a.test/fallback/4", "{\"tag\":\"testFallback\"}").getName(), "untagged");
+        assertEquals(untagged.get(), 3);
+        assertEquals(tagged.get(), 1);
+
+        // no factory at all
+        try {
+            getService("https://a.test/fallback/5", "{\"tag\":\"testUnknown\"}");
+            throw new AssertionError("Expected the lookup to fail");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("No LNURL service found"));
+        }
+    }
+
+    @Test
+    public void replaceThePayFactory() throws Exception {
+        AtomicInteger custom = new AtomicInteger();
+        LnUrl.registerServiceFactory("payRequest", data -> service("custom pay", custom));
+        try {
+            // the streaming pay parser is skipped once the factory is replaced
+            assertEquals(getService("https://a.test/pay/1", PAY_JSON).getName(), "custom pay");
+            assertEquals(custom.get(), 1);
+        } finally {
+            LnUrl.registerServiceFactory("payRequest", LnUrl.PAY_FACTORY);
+        }
+        assertTrue(getService("https://a.test/pay/2", PAY_JSON) instanceof LnUrlPay);
+        assertEquals(custom.get(), 1);
+    }
+
+    private static LnUrlService getService(String url, String json) throws Exception {
+        LnUrlHttpTransport transport = (u, timeout, headers) ->
+            NGEPlatform.get().promisify((res, rej) -> res.accept(json), null);
+        return LnUrl.encode(url).getService(Duration.ofSeconds(5), transport).await();
+    }
+
+    private static LnUrlService service(String name, AtomicInteger calls) {
+        calls.incrementAndGet();
+        return new LnUrlService() {
+            @Override
+            public Map<String, Object> toMap() {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.ngengine.lnurl.LnUrlWithdrawBatch.WithdrawRequest;
+import org.ngengine.lnurl.LnUrlWithdrawBatch.WithdrawResult;
+import org.ngengine.platform.AsyncTask;
+import org.ngengine.platform.NGEPlatform;
+
+public class TestLnUrlWithdrawBatch {
+
+    private static final String SERVICE =
+        "{\"tag\":\"withdrawRequest\",\"callback\":\"https://withdraw.test/cb\",\"k1\":\"k1\"," +
+        "\"minWithdrawable\":1000,\"maxWithdrawable\":2000}";
+    private static final String OK = "{\"status\":\"OK\"}";
+
+    @Test
+    public void boundBackoff() {
+        LnUrlWithdrawBatch batch = new LnUrlWithdrawBatch(4, 4, Duration.ofSeconds(5), 100, Duration.ofSeconds(1), null);
+        long max = LnUrlWithdrawBatch.MAX_RETRY_DELAY.toMillis();
+        for (int attempt : new int[] { 1, 2, 5, 6, 63, 64, 100, Integer.MAX_VALUE }) {
+            long cap = Math.min(max, 1000L << Math.min(attempt - 1, 20));
+            for (int i = 0; i < 100; i++) {
+                long delay = batch.getBackoff(attempt);
+                assertTrue(delay >= 0 && delay <= cap);
+            }
+        }
+        // a first delay longer than the cap is kept
+        LnUrlWithdrawBatch slow = new LnUrlWithdrawBatch(4, 4, Duration.ofSeconds(5), 3, Duration.ofMinutes(1), null);
+        assertTrue(slow.getBackoff(10) <= Duration.ofMinutes(1).toMillis());
+        LnUrlWithdrawBatch noDelay = new LnUrlWithdrawBatch(4, 4, Duration.ofSeconds(5), 3, Duration.ZERO, null);
+        assertEquals(noDelay.getBackoff(2), 0);
+    }
+
+    @Test
+    public void retryRejectedRequests() throws Exception {
+        // both the service lookup and the callback were rejected by the host limiter before they were sent
+        ScriptedTransport transport = new ScriptedTransport()
+            .services(rejected(), SERVICE)
+            .callbacks(rejected(), rejected(), OK);
+        try (LnUrlWithdrawBatch batch = batch(3, transport)) {
+            WithdrawResult result = batch.withdraw(requests(1)).await().get(0);
+            assertTrue(result.isSuccess());
+            assertEquals(result.getPr(), "lnbc0");
+            assertEquals(transport.services.get(), 2);
+            assertEquals(transport.callbacks.get(), 3);
+        }
+    }
+
+    @Test
+    public void retryServiceLookups() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport().services(new IOException("HTTP 500"), SERVICE).callbacks(OK);
+        try (LnUrlWithdrawBatch batch = batch(3, transport)) {
+            assertTrue(batch.withdraw(requests(1)).await().get(0).isSuccess());
+            assertEquals(transport.services.get(), 2);
+        }
+        // errors reported by the service are not retried
+        transport =
+            new ScriptedTransport().services("{\"status\":\"ERROR\",\"reason\":\"expired\"}", SERVICE).callbacks(OK);
+        try (LnUrlWithdrawBatch batch = batch(3, transport)) {
+            WithdrawResult result = batch.withdraw(requests(1)).await().get(0);
+            assertFalse(result.isSuccess());
+            assertEquals(transport.services.get(), 1);
+            assertEquals(transport.callbacks.get(), 0);
+            assertFalse(result.isOutcomeUnknown());
+        }
+    }
+
+    @Test
+    public void neverRetrySentCallbacks() throws Exception {
+        // the callback may have redeemed the k1 before it failed
+        for (Throwable error : new Throwable[] { new IOException("connection reset"), new TimeoutException("timed out") }) {
+            ScriptedTransport transport = new ScriptedTransport().services(SERVICE).callbacks(error, OK);
+            try (LnUrlWithdrawBatch batch = batch(3, transport)) {
+                WithdrawResult result = batch.withdraw(requests(1)).await().get(0);
+                assertFalse(result.isSuccess());
+                assertTrue(result.isOutcomeUnknown());
+                assertEquals(result.getPr(), "lnbc0");
+                assertEquals(transport.callbacks.get(), 1);
+            }
+        }
+        // the service answered, the invoice will not be paid
+        ScriptedTransport transport = new ScriptedTransport()
+            .services(SERVICE)
+            .callbacks("{\"status\":\"ERROR\",\"reason\":\"already used\"}", OK);
+        try (LnUrlWithdrawBatch batch = batch(3, transport)) {
+            WithdrawResult result = batch.withdraw(requests(1)).await().get(0);
+            assertFalse(result.isSuccess());
+            assertFalse(result.isOutcomeUnknown());
+            assertEquals(transport.callbacks.get(), 1);
+        }
+        // an exhausted retry of a rejected callback was never sent
+        transport = new ScriptedTransport().services(SERVICE).callbacks(rejected());
+        try (LnUrlWithdrawBatch batch = batch(2, transport)) {
+            WithdrawResult result = batch.withdraw(requests(1)).await().get(0);
+            assertFalse(result.isSuccess());
+            assertFalse(result.isOutcomeUnknown());
+            assertEquals(transport.callbacks.get(), 2);
+        }
+    }
+
+    @Test
+    public void failScheduledRetriesOnClose() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        LnUrlHttpTransport transport = (url, timeout, headers) -> {
+            requests.incrementAndGet();
+            return NGEPlatform.get().promisify((res, rej) -> rej.accept(new IOException("HTTP 500")), null);
+        };
+        LnUrlWithdrawBatch batch = new LnUrlWithdrawBatch(4, 4, Duration.ofSeconds(5), 3, Duration.ofSeconds(10), transport);
+        AsyncTask<List<WithdrawResult>> task = batch.withdraw(requests(1));
+        long wait = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (requests.get() == 0 && System.nanoTime() < wait) {
+            Thread.sleep(5);
+        }
+        long start = System.nanoTime();
+        batch.close();
+        WithdrawResult result = task.await().get(0);
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        // the error of the last attempt
+        assertFalse(result.isSuccess());
+        assertTrue(rootCause(result.getError()) instanceof IOException);
+        assertEquals(requests.get(), 1);
+
+        // a closed batch runner no longer retries
+        result = batch.withdraw(requests(1)).await().get(0);
+        assertTrue(rootCause(result.getError()) instanceof IOException);
+        assertEquals(requests.get(), 2);
+    }
+
+    private static LnUrlWithdrawBatch batch(int maxAttempts, LnUrlHttpTransport transport) {
+        return new LnUrlWithdrawBatch(4, 4, Duration.ofSeconds(5), maxAttempts, Duration.ofMillis(1), transport);
+    }
+
+    private static LnUrlException rejected() {
+        return new LnUrlException(LnUrlException.Status.REJECTED, "Too many requests");
+    }
+
+    /**
+     * Answers the service lookups and the callbacks in order, repeating the last answer.
+     * An answer is either a body or the error of the request.
+     */
+    private static class ScriptedTransport implements LnUrlHttpTransport {
+
+        private final AtomicInteger services = new AtomicInteger();
+        private final AtomicInteger callbacks = new AtomicInteger();
+        private List<Object> serviceAnswers = new ArrayList<>();
+        private List<Object> callbackAnswers = new ArrayList<>();
+
+        ScriptedTransport services(Object... answers) {
+            serviceAnswers = Arrays.asList(answers);
+            return this;
+        }
+
+        ScriptedTransport callbacks(Object... answers) {
+            callbackAnswers = Arrays.asList(answers);
+            return this;
+        }
+
+        @Override
+        public AsyncTask<String> httpGet(String url, Duration timeout, @Nullable Map<String, String> headers) {
+            boolean callback = url.startsWith("https://withdraw.test/cb?");
+            List<Object> answers = callback ? callbackAnswers : serviceAnswers;
+            int n = (callback ? callbacks : services).getAndIncrement();
+            Object answer = answers.get(Math.min(n, answers.size() - 1));
+            return NGEPlatform
+                .get()
+                .promisify(
+                    (res, rej) -> {
+                        if (answer instanceof Throwable) {
+                            rej.accept((Throwable) answer);
+                        } else {
+                            res.accept((String) answer);
+                        }
+                    },
+                    null
+                );
+        }
+    }
+
+    private static List<WithdrawRequest> requests(int n) throws Exception {
+        WithdrawRequest[] requests = new WithdrawRequest[n];
+        for (int i = 0; i < n; i++) {
+            requests[i] = new WithdrawRequest(LnUrl.encode("https://withdraw.test/voucher/" + i), "lnbc" + i);
+        }
+        return List.of(requests);
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2025, Riccardo Balbo
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.ngengine.lnurl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLud16Type {
+
+    @Test
+    public void dispatchBuiltInSchemes() {
+        assertEquals(Lud16Type.getLud16("lnurlp://example.com/pay").tag(), "payRequest");
+        assertEquals(Lud16Type.getLud16("lnurlw://example.com/w").tag(), "withdrawRequest");
+        assertEquals(Lud16Type.getLud16("lnurlc://example.com/c").tag(), "channelRequest");
+        assertEquals(Lud16Type.getLud16("keyauth://example.com/a").tag(), "login");
+        // schemes are case insensitive, leading whitespace is skipped
+        assertEquals(Lud16Type.getLud16("LnUrlP://example.com/pay").tag(), "payRequest");
+        assertEquals(Lud16Type.getLud16("  KEYAUTH://example.com/a").tag(), "login");
+        assertTrue(Lud16Type.getLud16("LNURLW://example.com/w").isAssignableTo("LNURLW://example.com/w"));
+
+        assertNull(Lud16Type.getLud16(null));
+        assertNull(Lud16Type.getLud16(""));
+        assertNull(Lud16Type.getLud16("https://example.com/pay"));
+        assertNull(Lud16Type.getLud16("lnurl://example.com"));
+        assertNull(Lud16Type.getLud16("lnurlpp://example.com"));
+        assertNull(Lud16Type.getLud16("lnurlp:/example.com"));
+        assertNull(Lud16Type.getLud16("lnurlp:"));
+        assertNull(Lud16Type.getLud16("lnurl\u00e8://example.com"));
+        assertFalse(Lud16Type.isLud16("lnurl1dp68gurn8ghj7unzd33zu6t59uh8wetvdskkkmn0wahz7mrww4excup00fshqeug7aa"));
+    }
+
+    @Test
+    public void preservePathCase() throws Exception {
+        // lud17: only the scheme is case insensitive, the rest of the url is kept as is
+        LnUrl lnurl = new LnUrl("LNURLP://Example.com/LnUrlP/AbC?Tag=X");
+        assertEquals(lnurl.toURI().toString(), "https://Example.com/LnUrlP/AbC?Tag=X");
+        assertEquals(lnurl.getTag(), "payRequest");
+        LnUrl login = new LnUrl(" lightning:keyauth://example.com/Login?k1=AB ");
+        assertEquals(login.toURI().toString(), "https://example.com/Login?k1=AB");
+        assertEquals(Lud16Type.getLud16("lnurlW://Host/Path").toHttps("lnurlW://Host/Path"), "https://Host/Path");
+    }
+
+    @Test
+    public void registerTypes() {
+        int size = Lud16Type.getTypes().size();
+        Lud16Type custom = new Lud16Type("test-scheme.v1", "testRequest");
+        Lud16Type.register(custom);
+        assertSame(Lud16Type.getLud16("TEST-SCHEME.V1://example.com"), custom);
+        // a prefix of a registered scheme is not a match
+        assertNull(Lud16Type.getLud16("test-scheme://example.com"));
+        assertEquals(Lud16Type.getTypes().size(), size + 1);
+
+        // the same prefix, in any case, replaces the type
+        Lud16Type replaced = new Lud16Type("Test-Scheme.V1", "otherRequest");
+        Lud16Type.register(replaced);
+        assertSame(Lud16Type.getLud16("test-scheme.v1://example.com"), replaced);
+        assertEquals(Lud16Type.getTypes().size(), size + 1);
+        assertTrue(Lud16Type.getTypes().contains(replaced));
+        assertFalse(Lud16Type.getTypes().contains(custom));
+
+        assertThrows(IllegalArgumentException.class, () -> Lud16Type.register(new Lud16Type("", "x")));
+        assertThrows(IllegalArgumentException.class, () -> Lud16Type.register(new Lud16Type("bad/scheme", "x")));
+        assertThrows(IllegalArgumentException.class, () -> Lud16Type.register(new Lud16Type("sch\u00e8me", "x")));
+        assertThrows(UnsupportedOperationException.class, () -> Lud16Type.getTypes().clear());
+        assertEquals(Lud16Type.getLud16("lnurlp://example.com").tag(), "payRequest");
+    }
+}